@@ -0,0 +1,312 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Insets;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.view.Display;
+import android.view.WindowInsets;
+import android.view.WindowManager;
+import android.view.WindowMetrics;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cached display geometry: density, real and usable size, system bar heights and orientation.
+ * <p>
+ * Everything is read once and kept until {@link #invalidate()}, which the owner calls from
+ * {@code onConfigurationChanged}; display changes invalidate it through a
+ * {@link DisplayManager.DisplayListener}. The getters and the dp/px conversions only read
+ * fields and do not allocate, so they are safe on the drag and layout paths.
+ * <p>
+ * On API 30+ the bounds and insets come from {@link WindowMetrics}, which also follows folds
+ * and window size changes; older versions fall back on the display size and the system bar
+ * dimensions. After an invalidation the geometry is recomputed on the next main loop turn and
+ * the {@link Listener} is told if anything actually changed.
+ */
+final class DisplayGeometry {
+
+    interface Listener {
+        void onGeometryChanged(DisplayGeometry geometry);
+    }
+
+    private static final int DEFAULT_NAV_BAR_HEIGHT_DP = 48;
+    private static final int DEFAULT_STATUS_BAR_HEIGHT_DP = 25;
+    private static final int FALLBACK_WIDTH = 1080;
+    private static final int FALLBACK_HEIGHT = 1920;
+
+    private final Context context;
+    private final DisplayMetrics metrics = new DisplayMetrics();
+    private final Point size = new Point();
+    private final Rect visibleBounds = new Rect();
+    private final Rect realBounds = new Rect();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable recompute = this::recompute;
+    private DisplayManager.DisplayListener displayListener;
+    private Listener listener;
+    private boolean recomputeScheduled;
+
+    private boolean valid;
+    private float density = 1f;
+    private int realWidth;
+    private int realHeight;
+    private int windowWidth;
+    private int windowHeight;
+    private int statusBarHeight;
+    private int navigationBarHeight;
+    private int orientation;
+    private int rotation;
+
+    DisplayGeometry(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts invalidating the cache on display changes, call it from the main thread.
+     */
+    void register() {
+        if (displayListener != null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return;
+        }
+        DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        if (displayManager == null) {
+            return;
+        }
+        displayListener = new DisplayManager.DisplayListener() {
+            @Override
+            public void onDisplayAdded(int displayId) {
+            }
+
+            @Override
+            public void onDisplayRemoved(int displayId) {
+            }
+
+            @Override
+            public void onDisplayChanged(int displayId) {
+                if (displayId == Display.DEFAULT_DISPLAY) {
+                    invalidate();
+                }
+            }
+        };
+        displayManager.registerDisplayListener(displayListener, handler);
+    }
+
+    void unregister() {
+        if (displayListener == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return;
+        }
+        DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        if (displayManager != null) {
+            displayManager.unregisterDisplayListener(displayListener);
+        }
+        displayListener = null;
+        handler.removeCallbacks(recompute);
+        recomputeScheduled = false;
+    }
+
+    void invalidate() {
+        valid = false;
+        if (listener != null && !recomputeScheduled) {
+            recomputeScheduled = true;
+            handler.post(recompute);
+        }
+    }
+
+    int dpToPx(int dp) {
+        ensureValid();
+        return (int) (dp * density);
+    }
+
+    double pxToDp(int px) {
+        ensureValid();
+        return px / (double) density;
+    }
+
+    float density() {
+        ensureValid();
+        return density;
+    }
+
+    /**
+     * Physical size of the display, including the system bars.
+     */
+    int realWidthPx() {
+        ensureValid();
+        return realWidth;
+    }
+
+    int realHeightPx() {
+        ensureValid();
+        return realHeight;
+    }
+
+    /**
+     * Size available to applications, without the navigation bar.
+     */
+    int windowWidthPx() {
+        ensureValid();
+        return windowWidth;
+    }
+
+    int windowHeightPx() {
+        ensureValid();
+        return windowHeight;
+    }
+
+    int statusBarHeightPx() {
+        ensureValid();
+        return statusBarHeight;
+    }
+
+    int navigationBarHeightPx() {
+        ensureValid();
+        return navigationBarHeight;
+    }
+
+    boolean isPortrait() {
+        ensureValid();
+        return orientation == Configuration.ORIENTATION_PORTRAIT;
+    }
+
+    /**
+     * The whole display, the frame windows laid out in screen coordinates are placed in. The
+     * returned rect must not be modified.
+     */
+    Rect realBounds() {
+        ensureValid();
+        realBounds.set(0, 0, realWidth, realHeight);
+        return realBounds;
+    }
+
+    /**
+     * Part of the display not covered by the system bars or the display cutout, overlays are
+     * kept inside it. The returned rect must not be modified.
+     */
+    Rect visibleBounds() {
+        ensureValid();
+        return visibleBounds;
+    }
+
+    Map<String, Object> toMap() {
+        ensureValid();
+        Map<String, Object> map = new HashMap<>();
+        map.put("density", (double) density);
+        map.put("realWidth", realWidth);
+        map.put("realHeight", realHeight);
+        map.put("windowWidth", windowWidth);
+        map.put("windowHeight", windowHeight);
+        map.put("visibleLeft", visibleBounds.left);
+        map.put("visibleTop", visibleBounds.top);
+        map.put("visibleRight", visibleBounds.right);
+        map.put("visibleBottom", visibleBounds.bottom);
+        map.put("statusBarHeight", statusBarHeight);
+        map.put("navigationBarHeight", navigationBarHeight);
+        map.put("portrait", orientation == Configuration.ORIENTATION_PORTRAIT);
+        map.put("rotation", rotation);
+        return map;
+    }
+
+    private void recompute() {
+        recomputeScheduled = false;
+        int oldWidth = realWidth;
+        int oldHeight = realHeight;
+        int oldRotation = rotation;
+        float oldDensity = density;
+        int oldLeft = visibleBounds.left;
+        int oldTop = visibleBounds.top;
+        int oldRight = visibleBounds.right;
+        int oldBottom = visibleBounds.bottom;
+        ensureValid();
+        boolean changed = oldWidth != realWidth || oldHeight != realHeight || oldRotation != rotation
+                || oldDensity != density || oldLeft != visibleBounds.left || oldTop != visibleBounds.top
+                || oldRight != visibleBounds.right || oldBottom != visibleBounds.bottom;
+        if (changed && listener != null) {
+            listener.onGeometryChanged(this);
+        }
+    }
+
+    private void ensureValid() {
+        if (!valid) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        Resources resources = context.getResources();
+        density = resources.getDisplayMetrics().density;
+        orientation = resources.getConfiguration().orientation;
+        statusBarHeight = dimension(resources, "status_bar_height", DEFAULT_STATUS_BAR_HEIGHT_DP);
+        navigationBarHeight = dimension(resources, "navigation_bar_height", DEFAULT_NAV_BAR_HEIGHT_DP);
+
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        Display display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+        rotation = display != null ? display.getRotation() : 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && windowManager != null) {
+            refreshFromWindowMetrics(windowManager);
+            valid = true;
+            return;
+        }
+        if (display != null) {
+            display.getSize(size);
+            windowWidth = size.x;
+            windowHeight = size.y;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                display.getRealMetrics(metrics);
+                realWidth = metrics.widthPixels;
+                realHeight = metrics.heightPixels;
+            } else {
+                realWidth = windowWidth;
+                realHeight = windowHeight;
+            }
+        } else {
+            DisplayMetrics fallback = resources.getDisplayMetrics();
+            realWidth = windowWidth = fallback.widthPixels > 0 ? fallback.widthPixels : FALLBACK_WIDTH;
+            realHeight = windowHeight = fallback.heightPixels > 0 ? fallback.heightPixels : FALLBACK_HEIGHT;
+        }
+        // The navigation bar sits at the bottom in portrait and on the side in landscape.
+        if (orientation == Configuration.ORIENTATION_LANDSCAPE && windowWidth < realWidth) {
+            visibleBounds.set(0, statusBarHeight, windowWidth, realHeight);
+        } else {
+            visibleBounds.set(0, statusBarHeight, realWidth, windowHeight);
+        }
+        valid = true;
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void refreshFromWindowMetrics(WindowManager windowManager) {
+        WindowMetrics windowMetrics = windowManager.getMaximumWindowMetrics();
+        Rect bounds = windowMetrics.getBounds();
+        Insets insets = windowMetrics.getWindowInsets().getInsetsIgnoringVisibility(
+                WindowInsets.Type.systemBars() | WindowInsets.Type.displayCutout());
+        realWidth = bounds.width();
+        realHeight = bounds.height();
+        windowWidth = realWidth - insets.left - insets.right;
+        windowHeight = realHeight - insets.top - insets.bottom;
+        visibleBounds.set(bounds.left + insets.left, bounds.top + insets.top,
+                bounds.right - insets.right, bounds.bottom - insets.bottom);
+        Insets statusBars = windowMetrics.getWindowInsets().getInsetsIgnoringVisibility(WindowInsets.Type.statusBars());
+        Insets navigationBars = windowMetrics.getWindowInsets()
+                .getInsetsIgnoringVisibility(WindowInsets.Type.navigationBars());
+        statusBarHeight = statusBars.top;
+        navigationBarHeight = Math.max(navigationBars.bottom, Math.max(navigationBars.left, navigationBars.right));
+    }
+
+    private int dimension(Resources resources, String name, int fallbackDp) {
+        int id = resources.getIdentifier(name, "dimen", "android");
+        return id > 0 ? resources.getDimensionPixelSize(id) : (int) (fallbackDp * density);
+    }
+}
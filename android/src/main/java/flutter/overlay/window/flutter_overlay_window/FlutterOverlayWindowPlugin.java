@@ -6,8 +6,12 @@ import android.app.Activity;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
@@ -18,60 +22,166 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationManagerCompat;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
-import io.flutter.FlutterInjector;
 import io.flutter.embedding.engine.FlutterEngine;
-import io.flutter.embedding.engine.FlutterEngineCache;
 import io.flutter.embedding.engine.FlutterEngineGroup;
-import io.flutter.embedding.engine.dart.DartExecutor;
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
 import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.JSONMessageCodec;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.PluginRegistry;
+import io.flutter.plugin.common.StandardMethodCodec;
 
 public class FlutterOverlayWindowPlugin implements
         FlutterPlugin, ActivityAware, BasicMessageChannel.MessageHandler, MethodCallHandler,
         PluginRegistry.ActivityResultListener {
 
     private MethodChannel channel;
-    private Context context;
+    private volatile Context context;
     private Activity mActivity;
     private BasicMessageChannel<Object> messenger;
+    private BinaryMessenger binaryMessenger;
     private Result pendingResult;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     final int REQUEST_CODE_FOR_OVERLAY_PERMISSION = 1248;
 
+    /**
+     * Calls answered on the channel's background task queue. They only read state that is safe
+     * to read from any thread, everything else is posted to the main thread.
+     */
+    static final Set<String> QUERY_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "checkPermission", "checkAccessibilityPermission", "isOverlayActive", "getActiveOverlays",
+            "getOverlayPosition", "getOverlayState", "getMetrics")));
+
+    static final OverlayChannelManager overlayChannel =
+            new OverlayChannelManager(OverlayConstants.MESSENGER_TAG, JSONMessageCodec.INSTANCE);
+    static final OverlayMessageBatcher messageBatcher = new OverlayMessageBatcher(overlayChannel::send);
+
+    static {
+        overlayChannel.setOwnerListener(messageBatcher::onChannelChanged);
+    }
+    static final Map<String, OverlayChannelManager> windowChannels = new HashMap<>();
+    static OverlayEngineProvider engineProvider;
+
+    /**
+     * Spawns the overlay engine from {@code group} instead of the plugin's own engine group.
+     * <p>
+     * Call it before the main app engine attaches, with the group that created the main app
+     * engine, so the overlay engine shares its Dart VM snapshot and GPU context.
+     */
+    public static void setEngineGroup(@NonNull FlutterEngineGroup group) {
+        OverlayEngineProvider.hostEngineGroup = group;
+    }
+
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
         this.context = flutterPluginBinding.getApplicationContext();
-        channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), OverlayConstants.CHANNEL_TAG);
+        // Set here as well, the first show after a restart can prefetch before the service exists.
+        OverlayService.snapshots.setDirectory(new File(context.getCacheDir(), OverlaySnapshotCache.DIRECTORY_NAME));
+        if (engineProvider == null) {
+            engineProvider = new OverlayEngineProvider(context, readEngineStrategy(),
+                    FlutterOverlayWindowPlugin::bindOverlayEngine);
+        }
+        binaryMessenger = OverlayCountingMessenger.wrap(flutterPluginBinding.getBinaryMessenger());
+        channel = new MethodChannel(binaryMessenger, OverlayConstants.CHANNEL_TAG, StandardMethodCodec.INSTANCE,
+                binaryMessenger.makeBackgroundTaskQueue());
         channel.setMethodCallHandler(this);
 
-        messenger = new BasicMessageChannel(flutterPluginBinding.getBinaryMessenger(), OverlayConstants.MESSENGER_TAG,
+        messenger = new BasicMessageChannel(binaryMessenger, OverlayConstants.MESSENGER_TAG,
                 JSONMessageCodec.INSTANCE);
         messenger.setMessageHandler(this);
 
         WindowSetup.messenger = messenger;
         WindowSetup.messenger.setMessageHandler(this);
+
+        // Overlay engines register this plugin as well. The relays go on the latest main app
+        // engine, never on an overlay engine, whatever order they attach in.
+        if (!engineProvider.isOverlayEngine(flutterPluginBinding.getFlutterEngine())) {
+            if (WindowSetup.hostMessenger != null) {
+                WindowSetup.hostMessenger.setMessageHandler(OverlayConstants.BYTES_MESSENGER_TAG, null);
+            }
+            WindowSetup.hostMessenger = binaryMessenger;
+            WindowSetup.hostMessenger.setMessageHandler(OverlayConstants.BYTES_MESSENGER_TAG,
+                    new OverlayBinaryRelay(OverlayConstants.BYTES_MESSENGER_TAG, overlayChannel::getMessenger));
+            // Overlay windows outlive the main app engine, a reopened app relays to them again.
+            for (Map.Entry<String, OverlayChannelManager> entry : windowChannels.entrySet()) {
+                relayWindowChannel(WindowSetup.hostMessenger, entry.getKey(), entry.getValue());
+            }
+        }
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.N)
+    /**
+     * Runs on the background task queue of the channel: queries are answered right there, the
+     * other calls touch windows, engines or the activity and are posted to the main thread.
+     */
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        if (QUERY_METHODS.contains(call.method)) {
+            try {
+                handleQuery(call, result);
+            } catch (Exception e) {
+                result.error("METHOD_ERROR", e.getMessage(), null);
+            }
+        } else if (Looper.myLooper() == Looper.getMainLooper()) {
+            handleOnMainThread(call, result);
+        } else {
+            mainHandler.post(() -> handleOnMainThread(call, result));
+        }
+    }
+
+    private void handleQuery(MethodCall call, Result result) {
+        switch (call.method) {
+            case "checkAccessibilityPermission":
+                result.success(isAccessibilityPermissionGranted());
+                break;
+            case "checkPermission":
+                result.success(checkOverlayPermission());
+                break;
+            case "isOverlayActive":
+                String overlayId = call.argument("overlayId");
+                result.success(overlayId == null ? OverlayService.states.isAnyActive() : OverlayService.isActive(overlayId));
+                break;
+            case "getOverlayState":
+                result.success(OverlayService.states.get(overlayIdOf(call)).wireName());
+                break;
+            case "getActiveOverlays":
+                result.success(OverlayService.activeOverlayIds());
+                break;
+            case "getOverlayPosition":
+                result.success(OverlayService.getCurrentPosition(overlayIdOf(call)));
+                break;
+            case "getMetrics":
+                Map<String, Object> metrics = OverlayMetrics.snapshot();
+                if (Boolean.TRUE.equals(call.argument("reset"))) {
+                    OverlayMetrics.reset();
+                }
+                result.success(metrics);
+                break;
+            default:
+                result.notImplemented();
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    private void handleOnMainThread(@NonNull MethodCall call, @NonNull Result result) {
         pendingResult = result;
         if (call.method.equals("requestAccessibilityPermission")) {
                 requestAccessibilityPermission();
                 result.success(null);
-        } else if (call.method.equals("checkAccessibilityPermission")) {
-            result.success(isAccessibilityPermissionGranted());
-        } else if (call.method.equals("checkPermission")) {
-            result.success(checkOverlayPermission());
         } else if (call.method.equals("requestPermission")) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION);
@@ -82,20 +192,96 @@ public class FlutterOverlayWindowPlugin implements
             }
         } else if (call.method.equals("showOverlay")) {
             showOverlay(call, result);
-        } else if (call.method.equals("isOverlayActive")) {
-            result.success(OverlayService.isRunning);
-            return;
         } else if (call.method.equals("moveOverlay")) {
             int x = call.argument("x");
             int y = call.argument("y");
-            result.success(OverlayService.moveOverlay(x, y));
-        } else if (call.method.equals("getOverlayPosition")) {
-            result.success(OverlayService.getCurrentPosition());
+            result.success(OverlayService.moveOverlay(overlayIdOf(call), x, y));
+        } else if (call.method.equals("applyWindowUpdate")) {
+            OverlayService.applyWindowUpdate(overlayIdOf(call), call.arguments(), result);
+        } else if (call.method.equals("animateOverlay")) {
+            OverlayService.animateOverlay(overlayIdOf(call), call.arguments(), result);
+        } else if (call.method.equals("cancelOverlayAnimation")) {
+            result.success(OverlayService.cancelOverlayAnimation(overlayIdOf(call)));
+        } else if (call.method.equals("setPositionUpdates")) {
+            OverlayService.setPositionUpdates(overlayIdOf(call), Boolean.TRUE.equals(call.argument("enabled")));
+            result.success(true);
+        } else if (call.method.equals("hideOverlay")) {
+            result.success(OverlayService.hideOverlay(overlayIdOf(call)));
+        } else if (call.method.equals("revealOverlay")) {
+            OverlayService.revealOverlay(overlayIdOf(call), result);
+        } else if (call.method.equals("getVisibilityTimings")) {
+            result.success(OverlayService.getVisibilityTimings(overlayIdOf(call)));
+        } else if (call.method.equals("configureWakeLock")) {
+            Number timeoutMs = call.argument("timeoutMs");
+            OverlayService.configureWakeLock(
+                    OverlayWakeLockPolicy.Mode.parse(call.argument("mode"), OverlayWakeLockPolicy.Mode.ALWAYS),
+                    timeoutMs != null ? timeoutMs.longValue() : OverlayWakeLockPolicy.DEFAULT_TIMEOUT_MS);
+            result.success(true);
+        } else if (call.method.equals("getWakeLockState")) {
+            result.success(OverlayService.wakeLockPolicy.getState());
+        } else if (call.method.equals("configureSnapshotCache")) {
+            Integer maxBytes = call.argument("maxBytes");
+            OverlayService.configureSnapshotCache(maxBytes != null ? maxBytes : OverlaySnapshotCache.DEFAULT_MAX_BYTES,
+                    Boolean.TRUE.equals(call.argument("diskSpill")));
+            result.success(true);
+        } else if (call.method.equals("clearOverlaySnapshots")) {
+            OverlayService.clearSnapshots(call.argument("overlayId"));
+            result.success(true);
+        } else if (call.method.equals("configureMessageBatching")) {
+            Boolean enabled = call.argument("enabled");
+            Integer capacity = call.argument("capacity");
+            Number flushIntervalMs = call.argument("flushIntervalMs");
+            messageBatcher.configure(enabled != null && enabled,
+                    capacity != null ? capacity : OverlayMessageBatcher.DEFAULT_CAPACITY,
+                    call.argument("policy"), call.argument("keyField"),
+                    flushIntervalMs != null ? flushIntervalMs.longValue() : 0);
+            result.success(true);
+        } else if (call.method.equals("getMessageStats")) {
+            result.success(messageBatcher.getStats());
+        } else if (call.method.equals("configureAccessibilityEvents")) {
+            Boolean enabled = call.argument("enabled");
+            Integer eventTypes = call.argument("eventTypes");
+            Number debounceMs = call.argument("debounceMs");
+            Boolean includeNodeInfo = call.argument("includeNodeInfo");
+            Boolean applyToServiceInfo = call.argument("applyToServiceInfo");
+            OverlayService.configureAccessibilityEvents(enabled != null && enabled,
+                    eventTypes != null ? eventTypes : 0, call.argument("packageNames"),
+                    debounceMs != null ? debounceMs.longValue() : OverlayAccessibilityPipeline.DEFAULT_DEBOUNCE_MS,
+                    includeNodeInfo != null && includeNodeInfo,
+                    applyToServiceInfo != null && applyToServiceInfo);
+            result.success(true);
+        } else if (call.method.equals("getAccessibilityStats")) {
+            result.success(OverlayService.accessibilityEvents.getStats());
+        } else if (call.method.equals("configureForegroundTracking")) {
+            Boolean enabled = call.argument("enabled");
+            OverlayService.configureForegroundTracking(enabled != null && enabled, call.argument("rules"),
+                    call.argument("defaultAction"), call.argument("overlayIds"));
+            result.success(true);
+        } else if (call.method.equals("getForegroundState")) {
+            result.success(OverlayService.foregroundTracker.getStats());
+        } else if (call.method.equals("getDisplayGeometry")) {
+            result.success(OverlayService.displayGeometry(context));
+        } else if (call.method.equals("setEngineStrategy")) {
+            engineProvider.setStrategy(OverlayEngineProvider.Strategy.parse(call.argument("strategy"),
+                    engineProvider.getStrategy()));
+            result.success(true);
+        } else if (call.method.equals("getEngineState")) {
+            Map<String, Object> state = new HashMap<>();
+            state.put("strategy", engineProvider.getStrategy().name().toLowerCase(Locale.ROOT));
+            state.put("readiness", engineProvider.getReadiness().name().toLowerCase(Locale.ROOT));
+            result.success(state);
         } else if (call.method.equals("closeOverlay")) {
             if (OverlayService.isRunning) {
-                OverlayService.removeOverlay();
-                final Intent i = new Intent(context, OverlayService.class);
-                context.stopService(i);
+                String overlayId = call.argument("overlayId");
+                if (overlayId != null) {
+                    OverlayService.removeOverlay(overlayId);
+                } else {
+                    OverlayService.removeOverlay();
+                }
+                if (!OverlayService.isRunning) {
+                    final Intent i = new Intent(context, OverlayService.class);
+                    context.stopService(i);
+                }
                 result.success(true);
             }
             return;
@@ -109,19 +295,16 @@ public class FlutterOverlayWindowPlugin implements
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
         channel.setMethodCallHandler(null);
         WindowSetup.messenger.setMessageHandler(null);
+        if (WindowSetup.hostMessenger == binaryMessenger) {
+            WindowSetup.hostMessenger.setMessageHandler(OverlayConstants.BYTES_MESSENGER_TAG, null);
+            WindowSetup.hostMessenger = null;
+        }
     }
 
     @Override
     public void onAttachedToActivity(@NonNull ActivityPluginBinding binding) {
         mActivity = binding.getActivity();
-        if (FlutterEngineCache.getInstance().get(OverlayConstants.CACHED_TAG) == null) {
-            FlutterEngineGroup enn = new FlutterEngineGroup(context);
-            DartExecutor.DartEntrypoint dEntry = new DartExecutor.DartEntrypoint(
-                    FlutterInjector.instance().flutterLoader().findAppBundlePath(),
-                    "overlayMain");
-            FlutterEngine engine = enn.createAndRunEngine(context, dEntry);
-            FlutterEngineCache.getInstance().put(OverlayConstants.CACHED_TAG, engine);
-        }
+        engineProvider.onHostAttached();
     }
 
     @Override
@@ -139,11 +322,79 @@ public class FlutterOverlayWindowPlugin implements
 
     @Override
     public void onMessage(@Nullable Object message, @NonNull BasicMessageChannel.Reply reply) {
-        BasicMessageChannel overlayMessageChannel = new BasicMessageChannel(
-                FlutterEngineCache.getInstance().get(OverlayConstants.CACHED_TAG)
-                        .getDartExecutor(),
-                OverlayConstants.MESSENGER_TAG, JSONMessageCodec.INSTANCE);
-        overlayMessageChannel.send(message, reply);
+        if (!overlayChannel.isBound()) {
+            FlutterEngine engine = engineProvider.cachedEngine(OverlayConstants.DEFAULT_OVERLAY_ID);
+            if (engine != null) {
+                bindOverlayEngine(engine);
+            }
+        }
+        OverlayService.onOverlayMessage(OverlayConstants.DEFAULT_OVERLAY_ID);
+        if (messageBatcher.isEnabled()) {
+            messageBatcher.offer(message);
+            reply.reply(null);
+            return;
+        }
+        overlayChannel.send(message, reply);
+    }
+
+    private static String overlayIdOf(MethodCall call) {
+        String overlayId = call.argument("overlayId");
+        return overlayId != null ? overlayId : OverlayConstants.DEFAULT_OVERLAY_ID;
+    }
+
+    private static void bindOverlayEngine(@NonNull String overlayId, @NonNull FlutterEngine engine) {
+        if (OverlayConstants.DEFAULT_OVERLAY_ID.equals(overlayId)) {
+            bindOverlayEngine(engine);
+            return;
+        }
+        bindChannel(windowChannel(overlayId), engine);
+    }
+
+    private static void bindOverlayEngine(@NonNull FlutterEngine engine) {
+        bindChannel(overlayChannel, engine);
+    }
+
+    private static void bindChannel(@NonNull OverlayChannelManager manager, @NonNull FlutterEngine engine) {
+        if (manager.isBoundTo(engine)) {
+            return;
+        }
+        manager.bind(engine, OverlayCountingMessenger.wrap(engine.getDartExecutor()));
+        engine.addEngineLifecycleListener(new FlutterEngine.EngineLifecycleListener() {
+            @Override
+            public void onPreEngineRestart() {
+            }
+
+            @Override
+            public void onEngineWillDestroy() {
+                manager.unbind(engine);
+            }
+        });
+    }
+
+    /**
+     * Returns the channel to the overlay window {@code overlayId}, and relays what the main app
+     * sends on {@link OverlayConstants#messengerTag(String)} to it.
+     */
+    private static OverlayChannelManager windowChannel(@NonNull String overlayId) {
+        OverlayChannelManager manager = windowChannels.get(overlayId);
+        if (manager != null) {
+            return manager;
+        }
+        manager = new OverlayChannelManager(OverlayConstants.MESSENGER_TAG, JSONMessageCodec.INSTANCE);
+        windowChannels.put(overlayId, manager);
+        if (WindowSetup.hostMessenger != null) {
+            relayWindowChannel(WindowSetup.hostMessenger, overlayId, manager);
+        }
+        return manager;
+    }
+
+    private static void relayWindowChannel(@NonNull BinaryMessenger hostMessenger, @NonNull String overlayId,
+                                           @NonNull OverlayChannelManager target) {
+        new BasicMessageChannel<>(hostMessenger, OverlayConstants.messengerTag(overlayId),
+                JSONMessageCodec.INSTANCE).setMessageHandler((message, reply) -> {
+            OverlayService.onOverlayMessage(overlayId);
+            target.send(message, reply);
+        });
     }
 
         private void requestAccessibilityPermission() {
@@ -176,6 +427,18 @@ public class FlutterOverlayWindowPlugin implements
         }
 
         
+    private OverlayEngineProvider.Strategy readEngineStrategy() {
+        try {
+            ApplicationInfo info = context.getPackageManager()
+                    .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            String name = info.metaData != null ? info.metaData.getString(OverlayConstants.ENGINE_STRATEGY_META) : null;
+            return OverlayEngineProvider.Strategy.parse(name, OverlayEngineProvider.Strategy.EAGER);
+        } catch (Exception e) {
+            Log.e("FlutterOverlayPlugin", "Error reading engine strategy: " + e.getMessage());
+            return OverlayEngineProvider.Strategy.EAGER;
+        }
+    }
+
     private boolean checkOverlayPermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             return Settings.canDrawOverlays(context);
@@ -194,46 +457,28 @@ public class FlutterOverlayWindowPlugin implements
 
     private void showOverlay(MethodCall call, Result result) {
         try {
-            if (FlutterEngineCache.getInstance().get(OverlayConstants.CACHED_TAG) == null) {
-                Log.d("FlutterOverlayPlugin", "Engine is null, trying to recreate");
-                FlutterEngineGroup enn = new FlutterEngineGroup(context);
-                DartExecutor.DartEntrypoint dEntry = new DartExecutor.DartEntrypoint(
-                        FlutterInjector.instance().flutterLoader().findAppBundlePath(),
-                        "overlayMain");
-                FlutterEngine engine = enn.createAndRunEngine(context, dEntry);
-                FlutterEngineCache.getInstance().put(OverlayConstants.CACHED_TAG, engine);
+            OverlayWindowConfig config = OverlayWindowConfig.fromCall(call);
+            OverlayMetrics.beginAsyncSection(OverlayMetrics.SECTION_SHOW, config.id.hashCode());
+            OverlayEngineProvider.Provision provision = engineProvider.obtain(config.id, config.entrypoint);
+            if (config.snapshotPlaceholder) {
+                // Decoded while the service starts, the window only takes it if it is ready by then.
+                OverlayService.snapshots.prefetch(config.id);
             }
 
-            Integer height = call.argument("height");
-            Integer width = call.argument("width");
-            String alignment = call.argument("alignment");
-            String flag = call.argument("flag");
             String overlayTitle = call.argument("overlayTitle");
             String overlayContent = call.argument("overlayContent");
             String notificationVisibility = call.argument("notificationVisibility");
-            boolean enableDrag = call.argument("enableDrag");
-            String positionGravity = call.argument("positionGravity");
-            Map<String, Integer> startPosition = call.argument("startPosition");
-            int startX = startPosition != null ? startPosition.getOrDefault("x", OverlayConstants.DEFAULT_XY) : OverlayConstants.DEFAULT_XY;
-            int startY = startPosition != null ? startPosition.getOrDefault("y", OverlayConstants.DEFAULT_XY) : OverlayConstants.DEFAULT_XY;
-
-            WindowSetup.width = width != null ? width : -1;
-            WindowSetup.height = height != null ? height : -1;
-            WindowSetup.enableDrag = enableDrag;
-            WindowSetup.setGravityFromAlignment(alignment != null ? alignment : "center");
-            WindowSetup.setFlag(flag != null ? flag : "flagNotFocusable");
-            WindowSetup.overlayTitle = overlayTitle;
-            WindowSetup.overlayContent = overlayContent == null ? "" : overlayContent;
-            WindowSetup.positionGravity = positionGravity;
-            WindowSetup.setNotificationVisibility(notificationVisibility);
+
+            WindowSetup.publish(config, overlayTitle, overlayContent == null ? "" : overlayContent,
+                    notificationVisibility);
 
             final Intent intent = new Intent(context, OverlayService.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-            intent.putExtra("startX", startX);
-            intent.putExtra("startY", startY);
+            intent.putExtra(OverlayService.INTENT_EXTRA_OVERLAY_ID, config.id);
             context.startService(intent);
-            result.success(null);
+            OverlayService.states.moveTo(config.id, OverlayStateMachine.State.STARTING);
+            result.success(provision.toMap());
         } catch (Exception e) {
             Log.e("FlutterOverlayPlugin", "Error showing overlay: " + e.getMessage());
             result.error("SHOW_ERROR", e.getMessage(), null);
@@ -0,0 +1,219 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filters the events received by the accessibility service and delivers them to the overlay
+ * engines in debounced batches.
+ * <p>
+ * Nothing is done until the pipeline is configured from Dart. Events outside the configured
+ * types or packages are dropped before anything is read from them, events of the same type and
+ * package within one debounce window are coalesced to the latest one, and the source node is
+ * only fetched over IPC when the consumer asked for node info.
+ */
+final class OverlayAccessibilityPipeline implements Runnable {
+
+    interface Sink {
+        void deliver(List<Map<String, Object>> events);
+    }
+
+    static final long DEFAULT_DEBOUNCE_MS = 100;
+
+    private final Sink sink;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+
+    private boolean enabled;
+    private int eventTypes = AccessibilityEvent.TYPES_ALL_MASK;
+    private Set<String> packageNames = new HashSet<>();
+    private long debounceMs = DEFAULT_DEBOUNCE_MS;
+    private boolean includeNodeInfo;
+    private boolean applyToServiceInfo;
+    private boolean flushScheduled;
+    private int requiredEventTypes;
+    /** The service whose info was narrowed, and what it had before, restored once narrowing stops. */
+    @Nullable
+    private AccessibilityService narrowedService;
+    private int originalEventTypes;
+    @Nullable
+    private String[] originalPackageNames;
+
+    private long received;
+    private long filtered;
+    private long coalesced;
+    private long delivered;
+
+    OverlayAccessibilityPipeline(Sink sink) {
+        this.sink = sink;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies the configuration sent by {@code FlutterOverlayWindow.configureAccessibilityEvents}.
+     * An {@code eventTypes} of zero accepts every type, an empty package list every package.
+     */
+    void configure(boolean enabled, int eventTypes, @Nullable List<String> packageNames, long debounceMs,
+                   boolean includeNodeInfo, boolean applyToServiceInfo) {
+        this.enabled = enabled;
+        this.eventTypes = eventTypes != 0 ? eventTypes : AccessibilityEvent.TYPES_ALL_MASK;
+        this.packageNames = packageNames != null ? new HashSet<>(packageNames) : new HashSet<>();
+        this.debounceMs = Math.max(0, debounceMs);
+        this.includeNodeInfo = includeNodeInfo;
+        this.applyToServiceInfo = applyToServiceInfo;
+        if (!enabled) {
+            handler.removeCallbacks(this);
+            flushScheduled = false;
+            pending.clear();
+        }
+    }
+
+    /**
+     * Event types other consumers of the service need, they are kept when narrowing the service info.
+     */
+    void setRequiredEventTypes(int requiredEventTypes) {
+        this.requiredEventTypes = requiredEventTypes;
+    }
+
+    /**
+     * Narrows what the system sends to {@code service} to the configured types and packages,
+     * so filtered events do not even cross the process boundary. The info the service had before
+     * is restored as soon as the pipeline is disabled or stops applying to it.
+     */
+    void applyServiceInfo(@Nullable AccessibilityService service) {
+        if (service == null) {
+            return;
+        }
+        if (service != narrowedService) {
+            // A new connection starts from its own declared info, nothing of ours to restore.
+            narrowedService = null;
+        }
+        boolean narrow = enabled && applyToServiceInfo;
+        if (!narrow && narrowedService == null) {
+            return;
+        }
+        AccessibilityServiceInfo info = service.getServiceInfo();
+        if (info == null) {
+            return;
+        }
+        if (!narrow) {
+            info.eventTypes = originalEventTypes;
+            info.packageNames = originalPackageNames;
+            narrowedService = null;
+        } else {
+            if (narrowedService == null) {
+                originalEventTypes = info.eventTypes;
+                originalPackageNames = info.packageNames;
+                narrowedService = service;
+            }
+            info.eventTypes = eventTypes | requiredEventTypes;
+            info.packageNames = requiredEventTypes == 0 && !packageNames.isEmpty()
+                    ? packageNames.toArray(new String[0])
+                    : originalPackageNames;
+        }
+        service.setServiceInfo(info);
+    }
+
+    void onEvent(@Nullable AccessibilityEvent event) {
+        if (!enabled || event == null) {
+            return;
+        }
+        received++;
+        int type = event.getEventType();
+        CharSequence packageName = event.getPackageName();
+        if ((type & eventTypes) == 0
+                || (!packageNames.isEmpty() && (packageName == null || !packageNames.contains(packageName.toString())))) {
+            filtered++;
+            return;
+        }
+
+        // The event is recycled by the system once onAccessibilityEvent returns, copy what is needed now.
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("eventType", type);
+        snapshot.put("packageName", packageName != null ? packageName.toString() : null);
+        snapshot.put("className", event.getClassName() != null ? event.getClassName().toString() : null);
+        snapshot.put("eventTime", event.getEventTime());
+        if (includeNodeInfo) {
+            snapshot.put("node", nodeInfo(event));
+        }
+
+        String key = type + "|" + snapshot.get("packageName");
+        if (pending.remove(key) != null) {
+            coalesced++;
+        }
+        pending.put(key, snapshot);
+        scheduleFlush();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("received", received);
+        stats.put("filtered", filtered);
+        stats.put("coalesced", coalesced);
+        stats.put("delivered", delivered);
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map<String, Object>> events = new ArrayList<>(pending.values());
+        pending.clear();
+        delivered += events.size();
+        sink.deliver(events);
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        handler.postDelayed(this, debounceMs);
+    }
+
+    @Nullable
+    private static Map<String, Object> nodeInfo(AccessibilityEvent event) {
+        AccessibilityNodeInfo node = event.getSource();
+        if (node == null) {
+            return null;
+        }
+        try {
+            Map<String, Object> info = new HashMap<>();
+            info.put("className", node.getClassName() != null ? node.getClassName().toString() : null);
+            info.put("text", node.getText() != null ? node.getText().toString() : null);
+            info.put("contentDescription",
+                    node.getContentDescription() != null ? node.getContentDescription().toString() : null);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                info.put("viewId", node.getViewIdResourceName());
+            }
+            Rect bounds = new Rect();
+            node.getBoundsInScreen(bounds);
+            info.put("bounds", new int[]{bounds.left, bounds.top, bounds.right, bounds.bottom});
+            return info;
+        } finally {
+            node.recycle();
+        }
+    }
+}
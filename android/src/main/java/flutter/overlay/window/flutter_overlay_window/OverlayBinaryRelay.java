@@ -0,0 +1,60 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+import io.flutter.plugin.common.BinaryMessenger;
+
+/**
+ * Forwards raw platform messages between the main app and the overlay engine.
+ * <p>
+ * Payloads are never decoded: the direct buffer handed over by the engine is sent
+ * as-is to the other side, and so is the reply.
+ */
+final class OverlayBinaryRelay implements BinaryMessenger.BinaryMessageHandler {
+
+    interface Target {
+        @Nullable
+        BinaryMessenger get();
+    }
+
+    private final String channel;
+    private final Target target;
+
+    OverlayBinaryRelay(String channel, Target target) {
+        this.channel = channel;
+        this.target = target;
+    }
+
+    @Override
+    public void onMessage(@Nullable ByteBuffer message, @NonNull BinaryMessenger.BinaryReply reply) {
+        BinaryMessenger messenger = target.get();
+        if (messenger == null) {
+            reply.reply(null);
+            return;
+        }
+        messenger.send(channel, forwardable(message), response -> reply.reply(forwardable(response)));
+    }
+
+    /**
+     * Incoming buffers start at position 0 while the messenger reads the payload size from
+     * the position of outgoing ones. Direct buffers are reused in place, anything else is
+     * copied once into a direct buffer.
+     */
+    @Nullable
+    static ByteBuffer forwardable(@Nullable ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.isDirect()) {
+            buffer.position(buffer.limit());
+            return buffer;
+        }
+        ByteBuffer copy = ByteBuffer.allocateDirect(buffer.limit());
+        buffer.rewind();
+        copy.put(buffer);
+        return copy;
+    }
+}
@@ -0,0 +1,136 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MessageCodec;
+
+/**
+ * Owns the main app to overlay message channel.
+ * <p>
+ * The channel is created once per overlay engine and rebound when the engine is
+ * replaced. While no engine is bound, messages are queued up to
+ * {@link #MAX_PENDING_MESSAGES} and delivered as soon as one is. When the queue is full the
+ * oldest message is dropped and its sender gets {@link #DROPPED_REPLY}, which
+ * {@code shareData} turns into an {@code OverlayMessageDroppedException}.
+ */
+final class OverlayChannelManager {
+
+    static final int MAX_PENDING_MESSAGES = 64;
+    static final String DROPPED_REPLY_KEY = "overlayMessageDropped";
+    static final Map<String, Object> DROPPED_REPLY = Collections.singletonMap(DROPPED_REPLY_KEY, true);
+    private static final String TAG = "OverlayChannelManager";
+
+    private final String channelName;
+    private final MessageCodec<Object> codec;
+    private final ArrayDeque<PendingMessage> pending = new ArrayDeque<>();
+    private Object owner;
+    private BinaryMessenger messenger;
+    private BasicMessageChannel<Object> channel;
+    @Nullable
+    private Runnable ownerListener;
+
+    OverlayChannelManager(String channelName, MessageCodec<Object> codec) {
+        this.channelName = channelName;
+        this.codec = codec;
+    }
+
+    /**
+     * Called on the main thread after the channel is bound to another owner or dropped.
+     */
+    void setOwnerListener(@Nullable Runnable listener) {
+        this.ownerListener = listener;
+    }
+
+    /**
+     * Binds the channel to the messenger of {@code owner}, usually the overlay {@code FlutterEngine}.
+     * Binding the same owner again is a no-op.
+     */
+    void bind(@NonNull Object owner, @NonNull BinaryMessenger messenger) {
+        if (this.owner == owner) {
+            return;
+        }
+        this.owner = owner;
+        this.messenger = messenger;
+        this.channel = new BasicMessageChannel<>(messenger, channelName, codec);
+        while (!pending.isEmpty()) {
+            PendingMessage message = pending.poll();
+            channel.send(message.message, message.reply);
+        }
+        notifyOwnerChanged();
+    }
+
+    /**
+     * Drops the channel if it still belongs to {@code owner}, e.g. when that engine is destroyed.
+     */
+    void unbind(@NonNull Object owner) {
+        if (this.owner != owner) {
+            return;
+        }
+        this.owner = null;
+        this.messenger = null;
+        this.channel = null;
+        notifyOwnerChanged();
+    }
+
+    private void notifyOwnerChanged() {
+        if (ownerListener != null) {
+            ownerListener.run();
+        }
+    }
+
+    boolean isBound() {
+        return channel != null;
+    }
+
+    boolean isBoundTo(@Nullable Object owner) {
+        return owner != null && this.owner == owner;
+    }
+
+    @Nullable
+    BinaryMessenger getMessenger() {
+        return messenger;
+    }
+
+    @Nullable
+    BasicMessageChannel<Object> getChannel() {
+        return channel;
+    }
+
+    void send(@Nullable Object message, @Nullable BasicMessageChannel.Reply<Object> reply) {
+        if (channel != null) {
+            channel.send(message, reply);
+            return;
+        }
+        if (pending.size() >= MAX_PENDING_MESSAGES) {
+            PendingMessage dropped = pending.poll();
+            Log.w(TAG, "Overlay engine is not running, dropping the oldest queued message on " + channelName);
+            if (dropped.reply != null) {
+                dropped.reply.reply(DROPPED_REPLY);
+            }
+        }
+        pending.add(new PendingMessage(message, reply));
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private static final class PendingMessage {
+        final Object message;
+        final BasicMessageChannel.Reply<Object> reply;
+
+        PendingMessage(Object message, BasicMessageChannel.Reply<Object> reply) {
+            this.message = message;
+            this.reply = reply;
+        }
+    }
+}
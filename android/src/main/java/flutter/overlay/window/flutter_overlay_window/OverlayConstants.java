@@ -6,7 +6,31 @@ final public class OverlayConstants {
     static final String CHANNEL_TAG = "x-slayer/overlay_channel";
     static final String OVERLAY_TAG = "x-slayer/overlay";
     static final String MESSENGER_TAG = "x-slayer/overlay_messenger";
+    static final String BYTES_MESSENGER_TAG = "x-slayer/overlay_bytes_messenger";
+    static final String ACCESSIBILITY_TAG = "x-slayer/overlay_accessibility";
+    static final String FOREGROUND_TAG = "x-slayer/overlay_foreground";
+    static final String GEOMETRY_TAG = "x-slayer/overlay_geometry";
+    static final String POSITION_TAG = "x-slayer/overlay_position";
+    static final String STATE_TAG = "x-slayer/overlay_state";
     static final String CHANNEL_ID = "Overlay Channel";
     static final int NOTIFICATION_ID = 4579;
     static final int DEFAULT_XY = -6;
+    static final String ENGINE_STRATEGY_META = "flutter.overlay.window.engineStrategy";
+    static final String WAKELOCK_POLICY_META = "flutter.overlay.window.wakeLockPolicy";
+    static final String DEFAULT_OVERLAY_ID = "default";
+    static final String DEFAULT_ENTRYPOINT = "overlayMain";
+
+    /**
+     * Cache key of the engine behind an overlay window, the default window keeps the historical tag.
+     */
+    static String engineTag(String overlayId) {
+        return DEFAULT_OVERLAY_ID.equals(overlayId) ? CACHED_TAG : CACHED_TAG + "/" + overlayId;
+    }
+
+    /**
+     * Main app side messenger channel of an overlay window.
+     */
+    static String messengerTag(String overlayId) {
+        return DEFAULT_OVERLAY_ID.equals(overlayId) ? MESSENGER_TAG : MESSENGER_TAG + "/" + overlayId;
+    }
 }
@@ -0,0 +1,93 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+import io.flutter.plugin.common.BinaryMessenger;
+
+/**
+ * {@link BinaryMessenger} that counts the messages and bytes going through it in
+ * {@link OverlayMetrics}. Sends count as sent, messages handed to a handler as received; the
+ * bytes of replies are added to the direction they travel in.
+ */
+final class OverlayCountingMessenger implements BinaryMessenger {
+
+    final BinaryMessenger delegate;
+
+    OverlayCountingMessenger(BinaryMessenger delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Wraps {@code messenger} unless it already counts.
+     */
+    static BinaryMessenger wrap(BinaryMessenger messenger) {
+        return messenger instanceof OverlayCountingMessenger ? messenger : new OverlayCountingMessenger(messenger);
+    }
+
+    @Override
+    public void send(@NonNull String channel, @Nullable ByteBuffer message) {
+        countSent(message, true);
+        delegate.send(channel, message);
+    }
+
+    @Override
+    public void send(@NonNull String channel, @Nullable ByteBuffer message, @Nullable BinaryReply callback) {
+        countSent(message, true);
+        delegate.send(channel, message, callback == null ? null : reply -> {
+            countReceived(reply, false);
+            callback.reply(reply);
+        });
+    }
+
+    @Override
+    public void setMessageHandler(@NonNull String channel, @Nullable BinaryMessageHandler handler) {
+        delegate.setMessageHandler(channel, counting(handler));
+    }
+
+    @Override
+    public TaskQueue makeBackgroundTaskQueue() {
+        return delegate.makeBackgroundTaskQueue();
+    }
+
+    @Override
+    public void setMessageHandler(@NonNull String channel, @Nullable BinaryMessageHandler handler,
+                                  @Nullable TaskQueue taskQueue) {
+        delegate.setMessageHandler(channel, counting(handler), taskQueue);
+    }
+
+    @Nullable
+    private static BinaryMessageHandler counting(@Nullable BinaryMessageHandler handler) {
+        if (handler == null) {
+            return null;
+        }
+        return (message, reply) -> {
+            countReceived(message, true);
+            handler.onMessage(message, response -> {
+                countSent(response, false);
+                reply.reply(response);
+            });
+        };
+    }
+
+    // Outgoing buffers end at their position, incoming ones start at 0 and end at their limit.
+    private static void countSent(@Nullable ByteBuffer message, boolean isMessage) {
+        if (isMessage) {
+            OverlayMetrics.increment(OverlayMetrics.MESSAGES_SENT, 1);
+        }
+        if (message != null) {
+            OverlayMetrics.increment(OverlayMetrics.BYTES_SENT, message.position());
+        }
+    }
+
+    private static void countReceived(@Nullable ByteBuffer message, boolean isMessage) {
+        if (isMessage) {
+            OverlayMetrics.increment(OverlayMetrics.MESSAGES_RECEIVED, 1);
+        }
+        if (message != null) {
+            OverlayMetrics.increment(OverlayMetrics.BYTES_RECEIVED, message.limit());
+        }
+    }
+}
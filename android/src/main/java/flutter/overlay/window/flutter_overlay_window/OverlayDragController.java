@@ -0,0 +1,196 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.WindowManager;
+
+/**
+ * Turns the raw touch stream of the overlay into window moves.
+ * <p>
+ * Move deltas are accumulated (historical samples included) and applied to the
+ * window at most once per display frame, so a 120 Hz digitizer no longer
+ * produces several {@code updateViewLayout} calls per frame.
+ */
+final class OverlayDragController implements Choreographer.FrameCallback {
+
+    interface LayoutCommitter {
+        void commit(WindowManager.LayoutParams params);
+    }
+
+    private static final float TOUCH_SLOP_SQUARED = 25f;
+
+    private final LayoutCommitter committer;
+    private WindowManager.LayoutParams params;
+    private float downX, downY;
+    private float lastX, lastY;
+    private float pendingDx, pendingDy;
+    private boolean dragging;
+    private boolean invertX, invertY;
+    private boolean frameScheduled;
+    private long frameRequestedNanos;
+    private VelocityTracker velocityTracker;
+    private float velocityX, velocityY;
+
+    OverlayDragController(LayoutCommitter committer) {
+        this.committer = committer;
+    }
+
+    boolean isDragging() {
+        return dragging;
+    }
+
+    /**
+     * Release velocity of the last gesture in px/s, already in the window's x/y direction.
+     */
+    float getVelocityX() {
+        return velocityX;
+    }
+
+    float getVelocityY() {
+        return velocityY;
+    }
+
+    void onDown(MotionEvent event, WindowManager.LayoutParams params, int gravity) {
+        cancel();
+        this.params = params;
+        dragging = false;
+        downX = lastX = event.getRawX();
+        downY = lastY = event.getRawY();
+        velocityX = velocityY = 0;
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        } else {
+            velocityTracker.clear();
+        }
+        trackVelocity(event);
+        invertX = gravity == (Gravity.TOP | Gravity.RIGHT)
+                || gravity == (Gravity.CENTER | Gravity.RIGHT)
+                || gravity == (Gravity.BOTTOM | Gravity.RIGHT);
+        invertY = gravity == (Gravity.BOTTOM | Gravity.LEFT)
+                || gravity == Gravity.BOTTOM
+                || gravity == (Gravity.BOTTOM | Gravity.RIGHT);
+    }
+
+    /**
+     * Feeds one {@link MotionEvent#ACTION_MOVE} (with its batched history) into the pipeline.
+     *
+     * @return true once the gesture has crossed the touch slop and is moving the window
+     */
+    boolean onMove(MotionEvent event) {
+        if (params == null) {
+            return false;
+        }
+        // Historical samples only carry view-relative coordinates. The window does not move
+        // while a batch is being dispatched, so the raw offset of the event applies to all of them.
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        final int historySize = event.getHistorySize();
+        for (int h = 0; h < historySize; h++) {
+            addSample(event.getHistoricalX(h) + offsetX, event.getHistoricalY(h) + offsetY);
+        }
+        addSample(event.getRawX(), event.getRawY());
+        trackVelocity(event);
+
+        if (dragging && !frameScheduled) {
+            frameScheduled = true;
+            frameRequestedNanos = System.nanoTime();
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+        return dragging;
+    }
+
+    /**
+     * Ends the gesture and commits whatever is still pending so the final position is exact.
+     */
+    void onUp(MotionEvent event) {
+        if (velocityTracker != null && params != null) {
+            trackVelocity(event);
+            velocityTracker.computeCurrentVelocity(1000);
+            velocityX = invertX ? -velocityTracker.getXVelocity() : velocityTracker.getXVelocity();
+            velocityY = invertY ? -velocityTracker.getYVelocity() : velocityTracker.getYVelocity();
+        }
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        flush();
+        params = null;
+    }
+
+    /**
+     * Drops any pending delta without touching the window.
+     */
+    void cancel() {
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        pendingDx = pendingDy = 0;
+        params = null;
+    }
+
+    /**
+     * Cancels the gesture and frees the velocity tracker, called once the window is gone.
+     */
+    void release() {
+        cancel();
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        OverlayMetrics.onDragFrame(frameTimeNanos - frameRequestedNanos);
+        flush();
+    }
+
+    private void trackVelocity(MotionEvent event) {
+        if (velocityTracker == null) {
+            return;
+        }
+        // The window follows the finger, so view-relative coordinates barely change during a drag.
+        // Shift the event into screen space for the tracker and restore it afterwards.
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        velocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+
+    private void addSample(float rawX, float rawY) {
+        if (!dragging) {
+            float sx = rawX - downX;
+            float sy = rawY - downY;
+            if (sx * sx + sy * sy < TOUCH_SLOP_SQUARED) {
+                return;
+            }
+            dragging = true;
+        }
+        pendingDx += rawX - lastX;
+        pendingDy += rawY - lastY;
+        lastX = rawX;
+        lastY = rawY;
+    }
+
+    private void flush() {
+        if (params == null) {
+            return;
+        }
+        // Only whole pixels are applied, the remainder is carried over to the next frame.
+        int dx = (int) pendingDx;
+        int dy = (int) pendingDy;
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        pendingDx -= dx;
+        pendingDy -= dy;
+        params.x += invertX ? -dx : dx;
+        params.y += invertY ? -dy : dy;
+        committer.commit(params);
+    }
+}
@@ -0,0 +1,287 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.flutter.FlutterInjector;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.FlutterEngineGroup;
+import io.flutter.embedding.engine.dart.DartExecutor;
+
+/**
+ * Creates overlay engines and keeps them in {@link FlutterEngineCache}, one per overlay id
+ * under {@link OverlayConstants#engineTag(String)}.
+ * <p>
+ * When the engine is created depends on the {@link Strategy}: right when the main app
+ * attaches, the first time the overlay is shown, or the first time the main thread
+ * goes idle after the main app attached. All methods must be called on the main thread.
+ * <p>
+ * Every overlay engine is created from one long-lived {@link FlutterEngineGroup}. An engine is
+ * only spawned, sharing the Dart VM snapshot and GPU context, while another engine of the group
+ * is still running: once every overlay engine was evicted the group is empty, and the next one
+ * pays the full memory and startup cost again. When the main app creates its own engine from
+ * a group and hands it to {@link FlutterOverlayWindowPlugin#setEngineGroup}, the overlay is
+ * spawned from the main app engine, which stays alive across evictions.
+ */
+final class OverlayEngineProvider {
+
+    private static final String TAG = "OverlayEngineProvider";
+
+    enum Strategy {
+        EAGER, LAZY, IDLE;
+
+        static Strategy parse(@Nullable String name, Strategy fallback) {
+            if (name == null) return fallback;
+            if (name.equalsIgnoreCase("eager")) return EAGER;
+            if (name.equalsIgnoreCase("lazy")) return LAZY;
+            if (name.equalsIgnoreCase("idle")) return IDLE;
+            return fallback;
+        }
+    }
+
+    enum Readiness {
+        NONE, SCHEDULED, READY
+    }
+
+    interface Listener {
+        void onEngineCreated(@NonNull String overlayId, @NonNull FlutterEngine engine);
+    }
+
+    /**
+     * Outcome of {@link #obtain(String, String)}: a warm start reused an engine that was already running.
+     */
+    static final class Provision {
+        final FlutterEngine engine;
+        final boolean warm;
+        final long createMillis;
+
+        Provision(FlutterEngine engine, boolean warm, long createMillis) {
+            this.engine = engine;
+            this.warm = warm;
+            this.createMillis = createMillis;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("warmStart", warm);
+            map.put("engineCreateMillis", createMillis);
+            return map;
+        }
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private Strategy strategy;
+    private Readiness readiness = Readiness.NONE;
+    private MessageQueue.IdleHandler idleHandler;
+    private FlutterEngineGroup engineGroup;
+    private final Map<String, String> entrypoints = new HashMap<>();
+    /** Engines created here, plus the one being created, whose plugins attach before it returns. */
+    private final Set<FlutterEngine> overlayEngines = new HashSet<>();
+    private boolean creating;
+
+    static FlutterEngineGroup hostEngineGroup;
+
+    OverlayEngineProvider(Context context, Strategy strategy, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.strategy = strategy;
+        this.listener = listener;
+        if (cachedEngine(OverlayConstants.DEFAULT_OVERLAY_ID) != null) {
+            overlayEngines.add(cachedEngine(OverlayConstants.DEFAULT_OVERLAY_ID));
+            entrypoints.put(OverlayConstants.DEFAULT_OVERLAY_ID, OverlayConstants.DEFAULT_ENTRYPOINT);
+            readiness = Readiness.READY;
+        }
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Switching applies the new strategy right away, the main app is already attached.
+     */
+    void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+        if (strategy != Strategy.IDLE) {
+            cancelIdlePrewarm();
+        }
+        prewarm();
+    }
+
+    Readiness getReadiness() {
+        return readiness;
+    }
+
+    /**
+     * Called when the main app attaches, pre-warms the default overlay engine according to the strategy.
+     */
+    void onHostAttached() {
+        prewarm();
+    }
+
+    private void prewarm() {
+        switch (strategy) {
+            case EAGER:
+                obtainDefault();
+                break;
+            case IDLE:
+                scheduleIdlePrewarm();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the engine of the given overlay, creating it synchronously if there is none yet
+     * or if the cached one runs a different entrypoint.
+     */
+    @NonNull
+    Provision obtain(@NonNull String overlayId, @NonNull String entrypoint) {
+        if (OverlayConstants.DEFAULT_OVERLAY_ID.equals(overlayId)) {
+            cancelIdlePrewarm();
+        }
+        FlutterEngine engine = cachedEngine(overlayId);
+        if (engine != null && !entrypoint.equals(entrypoints.get(overlayId))) {
+            Log.d(TAG, "Entrypoint of overlay " + overlayId + " changed, recreating its engine");
+            engine.destroy();
+            engine = null;
+        }
+        if (engine != null) {
+            markReady(overlayId);
+            listener.onEngineCreated(overlayId, engine);
+            return new Provision(engine, true, 0);
+        }
+        long start = System.nanoTime();
+        OverlayMetrics.beginSection(OverlayMetrics.SECTION_ENGINE_CREATE);
+        try {
+            engine = createEngine(overlayId, entrypoint);
+        } finally {
+            OverlayMetrics.endSection();
+        }
+        long createNanos = System.nanoTime() - start;
+        OverlayMetrics.recordTime(OverlayMetrics.ENGINE_CREATE, createNanos);
+        long createMillis = createNanos / 1_000_000L;
+        Log.d(TAG, "Overlay engine " + overlayId + " created in " + createMillis + "ms");
+        return new Provision(engine, false, createMillis);
+    }
+
+    private Provision obtainDefault() {
+        return obtain(OverlayConstants.DEFAULT_OVERLAY_ID, OverlayConstants.DEFAULT_ENTRYPOINT);
+    }
+
+    @Nullable
+    FlutterEngine cachedEngine(@NonNull String overlayId) {
+        return FlutterEngineCache.getInstance().get(OverlayConstants.engineTag(overlayId));
+    }
+
+    /**
+     * Whether {@code engine} runs an overlay, as opposed to the main app.
+     */
+    boolean isOverlayEngine(@Nullable FlutterEngine engine) {
+        return creating || (engine != null && overlayEngines.contains(engine));
+    }
+
+    private void markReady(String overlayId) {
+        if (OverlayConstants.DEFAULT_OVERLAY_ID.equals(overlayId)) {
+            readiness = Readiness.READY;
+        }
+    }
+
+    private FlutterEngineGroup engineGroup() {
+        if (hostEngineGroup != null) {
+            return hostEngineGroup;
+        }
+        if (engineGroup == null) {
+            engineGroup = new FlutterEngineGroup(context);
+        }
+        return engineGroup;
+    }
+
+    private FlutterEngine createEngine(String overlayId, String entrypoint) {
+        DartExecutor.DartEntrypoint dEntry = new DartExecutor.DartEntrypoint(
+                FlutterInjector.instance().flutterLoader().findAppBundlePath(),
+                entrypoint);
+        FlutterEngine engine;
+        creating = true;
+        try {
+            engine = engineGroup().createAndRunEngine(context, dEntry);
+        } finally {
+            creating = false;
+        }
+        overlayEngines.add(engine);
+        FlutterEngineCache.getInstance().put(OverlayConstants.engineTag(overlayId), engine);
+        entrypoints.put(overlayId, entrypoint);
+        engine.addEngineLifecycleListener(new FlutterEngine.EngineLifecycleListener() {
+            @Override
+            public void onPreEngineRestart() {
+            }
+
+            @Override
+            public void onEngineWillDestroy() {
+                onEngineDestroyed(overlayId, engine);
+            }
+        });
+        markReady(overlayId);
+        listener.onEngineCreated(overlayId, engine);
+        return engine;
+    }
+
+    private void onEngineDestroyed(String overlayId, FlutterEngine engine) {
+        overlayEngines.remove(engine);
+        if (cachedEngine(overlayId) != engine) {
+            return;
+        }
+        FlutterEngineCache.getInstance().remove(OverlayConstants.engineTag(overlayId));
+        entrypoints.remove(overlayId);
+        if (!OverlayConstants.DEFAULT_OVERLAY_ID.equals(overlayId)) {
+            return;
+        }
+        readiness = Readiness.NONE;
+        if (strategy == Strategy.IDLE) {
+            scheduleIdlePrewarm();
+        }
+    }
+
+    private void scheduleIdlePrewarm() {
+        if (idleHandler != null || cachedEngine(OverlayConstants.DEFAULT_OVERLAY_ID) != null) {
+            return;
+        }
+        idleHandler = () -> {
+            idleHandler = null;
+            if (cachedEngine(OverlayConstants.DEFAULT_OVERLAY_ID) == null) {
+                try {
+                    obtainDefault();
+                } catch (Exception e) {
+                    Log.e(TAG, "Error pre-warming overlay engine: " + e.getMessage());
+                    readiness = Readiness.NONE;
+                }
+            }
+            return false;
+        };
+        readiness = Readiness.SCHEDULED;
+        Looper.myQueue().addIdleHandler(idleHandler);
+    }
+
+    private void cancelIdlePrewarm() {
+        if (idleHandler == null) {
+            return;
+        }
+        Looper.myQueue().removeIdleHandler(idleHandler);
+        idleHandler = null;
+        if (readiness == Readiness.SCHEDULED) {
+            readiness = Readiness.NONE;
+        }
+    }
+}
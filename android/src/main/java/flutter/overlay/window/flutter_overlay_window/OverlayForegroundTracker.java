@@ -0,0 +1,155 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Build;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Follows the foreground app from {@link AccessibilityEvent#TYPE_WINDOW_STATE_CHANGED} events
+ * and reports actual transitions only, repeated events for the same window are dropped.
+ * <p>
+ * It also holds the per-package rules that hide or show the overlays without a round-trip
+ * through Dart, see {@link #actionFor(String)}.
+ */
+final class OverlayForegroundTracker {
+
+    interface Listener {
+        void onForegroundChanged(String packageName, @Nullable String className, boolean packageChanged);
+    }
+
+    static final String ACTION_NONE = "none";
+    static final String ACTION_SHOW = "show";
+    static final String ACTION_HIDE = "hide";
+
+    private final Listener listener;
+    private boolean enabled;
+    private Map<String, String> rules = new HashMap<>();
+    private String defaultAction = ACTION_NONE;
+    private Set<String> overlayIds = new HashSet<>();
+
+    private String lastPackage;
+    private String lastClass;
+    private long transitions;
+    private long duplicates;
+
+    OverlayForegroundTracker(Listener listener) {
+        this.listener = listener;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies the configuration sent by {@code FlutterOverlayWindow.configureForegroundTracking}.
+     * {@code rules} maps package names to {@link #ACTION_SHOW} or {@link #ACTION_HIDE}, an empty
+     * {@code overlayIds} applies them to every overlay window.
+     */
+    void configure(boolean enabled, @Nullable Map<String, String> rules, @Nullable String defaultAction,
+                   @Nullable List<String> overlayIds) {
+        this.enabled = enabled;
+        this.rules = rules != null ? new HashMap<>(rules) : new HashMap<>();
+        this.defaultAction = defaultAction != null ? defaultAction : ACTION_NONE;
+        this.overlayIds = overlayIds != null ? new HashSet<>(overlayIds) : new HashSet<>();
+        if (!enabled) {
+            lastPackage = null;
+            lastClass = null;
+        }
+    }
+
+    @Nullable
+    String getForegroundPackage() {
+        return lastPackage;
+    }
+
+    String actionFor(String packageName) {
+        String action = rules.get(packageName);
+        return action != null ? action : defaultAction;
+    }
+
+    boolean appliesTo(String overlayId) {
+        return overlayIds.isEmpty() || overlayIds.contains(overlayId);
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("transitions", transitions);
+        stats.put("duplicates", duplicates);
+        stats.put("foregroundPackage", lastPackage);
+        return stats;
+    }
+
+    void onEvent(AccessibilityEvent event, @Nullable AccessibilityService service) {
+        if (!enabled || event.getEventType() != AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            return;
+        }
+        String eventPackage = event.getPackageName() != null ? event.getPackageName().toString() : null;
+        String eventClass = event.getClassName() != null ? event.getClassName().toString() : null;
+
+        String packageName = activeApplicationPackage(service);
+        if (packageName == null) {
+            // Without window info our own overlay windows also change state, they are not an app switch.
+            if (service != null && service.getPackageName().equals(eventPackage)
+                    && OverlayWindow.WINDOW_CLASS_NAME.equals(eventClass)) {
+                return;
+            }
+            packageName = eventPackage;
+        }
+        if (packageName == null) {
+            return;
+        }
+        String className = packageName.equals(eventPackage) ? eventClass : null;
+
+        if (packageName.equals(lastPackage) && (className == null || className.equals(lastClass))) {
+            duplicates++;
+            return;
+        }
+        boolean packageChanged = !packageName.equals(lastPackage);
+        lastPackage = packageName;
+        if (className != null) {
+            lastClass = className;
+        }
+        transitions++;
+        listener.onForegroundChanged(packageName, className, packageChanged);
+    }
+
+    /**
+     * Package of the active application window, which ignores overlays, the status bar and the
+     * input method. Needs {@code flagRetrieveInteractiveWindows}, returns null without it.
+     */
+    @Nullable
+    private static String activeApplicationPackage(@Nullable AccessibilityService service) {
+        if (service == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return null;
+        }
+        List<AccessibilityWindowInfo> windows;
+        try {
+            windows = service.getWindows();
+        } catch (Exception e) {
+            return null;
+        }
+        String packageName = null;
+        for (AccessibilityWindowInfo window : windows) {
+            if (packageName == null && window.getType() == AccessibilityWindowInfo.TYPE_APPLICATION
+                    && (window.isActive() || window.isFocused())) {
+                AccessibilityNodeInfo root = window.getRoot();
+                if (root != null) {
+                    packageName = root.getPackageName() != null ? root.getPackageName().toString() : null;
+                    root.recycle();
+                }
+            }
+            window.recycle();
+        }
+        return packageName;
+    }
+}
@@ -0,0 +1,90 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Lowers the refresh rate asked for by an overlay window once it has been idle for a while, and
+ * restores it on the next touch, message or window movement.
+ * <p>
+ * Activity only stores a timestamp, the idle check is posted once and re-posted for the rest of
+ * the idle period, so reporting activity on every drag frame stays cheap. Call it on the main
+ * thread.
+ */
+final class OverlayFrameRateThrottler {
+
+    interface Target {
+        /**
+         * Asks for {@code hz} frames per second, 0 lets the system pick.
+         */
+        void setFrameRate(float hz);
+    }
+
+    private final Target target;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable checkIdle = this::checkIdle;
+    private float idleFrameRate;
+    private long idleAfterMs;
+    private long lastActivity;
+    private boolean scheduled;
+    private boolean idle;
+
+    OverlayFrameRateThrottler(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * Throttles to {@code idleFrameRate} after {@code idleAfterMs} without activity, a rate of 0
+     * turns throttling off.
+     */
+    void configure(float idleFrameRate, long idleAfterMs) {
+        this.idleFrameRate = Math.max(0f, idleFrameRate);
+        this.idleAfterMs = Math.max(0L, idleAfterMs);
+        onActivity();
+    }
+
+    boolean isEnabled() {
+        return idleFrameRate > 0f;
+    }
+
+    boolean isIdle() {
+        return idle;
+    }
+
+    void onActivity() {
+        if (idle) {
+            idle = false;
+            target.setFrameRate(0f);
+        }
+        if (!isEnabled()) {
+            return;
+        }
+        lastActivity = SystemClock.uptimeMillis();
+        if (!scheduled) {
+            scheduled = true;
+            handler.postDelayed(checkIdle, idleAfterMs);
+        }
+    }
+
+    void release() {
+        handler.removeCallbacks(checkIdle);
+        scheduled = false;
+        idle = false;
+    }
+
+    private void checkIdle() {
+        scheduled = false;
+        if (!isEnabled() || idle) {
+            return;
+        }
+        long remaining = lastActivity + idleAfterMs - SystemClock.uptimeMillis();
+        if (remaining > 0) {
+            scheduled = true;
+            handler.postDelayed(checkIdle, remaining);
+            return;
+        }
+        idle = true;
+        target.setFrameRate(idleFrameRate);
+    }
+}
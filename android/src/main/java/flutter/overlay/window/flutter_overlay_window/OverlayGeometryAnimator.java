@@ -0,0 +1,355 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.view.Choreographer;
+import android.view.WindowManager;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.AnticipateOvershootInterpolator;
+import android.view.animation.BounceInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.OvershootInterpolator;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Animates the position and size of an overlay window on {@link Choreographer} frames, so Dart
+ * hands over the whole animation once instead of moving the window every frame.
+ * <p>
+ * An animation either follows keyframes over a fixed duration through an {@link Interpolator},
+ * or runs a spring towards the target until it comes to rest. Values are in pixels and a
+ * {@code NaN} leaves that channel alone. Nothing is allocated once an animation is running.
+ */
+final class OverlayGeometryAnimator implements Choreographer.FrameCallback {
+
+    interface Listener {
+        /**
+         * @param completed false when the animation was cancelled or replaced by another one
+         */
+        void onAnimationEnd(boolean completed);
+    }
+
+    static final int X = 0;
+    static final int Y = 1;
+    static final int WIDTH = 2;
+    static final int HEIGHT = 3;
+    static final int CHANNELS = 4;
+
+    private static final float MAX_STEP_SECONDS = 0.004f;
+    private static final float MAX_FRAME_SECONDS = 0.064f;
+    private static final float REST_DISTANCE_PX = 0.5f;
+    private static final float REST_VELOCITY_PX = 20f;
+
+    private final OverlayDragController.LayoutCommitter committer;
+    private final float[] from = new float[CHANNELS];
+    private final float[] current = new float[CHANNELS];
+    private final float[] velocity = new float[CHANNELS];
+    private WindowManager.LayoutParams params;
+    private Spec spec;
+    private Listener listener;
+    private long startFrameNanos;
+    private long lastFrameNanos;
+    private boolean running;
+
+    OverlayGeometryAnimator(OverlayDragController.LayoutCommitter committer) {
+        this.committer = committer;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts animating {@code params} from {@code start}, the current geometry in pixels. A running
+     * animation is cancelled first and its listener told so.
+     */
+    void start(WindowManager.LayoutParams params, float[] start, Spec spec, @Nullable Listener listener) {
+        cancel();
+        this.params = params;
+        this.spec = spec;
+        this.listener = listener;
+        System.arraycopy(start, 0, from, 0, CHANNELS);
+        System.arraycopy(start, 0, current, 0, CHANNELS);
+        Arrays.fill(velocity, 0f);
+        startFrameNanos = 0;
+        lastFrameNanos = 0;
+        running = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stops the window where it is, the listener is told the animation did not complete.
+     */
+    void cancel() {
+        if (running) {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        finish(false);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running || params == null) {
+            finish(false);
+            return;
+        }
+        if (startFrameNanos == 0) {
+            startFrameNanos = frameTimeNanos;
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+            return;
+        }
+        boolean done = spec.isSpring() ? stepSpring(frameTimeNanos) : stepKeyframes(frameTimeNanos);
+        lastFrameNanos = frameTimeNanos;
+
+        if (!Float.isNaN(current[X])) params.x = Math.round(current[X]);
+        if (!Float.isNaN(current[Y])) params.y = Math.round(current[Y]);
+        if (!Float.isNaN(current[WIDTH])) params.width = Math.max(0, Math.round(current[WIDTH]));
+        if (!Float.isNaN(current[HEIGHT])) params.height = Math.max(0, Math.round(current[HEIGHT]));
+        committer.commit(params);
+
+        if (done) {
+            finish(true);
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private boolean stepKeyframes(long frameTimeNanos) {
+        float fraction = spec.durationNanos > 0
+                ? Math.min(1f, (frameTimeNanos - startFrameNanos) / (float) spec.durationNanos)
+                : 1f;
+        float progress = fraction >= 1f ? 1f : spec.interpolator.getInterpolation(fraction);
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            current[channel] = valueAt(channel, progress);
+        }
+        return fraction >= 1f;
+    }
+
+    /**
+     * Value of {@code channel} at {@code progress}, linear between the keyframes that set it, or
+     * {@code NaN} when no keyframe does. Overshooting interpolators extrapolate the first or last
+     * segment.
+     */
+    private float valueAt(int channel, float progress) {
+        float previousAt = 0f;
+        float previousValue = from[channel];
+        boolean animated = false;
+        int last = spec.at.length - 1;
+        for (int i = 0; i <= last; i++) {
+            float value = spec.values[i][channel];
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            float at = spec.at[i];
+            if (progress <= at || i == last) {
+                float span = at - previousAt;
+                return span > 0 ? previousValue + (value - previousValue) * (progress - previousAt) / span : value;
+            }
+            previousAt = at;
+            previousValue = value;
+            animated = true;
+        }
+        return animated ? previousValue : Float.NaN;
+    }
+
+    private boolean stepSpring(long frameTimeNanos) {
+        float elapsed = Math.min((frameTimeNanos - lastFrameNanos) / 1e9f, MAX_FRAME_SECONDS);
+        float[] target = spec.values[spec.values.length - 1];
+        float damping = 2f * spec.dampingRatio * (float) Math.sqrt(spec.stiffness);
+        while (elapsed > 0) {
+            float step = Math.min(elapsed, MAX_STEP_SECONDS);
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                if (Float.isNaN(target[channel])) {
+                    continue;
+                }
+                velocity[channel] += (-spec.stiffness * (current[channel] - target[channel])
+                        - damping * velocity[channel]) * step;
+                current[channel] += velocity[channel] * step;
+            }
+            elapsed -= step;
+        }
+
+        boolean atRest = true;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            if (Float.isNaN(target[channel])) {
+                current[channel] = Float.NaN;
+                continue;
+            }
+            if (Math.abs(current[channel] - target[channel]) >= REST_DISTANCE_PX
+                    || Math.abs(velocity[channel]) >= REST_VELOCITY_PX) {
+                atRest = false;
+            }
+        }
+        if (atRest) {
+            System.arraycopy(target, 0, current, 0, CHANNELS);
+        }
+        return atRest;
+    }
+
+    private void finish(boolean completed) {
+        Listener listener = this.listener;
+        running = false;
+        params = null;
+        spec = null;
+        this.listener = null;
+        if (listener != null) {
+            listener.onAnimationEnd(completed);
+        }
+    }
+
+    /**
+     * A parsed {@code animateOverlay} request. {@link #parse(Map)} validates it and keeps the
+     * values in dp, {@link #toPixels(float)} converts them once before the animation starts.
+     */
+    static final class Spec {
+
+        static final long DEFAULT_DURATION_MS = 300;
+
+        /** Keyframe positions between 0 and 1, ascending, the last one is always 1. */
+        float[] at;
+        /** Keyframe values per channel, {@code NaN} where a keyframe leaves a channel alone. */
+        float[][] values;
+        long durationNanos = DEFAULT_DURATION_MS * 1_000_000L;
+        Interpolator interpolator = new AccelerateDecelerateInterpolator();
+        float stiffness;
+        float dampingRatio;
+
+        boolean isSpring() {
+            return stiffness > 0;
+        }
+
+        Spec toPixels(float density) {
+            for (float[] keyframe : values) {
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    keyframe[channel] *= density;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Reads the target geometry ({@code x}, {@code y}, {@code width}, {@code height} in dp),
+         * the optional {@code keyframes} before it, and either {@code durationMs} and
+         * {@code curve} or {@code stiffness} and {@code dampingRatio}.
+         */
+        static Spec parse(@Nullable Map<?, ?> arguments) {
+            if (arguments == null) {
+                throw new IllegalArgumentException("Missing animation");
+            }
+            Spec spec = new Spec();
+            List<?> keyframes = arguments.get("keyframes") instanceof List
+                    ? (List<?>) arguments.get("keyframes")
+                    : null;
+            int count = keyframes != null ? keyframes.size() : 0;
+            spec.at = new float[count + 1];
+            spec.values = new float[count + 1][];
+
+            float previousAt = 0f;
+            for (int i = 0; i < count; i++) {
+                if (!(keyframes.get(i) instanceof Map)) {
+                    throw new IllegalArgumentException("Keyframe " + i + " must be a map");
+                }
+                Map<?, ?> keyframe = (Map<?, ?>) keyframes.get(i);
+                float at = number(keyframe, "at", Float.NaN);
+                if (Float.isNaN(at) || at <= previousAt || at >= 1f) {
+                    throw new IllegalArgumentException("Keyframe " + i + " needs an ascending 'at' between 0 and 1");
+                }
+                spec.at[i] = previousAt = at;
+                spec.values[i] = geometry(keyframe);
+            }
+            spec.at[count] = 1f;
+            spec.values[count] = geometry(arguments);
+            if (isEmpty(spec.values[count]) && count == 0) {
+                throw new IllegalArgumentException("Nothing to animate");
+            }
+
+            float stiffness = number(arguments, "stiffness", 0f);
+            if (stiffness < 0) {
+                throw new IllegalArgumentException("stiffness must not be negative: " + stiffness);
+            }
+            if (stiffness > 0) {
+                if (count > 0) {
+                    throw new IllegalArgumentException("Spring animations do not take keyframes");
+                }
+                float dampingRatio = number(arguments, "dampingRatio", 1f);
+                if (dampingRatio <= 0) {
+                    throw new IllegalArgumentException("dampingRatio must be positive: " + dampingRatio);
+                }
+                // Same integrator as the snap spring, kept within the range it is stable in.
+                spec.stiffness = OverlaySnapAnimator.clampStiffness(stiffness);
+                spec.dampingRatio = OverlaySnapAnimator.clampDampingRatio(dampingRatio);
+                return spec;
+            }
+
+            float durationMs = number(arguments, "durationMs", DEFAULT_DURATION_MS);
+            if (durationMs < 0) {
+                throw new IllegalArgumentException("durationMs must not be negative: " + durationMs);
+            }
+            spec.durationNanos = (long) (durationMs * 1_000_000L);
+            Object curve = arguments.get("curve");
+            if (curve != null) {
+                spec.interpolator = interpolatorFromName(curve.toString());
+            }
+            return spec;
+        }
+
+        private static float[] geometry(Map<?, ?> map) {
+            float[] values = new float[CHANNELS];
+            values[X] = number(map, "x", Float.NaN);
+            values[Y] = number(map, "y", Float.NaN);
+            values[WIDTH] = number(map, "width", Float.NaN);
+            values[HEIGHT] = number(map, "height", Float.NaN);
+            if (values[WIDTH] < 0 || values[HEIGHT] < 0) {
+                throw new IllegalArgumentException("Animated sizes must be in dp, WindowSize constants can not be animated");
+            }
+            return values;
+        }
+
+        private static boolean isEmpty(float[] values) {
+            for (float value : values) {
+                if (!Float.isNaN(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static float number(Map<?, ?> map, String key, float fallback) {
+            Object value = map.get(key);
+            if (value == null) {
+                return fallback;
+            }
+            if (!(value instanceof Number)) {
+                throw new IllegalArgumentException(key + " must be a number: " + value);
+            }
+            return ((Number) value).floatValue();
+        }
+
+        private static Interpolator interpolatorFromName(String name) {
+            switch (name) {
+                case "linear":
+                    return new LinearInterpolator();
+                case "easeIn":
+                    return new AccelerateInterpolator();
+                case "easeOut":
+                    return new DecelerateInterpolator();
+                case "easeInOut":
+                    return new AccelerateDecelerateInterpolator();
+                case "overshoot":
+                    return new OvershootInterpolator();
+                case "anticipateOvershoot":
+                    return new AnticipateOvershootInterpolator();
+                case "bounce":
+                    return new BounceInterpolator();
+                default:
+                    throw new IllegalArgumentException("Unknown curve: " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+
+/**
+ * Collects main app to overlay messages in a bounded ring buffer and delivers them
+ * as a single batch per frame (or per configured interval).
+ * <p>
+ * Only one batch is in flight at a time: the next one is sent once the overlay has
+ * replied to the previous one. While the overlay is busy, the ring buffer absorbs the
+ * burst and the overflow policy decides what is dropped. A batch sent to an engine that is
+ * then unbound never gets its reply, {@link #onChannelChanged()} stops waiting for it.
+ */
+final class OverlayMessageBatcher implements Choreographer.FrameCallback, Runnable {
+
+    interface Sink {
+        void send(Object batch, BasicMessageChannel.Reply<Object> reply);
+    }
+
+    static final String BATCH_KEY = "__overlayBatch";
+    static final String POLICY_DROP_OLDEST = "dropOldest";
+    static final String POLICY_LATEST_WINS = "latestWinsPerKey";
+    static final int DEFAULT_CAPACITY = 256;
+
+    private final Sink sink;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Integer> slotByKey = new HashMap<>();
+
+    private boolean enabled;
+    private boolean latestWins;
+    private String keyField = "key";
+    private long flushIntervalMs;
+
+    private Object[] items = new Object[DEFAULT_CAPACITY];
+    private String[] keys = new String[DEFAULT_CAPACITY];
+    private int head;
+    private int count;
+    private boolean flushScheduled;
+    private boolean inFlight;
+    /** Bumped when the channel changes, replies to batches sent before are ignored. */
+    private int generation;
+
+    private long received;
+    private long delivered;
+    private long batches;
+    private long dropped;
+    private long coalesced;
+
+    OverlayMessageBatcher(Sink sink) {
+        this.sink = sink;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies the configuration sent by {@code FlutterOverlayWindow.configureMessageBatching}.
+     * Disabling flushes whatever is still buffered. Messages held back by a batch in flight are
+     * kept across a capacity change, shrinking below them drops the oldest.
+     */
+    void configure(boolean enabled, int capacity, @Nullable String policy, @Nullable String keyField,
+                   long flushIntervalMs) {
+        flush();
+        int newCapacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+        if (newCapacity != items.length) {
+            resize(newCapacity);
+        }
+        this.enabled = enabled;
+        this.latestWins = POLICY_LATEST_WINS.equals(policy);
+        this.keyField = keyField != null ? keyField : "key";
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+    }
+
+    void offer(@Nullable Object message) {
+        received++;
+        String key = latestWins ? keyOf(message) : null;
+        if (key != null) {
+            Integer slot = slotByKey.get(key);
+            if (slot != null) {
+                items[slot] = message;
+                coalesced++;
+                scheduleFlush();
+                return;
+            }
+        }
+        if (count == items.length) {
+            dropOldest();
+        }
+        int slot = (head + count) % items.length;
+        items[slot] = message;
+        keys[slot] = key;
+        if (key != null) {
+            slotByKey.put(key, slot);
+        }
+        count++;
+        scheduleFlush();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("received", received);
+        stats.put("delivered", delivered);
+        stats.put("batches", batches);
+        stats.put("dropped", dropped);
+        stats.put("coalesced", coalesced);
+        stats.put("queued", count);
+        return stats;
+    }
+
+    /**
+     * The overlay channel was bound to another engine or dropped.
+     */
+    void onChannelChanged() {
+        generation++;
+        if (inFlight) {
+            inFlight = false;
+            if (count > 0) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        flushScheduled = false;
+        flush();
+    }
+
+    @Override
+    public void run() {
+        flushScheduled = false;
+        flush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled || inFlight) {
+            return;
+        }
+        flushScheduled = true;
+        if (flushIntervalMs > 0) {
+            handler.postDelayed(this, flushIntervalMs);
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private void flush() {
+        if (count == 0 || inFlight) {
+            return;
+        }
+        List<Object> batch = new ArrayList<>(count);
+        while (count > 0) {
+            batch.add(items[head]);
+            items[head] = null;
+            keys[head] = null;
+            head = (head + 1) % items.length;
+            count--;
+        }
+        head = 0;
+        slotByKey.clear();
+
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put(BATCH_KEY, batch);
+        inFlight = true;
+        batches++;
+        delivered += batch.size();
+        final int sentGeneration = generation;
+        sink.send(envelope, reply -> {
+            if (sentGeneration == generation) {
+                onBatchDelivered();
+            }
+        });
+    }
+
+    private void onBatchDelivered() {
+        inFlight = false;
+        if (count > 0) {
+            scheduleFlush();
+        }
+    }
+
+    private void resize(int capacity) {
+        while (count > capacity) {
+            dropOldest();
+        }
+        Object[] resizedItems = new Object[capacity];
+        String[] resizedKeys = new String[capacity];
+        slotByKey.clear();
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) % items.length;
+            resizedItems[i] = items[slot];
+            resizedKeys[i] = keys[slot];
+            if (keys[slot] != null) {
+                slotByKey.put(keys[slot], i);
+            }
+        }
+        items = resizedItems;
+        keys = resizedKeys;
+        head = 0;
+    }
+
+    private void dropOldest() {
+        if (keys[head] != null) {
+            slotByKey.remove(keys[head]);
+        }
+        items[head] = null;
+        keys[head] = null;
+        head = (head + 1) % items.length;
+        count--;
+        dropped++;
+    }
+
+    @Nullable
+    private String keyOf(@Nullable Object message) {
+        Object key = null;
+        if (message instanceof JSONObject) {
+            key = ((JSONObject) message).opt(keyField);
+        } else if (message instanceof Map) {
+            key = ((Map<?, ?>) message).get(keyField);
+        }
+        return key != null ? String.valueOf(key) : null;
+    }
+}
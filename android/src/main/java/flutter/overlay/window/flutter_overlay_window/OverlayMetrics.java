@@ -0,0 +1,173 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process wide metrics of the plugin, read from Dart with {@code getMetrics}.
+ * <p>
+ * Timers keep a count, total and maximum, counters a running total. Recording only updates
+ * atomics and never allocates, so it is safe on the drag and messaging paths and from any
+ * thread. The measured sections also show up as {@link Trace} sections in Perfetto and systrace.
+ */
+final class OverlayMetrics {
+
+    static final int SHOW_TO_FIRST_FRAME = 0;
+    static final int ENGINE_CREATE = 1;
+    static final int LAYOUT_UPDATE = 2;
+    private static final String[] TIMER_NAMES = {"showToFirstFrame", "engineCreate", "layoutUpdate"};
+
+    static final int MESSAGES_SENT = 0;
+    static final int BYTES_SENT = 1;
+    static final int MESSAGES_RECEIVED = 2;
+    static final int BYTES_RECEIVED = 3;
+    static final int DRAG_FRAMES = 4;
+    static final int DROPPED_DRAG_FRAMES = 5;
+    static final int ERRORS = 6;
+    static final int SAVED_FRAMES = 7;
+    private static final String[] COUNTER_NAMES = {"messagesSent", "bytesSent", "messagesReceived",
+            "bytesReceived", "dragFrames", "droppedDragFrames", "errors", "savedFrames"};
+
+    static final String SECTION_LAYOUT_UPDATE = "Overlay#updateViewLayout";
+    static final String SECTION_ENGINE_CREATE = "Overlay#createEngine";
+    static final String SECTION_SHOW = "Overlay#showToFirstFrame";
+
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16_666_667L;
+
+    // count, total nanos and max nanos of every timer
+    private static final AtomicLongArray timers = new AtomicLongArray(TIMER_NAMES.length * 3);
+    private static final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+    private static final AtomicLong wakeLockHeldNanos = new AtomicLong();
+    private static final AtomicLong wakeLockAcquiredAt = new AtomicLong();
+    private static volatile long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+
+    private OverlayMetrics() {
+    }
+
+    static void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Starts a section that ends on another callback, {@code cookie} tells overlapping ones apart.
+     */
+    static void beginAsyncSection(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    static void endAsyncSection(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    static void recordTime(int timer, long nanos) {
+        int base = timer * 3;
+        timers.incrementAndGet(base);
+        timers.addAndGet(base + 1, nanos);
+        long max;
+        do {
+            max = timers.get(base + 2);
+        } while (nanos > max && !timers.compareAndSet(base + 2, max, nanos));
+    }
+
+    static void increment(int counter, long delta) {
+        counters.addAndGet(counter, delta);
+    }
+
+    /**
+     * Sets the display refresh rate used to count dropped drag frames.
+     */
+    static void setRefreshRate(float hz) {
+        if (hz > 1f) {
+            frameIntervalNanos = (long) (1_000_000_000L / hz);
+        }
+    }
+
+    /**
+     * Records one drag frame that ran {@code latenessNanos} after it was requested, every
+     * whole frame interval beyond the first counts as a dropped frame.
+     */
+    static void onDragFrame(long latenessNanos) {
+        counters.incrementAndGet(DRAG_FRAMES);
+        long missed = latenessNanos / frameIntervalNanos;
+        if (missed > 0) {
+            counters.addAndGet(DROPPED_DRAG_FRAMES, missed);
+        }
+    }
+
+    /**
+     * Records that an overlay engine did not render for {@code nanos} because nobody could see
+     * it, counted in frames of the display refresh rate.
+     */
+    static void onRenderingSkipped(long nanos) {
+        counters.addAndGet(SAVED_FRAMES, nanos / frameIntervalNanos);
+    }
+
+    static void onWakeLockAcquired() {
+        wakeLockAcquiredAt.compareAndSet(0, System.nanoTime());
+    }
+
+    static void onWakeLockReleased() {
+        long acquiredAt = wakeLockAcquiredAt.getAndSet(0);
+        if (acquiredAt != 0) {
+            wakeLockHeldNanos.addAndGet(System.nanoTime() - acquiredAt);
+        }
+    }
+
+    static long wakeLockHeldMillis() {
+        long acquiredAt = wakeLockAcquiredAt.get();
+        long held = wakeLockHeldNanos.get() + (acquiredAt != 0 ? System.nanoTime() - acquiredAt : 0);
+        return held / 1_000_000L;
+    }
+
+    static Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new HashMap<>();
+        for (int i = 0; i < TIMER_NAMES.length; i++) {
+            long count = timers.get(i * 3);
+            Map<String, Object> timer = new HashMap<>();
+            timer.put("count", count);
+            timer.put("totalMillis", timers.get(i * 3 + 1) / 1_000_000.0);
+            timer.put("maxMillis", timers.get(i * 3 + 2) / 1_000_000.0);
+            timer.put("averageMillis", count > 0 ? timers.get(i * 3 + 1) / 1_000_000.0 / count : 0.0);
+            metrics.put(TIMER_NAMES[i], timer);
+        }
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            metrics.put(COUNTER_NAMES[i], counters.get(i));
+        }
+        metrics.put("wakeLockHeldMillis", wakeLockHeldMillis());
+        metrics.put("wakeLockHeld", wakeLockAcquiredAt.get() != 0);
+        return metrics;
+    }
+
+    /**
+     * Clears every timer and counter, a held wake lock keeps counting from now on.
+     */
+    static void reset() {
+        for (int i = 0; i < timers.length(); i++) {
+            timers.set(i, 0);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        wakeLockHeldNanos.set(0);
+        if (wakeLockAcquiredAt.get() != 0) {
+            wakeLockAcquiredAt.set(System.nanoTime());
+        }
+    }
+}
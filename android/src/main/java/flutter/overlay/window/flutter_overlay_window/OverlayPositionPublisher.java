@@ -0,0 +1,135 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * Publishes the geometry of one overlay window to the overlay engine and to the main app.
+ * <p>
+ * Layout changes only mark the geometry dirty, at most one event per display frame is sent on
+ * the next {@link Choreographer} frame. An event is a {@code double[]} of x, y, width and height
+ * in dp followed by the {@code SOURCE_*} of the last change, which the standard codec sends as
+ * a {@code Float64List}. Nothing is encoded while neither side listens.
+ */
+final class OverlayPositionPublisher implements Choreographer.FrameCallback {
+
+    interface GeometrySource {
+        /**
+         * Writes x, y, width and height in dp into the first four slots of {@code out}.
+         */
+        void readGeometry(double[] out);
+    }
+
+    static final int SOURCE_PROGRAMMATIC = 0;
+    static final int SOURCE_DRAG = 1;
+    static final int SOURCE_SNAP = 2;
+    static final int SOURCE_ANIMATION = 3;
+    static final int SOURCE_DISPLAY = 4;
+
+    private static final String TAG = "OverlayPosition";
+
+    private final String overlayId;
+    private final BinaryMessenger overlayMessenger;
+    private final GeometrySource geometrySource;
+    private final double[] event = new double[5];
+    private boolean overlaySubscribed;
+    private boolean hostSubscribed;
+    private boolean frameScheduled;
+    private int source;
+    private long published;
+    private long coalesced;
+
+    OverlayPositionPublisher(String overlayId, BinaryMessenger overlayMessenger, GeometrySource geometrySource) {
+        this.overlayId = overlayId;
+        this.overlayMessenger = overlayMessenger;
+        this.geometrySource = geometrySource;
+    }
+
+    /**
+     * Channel the main app listens on, the overlay engine always uses
+     * {@link OverlayConstants#POSITION_TAG}.
+     */
+    static String hostTag(String overlayId) {
+        return OverlayConstants.DEFAULT_OVERLAY_ID.equals(overlayId)
+                ? OverlayConstants.POSITION_TAG
+                : OverlayConstants.POSITION_TAG + "/" + overlayId;
+    }
+
+    /**
+     * Turns the events on or off for one side, a new subscriber gets the current geometry on
+     * the next frame.
+     */
+    void setSubscribed(boolean fromOverlay, boolean subscribed) {
+        if (fromOverlay) {
+            overlaySubscribed = subscribed;
+        } else {
+            hostSubscribed = subscribed;
+        }
+        if (subscribed) {
+            onLayoutChanged(SOURCE_PROGRAMMATIC);
+        }
+    }
+
+    void onLayoutChanged(int source) {
+        if (!overlaySubscribed && !hostSubscribed) {
+            return;
+        }
+        this.source = source;
+        if (frameScheduled) {
+            coalesced++;
+            return;
+        }
+        frameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void release() {
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        overlaySubscribed = false;
+        hostSubscribed = false;
+    }
+
+    long getPublishedCount() {
+        return published;
+    }
+
+    long getCoalescedCount() {
+        return coalesced;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        geometrySource.readGeometry(event);
+        event[4] = source;
+        published++;
+        if (overlaySubscribed) {
+            send(overlayMessenger, OverlayConstants.POSITION_TAG);
+        }
+        if (hostSubscribed) {
+            send(WindowSetup.hostMessenger, hostTag(overlayId));
+        }
+    }
+
+    private void send(@Nullable BinaryMessenger messenger, String channel) {
+        if (messenger == null) {
+            return;
+        }
+        ByteBuffer encoded = StandardMessageCodec.INSTANCE.encodeMessage(event);
+        try {
+            messenger.send(channel, OverlayBinaryRelay.forwardable(encoded));
+        } catch (Exception e) {
+            Log.e(TAG, "Error publishing the position of " + overlayId + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.graphics.Rect;
+import android.view.Gravity;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pauses the engine of one overlay window while nobody can see it, and resumes it once every
+ * reason is gone. Reasons are kept as a bitmask so an overlay hidden from Dart stays paused when
+ * the screen turns back on, and the other way around.
+ * <p>
+ * Frames not rendered because of an automatic reason, so not counting {@link #REASON_HIDDEN},
+ * are added to {@link OverlayMetrics#SAVED_FRAMES} when rendering resumes. Call it on the main
+ * thread.
+ */
+final class OverlayRenderPauser {
+
+    /** Hidden with {@code hideOverlay} or by a foreground rule. */
+    static final int REASON_HIDDEN = 1;
+    static final int REASON_SCREEN_OFF = 1 << 1;
+    static final int REASON_KEYGUARD = 1 << 2;
+    /** Dragged or moved entirely outside the display. */
+    static final int REASON_OFF_SCREEN = 1 << 3;
+    /** Covered by a system window such as the notification shade. */
+    static final int REASON_OCCLUDED = 1 << 4;
+    private static final String[] REASON_NAMES = {"hidden", "screenOff", "keyguard", "offScreen", "occluded"};
+
+    interface Lifecycle {
+        void pause();
+
+        void resume();
+    }
+
+    private final Lifecycle lifecycle;
+    private final Rect window = new Rect();
+    private int reasons;
+    private long savingSinceNanos;
+
+    OverlayRenderPauser(Lifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    int getReasons() {
+        return reasons;
+    }
+
+    boolean isPaused() {
+        return reasons != 0;
+    }
+
+    void set(int reason, boolean active) {
+        int previous = reasons;
+        reasons = active ? previous | reason : previous & ~reason;
+        if (reasons == previous) {
+            return;
+        }
+        boolean wasSaving = isSaving(previous);
+        boolean saving = isSaving(reasons);
+        if (!wasSaving && saving) {
+            savingSinceNanos = System.nanoTime();
+        } else if (wasSaving && !saving) {
+            OverlayMetrics.onRenderingSkipped(System.nanoTime() - savingSinceNanos);
+        }
+        if (previous == 0) {
+            lifecycle.pause();
+        } else if (reasons == 0) {
+            lifecycle.resume();
+        }
+    }
+
+    /**
+     * Sets {@link #REASON_OFF_SCREEN} from where the window manager puts a window laid out with
+     * {@code params}, {@code width} and {@code height} being its laid out size.
+     */
+    void onLayout(WindowManager.LayoutParams params, int width, int height, Rect screen) {
+        set(REASON_OFF_SCREEN, !isOnScreen(params, width, height, screen, window));
+    }
+
+    /**
+     * Stops counting saved frames, the window is going away.
+     */
+    void release() {
+        if (isSaving(reasons)) {
+            OverlayMetrics.onRenderingSkipped(System.nanoTime() - savingSinceNanos);
+        }
+        reasons = 0;
+    }
+
+    /**
+     * Whether the window placed by {@code params} shows at least one pixel of {@code screen},
+     * {@code out} receives its frame. A window that has not been measured yet counts as visible.
+     */
+    static boolean isOnScreen(WindowManager.LayoutParams params, int width, int height, Rect screen, Rect out) {
+        int w = params.width >= 0 ? params.width : width;
+        int h = params.height >= 0 ? params.height : height;
+        if (w <= 0 || h <= 0 || screen.isEmpty()) {
+            return true;
+        }
+        Gravity.apply(params.gravity, w, h, screen, params.x, params.y, out);
+        return Rect.intersects(out, screen);
+    }
+
+    static List<String> reasonNames(int reasons) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < REASON_NAMES.length; i++) {
+            if ((reasons & (1 << i)) != 0) {
+                names.add(REASON_NAMES[i]);
+            }
+        }
+        return names;
+    }
+
+    private static boolean isSaving(int reasons) {
+        return reasons != 0 && (reasons & REASON_HIDDEN) == 0;
+    }
+}
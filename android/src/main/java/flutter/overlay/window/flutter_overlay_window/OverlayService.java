@@ -2,90 +2,322 @@ package flutter.overlay.window.flutter_overlay_window;
 
 import android.accessibilityservice.AccessibilityService;
 import android.view.accessibility.AccessibilityEvent;
-import android.view.accessibility.AccessibilityNodeInfo;
 import android.view.accessibility.AccessibilityWindowInfo;
 
 import android.app.Notification;
 import android.app.NotificationChannel;
+import android.app.KeyguardManager;
 import android.app.NotificationManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.content.res.Configuration;
-import android.content.res.Resources;
-import android.graphics.Color;
-import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.app.PendingIntent;
-import android.graphics.Point;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.util.DisplayMetrics;
 import android.util.Log;
-import android.util.TypedValue;
-import android.view.Display;
-import android.view.Gravity;
-import android.view.MotionEvent;
-import android.view.View;
 import android.view.WindowManager;
 
 import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationCompat;
 
+import java.nio.ByteBuffer;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
 
-import io.flutter.embedding.android.FlutterTextureView;
-import io.flutter.embedding.android.FlutterView;
 import io.flutter.embedding.engine.FlutterEngine;
 import io.flutter.embedding.engine.FlutterEngineCache;
-import io.flutter.plugin.common.BasicMessageChannel;
-import io.flutter.plugin.common.JSONMessageCodec;
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.StandardMessageCodec;
 
-import android.os.PowerManager;
-
-public class OverlayService extends AccessibilityService implements View.OnTouchListener {
-    private final int DEFAULT_NAV_BAR_HEIGHT_DP = 48;
-    private final int DEFAULT_STATUS_BAR_HEIGHT_DP = 25;
-    private Integer mStatusBarHeight = -1;
-    private Integer mNavigationBarHeight = -1;
-    private Resources mResources;
+public class OverlayService extends AccessibilityService {
     private static final String TAG = "OverlayService";
     public static final String INTENT_EXTRA_IS_CLOSE_WINDOW = "IsCloseWindow";
-    private static final String WAKELOCK_TAG = "flutter_overlay_window:WakeLock";
-    private static final float MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER = 0.8f;
+    public static final String INTENT_EXTRA_OVERLAY_ID = "overlayId";
+
+    static final OverlayAccessibilityPipeline accessibilityEvents =
+            new OverlayAccessibilityPipeline(OverlayService::deliverAccessibilityEvents);
+
+    static final OverlayWakeLockPolicy wakeLockPolicy = new OverlayWakeLockPolicy();
+
+    static final OverlaySnapshotCache snapshots = new OverlaySnapshotCache();
 
-    private static OverlayService instance;
-    public static boolean isRunning = false;
+    /** Lifecycle of every overlay id, the source of truth for {@link #isActive(String)}. */
+    static final OverlayStateMachine states = new OverlayStateMachine(OverlayService::onStateChanged);
+
+    static final OverlayForegroundTracker foregroundTracker =
+            new OverlayForegroundTracker(OverlayService::onForegroundChanged);
+    private static final Set<String> hiddenByForegroundRule = new HashSet<>();
+    /** Overlay ids the main app follows the position of, kept across window restarts. */
+    private static final Set<String> hostPositionSubscriptions = new HashSet<>();
+
+    // Service state is owned by the main thread. The three fields below are also read from the
+    // plugin's background task queue, see FlutterOverlayWindowPlugin#QUERY_METHODS.
+    private static volatile OverlayService instance;
+    public static volatile boolean isRunning = false;
+    /** Read-only copy of {@link #windows}, republished on the main thread after every change. */
+    private static volatile Map<String, OverlayWindow> activeWindows = Collections.emptyMap();
+
+    private static OverlayService connectedAccessibilityService;
     private WindowManager windowManager = null;
-    private FlutterView flutterView;
-    private MethodChannel flutterChannel;
-    private BasicMessageChannel<Object> overlayMessageChannel;
-    private int clickableFlag = WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
-            | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
-            WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
-
-    private Handler mAnimationHandler = new Handler();
-    private float lastX, lastY;
-    private int lastYPosition;
-    private boolean dragging;
-    private Point szWindow = new Point();
-    private Timer mTrayAnimationTimer;
-    private PowerManager.WakeLock wakeLock;
-
-    @RequiresApi(api = Build.VERSION_CODES.N)
+    private final Map<String, OverlayWindow> windows = new LinkedHashMap<>();
+    private DisplayGeometry geometry;
+    private BroadcastReceiver screenReceiver;
+    private boolean screenOff;
+    private boolean keyguardLocked;
+    /** System windows of the last occlusion pass, reused from one pass to the next. */
+    private final List<Rect> occluderBounds = new ArrayList<>();
+    private int[] occluderLayers = new int[8];
+
+    @Override
+    protected void onServiceConnected() {
+        super.onServiceConnected();
+        connectedAccessibilityService = this;
+        accessibilityEvents.applyServiceInfo(this);
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        if (connectedAccessibilityService == this) {
+            connectedAccessibilityService = null;
+        }
+        return super.onUnbind(intent);
+    }
+
     @Override
     public void onAccessibilityEvent(AccessibilityEvent accessibilityEvent) {
         try {
-            AccessibilityNodeInfo parentNodeInfo = accessibilityEvent.getSource();
-            sendBroadcast(new Intent("accessibility_event").putExtra("SEND_BROADCAST", true));
+            foregroundTracker.onEvent(accessibilityEvent, this);
+            accessibilityEvents.onEvent(accessibilityEvent);
+            if (accessibilityEvent != null && isWindowChange(accessibilityEvent.getEventType())) {
+                updateOcclusion();
+            }
         } catch (Exception ex) {
             logError("onAccessibilityEvent", ex);
         }
     }
 
+    static void configureAccessibilityEvents(boolean enabled, int eventTypes, List<String> packageNames,
+                                             long debounceMs, boolean includeNodeInfo, boolean applyToServiceInfo) {
+        accessibilityEvents.configure(enabled, eventTypes, packageNames, debounceMs, includeNodeInfo,
+                applyToServiceInfo);
+        accessibilityEvents.applyServiceInfo(connectedAccessibilityService);
+    }
+
+    static void configureForegroundTracking(boolean enabled, Map<String, String> rules, String defaultAction,
+                                            List<String> overlayIds) {
+        foregroundTracker.configure(enabled, rules, defaultAction, overlayIds);
+        accessibilityEvents.setRequiredEventTypes(enabled ? AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED : 0);
+        accessibilityEvents.applyServiceInfo(connectedAccessibilityService);
+        if (!enabled) {
+            hiddenByForegroundRule.clear();
+        }
+    }
+
+    private static void onForegroundChanged(String packageName, String className, boolean packageChanged) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("packageName", packageName);
+        state.put("className", className);
+        state.put("packageChanged", packageChanged);
+        state.put("timestamp", System.currentTimeMillis());
+        deliverToEngines(OverlayConstants.FOREGROUND_TAG, state);
+        if (packageChanged) {
+            applyForegroundRules(packageName);
+        }
+    }
+
+    /**
+     * Hides or shows the overlay windows for the new foreground package. Only windows hidden by
+     * a rule are shown again, an overlay hidden from Dart stays hidden.
+     */
+    private static void applyForegroundRules(String packageName) {
+        OverlayService service = instance;
+        if (service == null) {
+            return;
+        }
+        String action = foregroundTracker.actionFor(packageName);
+        for (OverlayWindow window : service.windows.values()) {
+            String overlayId = window.config.id;
+            if (!foregroundTracker.appliesTo(overlayId)) {
+                continue;
+            }
+            if (OverlayForegroundTracker.ACTION_HIDE.equals(action)) {
+                if (!window.isHidden() && window.hide()) {
+                    hiddenByForegroundRule.add(overlayId);
+                }
+            } else if (OverlayForegroundTracker.ACTION_SHOW.equals(action)) {
+                if (hiddenByForegroundRule.remove(overlayId)) {
+                    window.reveal(null);
+                }
+            }
+        }
+    }
+
+    private static boolean isWindowChange(int eventType) {
+        return eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+                || Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && eventType == AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+    }
+
+    /**
+     * Pauses the overlays fully covered by a system window of another app drawn above them, such
+     * as the expanded notification shade. Needs {@code flagRetrieveInteractiveWindows}. Our own
+     * windows are matched by id, so the pass makes no call per window besides getWindows().
+     */
+    private void updateOcclusion() {
+        if (windows.isEmpty() || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        for (OverlayWindow window : windows.values()) {
+            window.accessibilityLayer = OverlayWindow.UNKNOWN_LAYER;
+        }
+        int count = 0;
+        try {
+            for (AccessibilityWindowInfo info : getWindows()) {
+                OverlayWindow own = windowWithAccessibilityId(info.getId());
+                if (own != null) {
+                    own.accessibilityLayer = info.getLayer();
+                } else if (info.getType() == AccessibilityWindowInfo.TYPE_SYSTEM) {
+                    if (count == occluderBounds.size()) {
+                        occluderBounds.add(new Rect());
+                    }
+                    if (count == occluderLayers.length) {
+                        occluderLayers = Arrays.copyOf(occluderLayers, count * 2);
+                    }
+                    info.getBoundsInScreen(occluderBounds.get(count));
+                    occluderLayers[count++] = info.getLayer();
+                }
+                info.recycle();
+            }
+        } catch (Exception e) {
+            logError("Error reading windows", e);
+            return;
+        }
+        for (OverlayWindow window : windows.values()) {
+            window.updateOcclusion(occluderBounds, occluderLayers, count);
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private OverlayWindow windowWithAccessibilityId(int id) {
+        for (OverlayWindow window : windows.values()) {
+            if (window.accessibilityWindowId() == id) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Overlays are not drawn while the screen is off or over the keyguard, their engines are
+     * paused until the user is back. The wake lock policy follows the screen from here as well.
+     */
+    private void registerScreenReceiver() {
+        screenReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                String action = intent.getAction();
+                if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                    setScreenState(true, keyguardLocked);
+                } else if (Intent.ACTION_SCREEN_ON.equals(action)) {
+                    setScreenState(false, isKeyguardLocked());
+                } else if (Intent.ACTION_USER_PRESENT.equals(action)) {
+                    setScreenState(false, false);
+                }
+            }
+        };
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_USER_PRESENT);
+        try {
+            registerReceiver(screenReceiver, filter);
+        } catch (Exception e) {
+            logError("Error registering the screen receiver", e);
+            screenReceiver = null;
+        }
+    }
+
+    private void unregisterScreenReceiver() {
+        if (screenReceiver == null) {
+            return;
+        }
+        try {
+            unregisterReceiver(screenReceiver);
+        } catch (Exception e) {
+            logError("Error unregistering the screen receiver", e);
+        }
+        screenReceiver = null;
+    }
+
+    private void setScreenState(boolean screenOff, boolean keyguardLocked) {
+        this.screenOff = screenOff;
+        this.keyguardLocked = keyguardLocked;
+        wakeLockPolicy.onScreenChanged(!screenOff);
+        for (OverlayWindow window : windows.values()) {
+            applyScreenState(window);
+        }
+    }
+
+    private void applyScreenState(OverlayWindow window) {
+        window.setPaused(OverlayRenderPauser.REASON_SCREEN_OFF, screenOff);
+        window.setPaused(OverlayRenderPauser.REASON_KEYGUARD, keyguardLocked);
+    }
+
+    private boolean isKeyguardLocked() {
+        KeyguardManager keyguardManager = (KeyguardManager) getSystemService(Context.KEYGUARD_SERVICE);
+        return keyguardManager != null && keyguardManager.isKeyguardLocked();
+    }
+
+    private static void onStateChanged(String overlayId, OverlayStateMachine.State state) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("overlayId", overlayId);
+        change.put("state", state.wireName());
+        deliverToEngines(OverlayConstants.STATE_TAG, change);
+    }
+
+    private static void deliverAccessibilityEvents(List<Map<String, Object>> events) {
+        deliverToEngines(OverlayConstants.ACCESSIBILITY_TAG, events);
+    }
+
+    /**
+     * Sends {@code message} on {@code channel} to every overlay engine and to the main app.
+     */
+    private static void deliverToEngines(String channel, Object message) {
+        List<BinaryMessenger> targets = new ArrayList<>();
+        OverlayService service = instance;
+        if (service != null) {
+            for (OverlayWindow window : service.windows.values()) {
+                targets.add(window.messenger);
+            }
+        }
+        BinaryMessenger hostMessenger = WindowSetup.hostMessenger;
+        if (hostMessenger != null) {
+            targets.add(hostMessenger);
+        }
+        for (BinaryMessenger target : targets) {
+            ByteBuffer encoded = StandardMessageCodec.INSTANCE.encodeMessage(message);
+            try {
+                target.send(channel, OverlayBinaryRelay.forwardable(encoded));
+            } catch (Exception e) {
+                Log.e(TAG, "Error delivering to " + channel + ": " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public void onInterrupt() {
         // Service interrupted
@@ -97,6 +329,12 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
         logDebug("Destroying the overlay window service");
         releaseWakeLockSafely();
         removeViewSafely();
+        // The windows must be gone with the service, do not wait for their snapshots.
+        OverlayWindow.finishPendingTeardown(null);
+        unregisterScreenReceiver();
+        if (geometry != null) {
+            geometry.unregister();
+        }
         isRunning = false;
         clearNotification();
         instance = null;
@@ -105,28 +343,39 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
 
     private void releaseWakeLockSafely() {
         try {
-            if (wakeLock != null && wakeLock.isHeld()) {
-                wakeLock.release();
-                wakeLock = null;
-            }
+            wakeLockPolicy.stop();
         } catch (Exception e) {
             logError("Error releasing wakelock", e);
         }
     }
 
     private void removeViewSafely() {
-        if (windowManager != null && flutterView != null) {
-            try {
-                if (flutterView.getWindowToken() != null) {
-                    windowManager.removeView(flutterView);
-                    flutterView.detachFromFlutterEngine();
-                }
-            } catch (Exception e) {
-                logError("Error removing view", e);
-            } finally {
-                windowManager = null;
-                flutterView = null;
-            }
+        for (OverlayWindow window : windows.values()) {
+            states.moveTo(window.config.id, OverlayStateMachine.State.STOPPING);
+            window.remove();
+        }
+        windows.clear();
+        publishWindows();
+        hiddenByForegroundRule.clear();
+        states.stopAll();
+    }
+
+    private void removeWindow(String overlayId) {
+        states.moveTo(overlayId, OverlayStateMachine.State.STOPPING);
+        detachWindow(overlayId);
+        states.moveTo(overlayId, OverlayStateMachine.State.STOPPED);
+    }
+
+    /**
+     * Removes the window of {@code overlayId} without changing its state, for a window about to
+     * be replaced.
+     */
+    private void detachWindow(String overlayId) {
+        hiddenByForegroundRule.remove(overlayId);
+        OverlayWindow window = windows.remove(overlayId);
+        publishWindows();
+        if (window != null) {
+            window.remove();
         }
     }
 
@@ -146,50 +395,109 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
         try {
             if (instance != null) {
                 instance.removeViewSafely();
-                instance.clearNotification();
-                isRunning = false;
-                try {
-                    instance.stopSelf();
-                } catch (Exception e) {
-                    Log.e(TAG, "Error stopping service: " + e.getMessage());
-                }
+                instance.stopIfEmpty();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error in removeOverlay: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes one overlay window, the service stops with the last one.
+     */
+    public static void removeOverlay(String overlayId) {
+        try {
+            if (instance != null) {
+                instance.removeWindow(overlayId);
+                instance.stopIfEmpty();
             }
         } catch (Exception e) {
             Log.e(TAG, "Error in removeOverlay: " + e.getMessage());
         }
     }
 
+    private void stopIfEmpty() {
+        if (!windows.isEmpty()) {
+            return;
+        }
+        clearNotification();
+        isRunning = false;
+        try {
+            stopSelf();
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping service: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Something was sent to the overlay {@code overlayId}, it may start animating.
+     */
+    static void onOverlayMessage(String overlayId) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        if (window != null) {
+            window.onActivity();
+        }
+    }
+
+    private void publishWindows() {
+        activeWindows = windows.isEmpty()
+                ? Collections.<String, OverlayWindow>emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(windows));
+    }
+
+    /**
+     * Whether {@code overlayId} is starting, shown or hidden. Safe to call from any thread, and
+     * true as soon as {@code showOverlay} returns.
+     */
+    static boolean isActive(String overlayId) {
+        return states.get(overlayId).isActive();
+    }
+
+    /**
+     * Safe to call from any thread.
+     */
+    static List<String> activeOverlayIds() {
+        return new ArrayList<>(activeWindows.keySet());
+    }
+
     @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN_MR1)
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         try {
-            mResources = getApplicationContext().getResources();
+            geometry();
             
             if (shouldStopService(intent)) {
                 cleanupAndStop();
                 return START_NOT_STICKY;
             }
             
-            FlutterEngine engine = FlutterEngineCache.getInstance().get(OverlayConstants.CACHED_TAG);
+            String overlayId = intent.getStringExtra(INTENT_EXTRA_OVERLAY_ID);
+            if (overlayId == null) overlayId = OverlayConstants.DEFAULT_OVERLAY_ID;
+
+            FlutterEngine engine = FlutterEngineCache.getInstance().get(OverlayConstants.engineTag(overlayId));
             if (engine == null || (flags & START_FLAG_REDELIVERY) != 0 && !isEngineValid(engine)) {
                 logDebug("FlutterEngine unavailable or invalid after restart");
-                stopSelf();
+                removeWindow(overlayId);
+                stopIfEmpty();
                 if ((flags & START_FLAG_REDELIVERY) != 0) sendRestartBroadcast();
                 return START_NOT_STICKY;
             }
             
-            boolean isCloseWindow = intent != null && intent.getBooleanExtra(INTENT_EXTRA_IS_CLOSE_WINDOW, false);
+            boolean isCloseWindow = intent.getBooleanExtra(INTENT_EXTRA_IS_CLOSE_WINDOW, false);
             if (isCloseWindow) {
-                removeViewSafely();
-                isRunning = false;
-                stopSelf();
+                removeWindow(overlayId);
+                stopIfEmpty();
                 return START_STICKY;
             }
-            
-            int startX = intent != null ? intent.getIntExtra("startX", OverlayConstants.DEFAULT_XY) : OverlayConstants.DEFAULT_XY;
-            int startY = intent != null ? intent.getIntExtra("startY", OverlayConstants.DEFAULT_XY) : OverlayConstants.DEFAULT_XY;
-            
-            removeViewSafely();
+
+            // The window changes its config, keep the published one untouched.
+            OverlayWindowConfig published = WindowSetup.settings().configs.get(overlayId);
+            OverlayWindowConfig config = published != null ? published.copy() : new OverlayWindowConfig(overlayId);
+
+            // Also starts an overlay redelivered after a restart, which Dart did not ask for.
+            states.moveTo(overlayId, OverlayStateMachine.State.STARTING);
+            detachWindow(overlayId);
             isRunning = true;
             logDebug("Service started");
             
@@ -198,13 +506,13 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
             } catch (Exception e) {
                 logError("Error resuming engine", e);
                 if (isAfterReboot(flags)) {
-                    stopSelf();
+                    stopIfEmpty();
                     sendRestartBroadcast();
                     return START_NOT_STICKY;
                 }
             }
             
-            setupOverlayView(engine, startX, startY);
+            setupOverlayView(config, engine);
             acquireWakeLockSafely();
             
             return START_STICKY;
@@ -223,296 +531,138 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
     private void cleanupAndStop() {
         releaseWakeLockSafely();
         removeViewSafely();
+        // The windows must be gone with the service, do not wait for their snapshots.
+        OverlayWindow.finishPendingTeardown(null);
         isRunning = false;
         stopSelf();
     }
 
     private void acquireWakeLockSafely() {
         try {
-            if (wakeLock == null) {
-                PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-                if (powerManager != null) {
-                    wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, WAKELOCK_TAG);
-                    wakeLock.setReferenceCounted(false);
-                }
-            }
-            
-            if (wakeLock != null && !wakeLock.isHeld()) {
-                wakeLock.acquire();
-            }
+            wakeLockPolicy.start(this);
         } catch (Exception e) {
             logError("Error acquiring wakelock", e);
         }
     }
 
     @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN_MR1)
-    private void setupOverlayView(FlutterEngine engine, int startX, int startY) {
+    private void setupOverlayView(OverlayWindowConfig config, FlutterEngine engine) {
         try {
-            flutterView = new FlutterView(getApplicationContext(), new FlutterTextureView(getApplicationContext()));
-            flutterView.attachToFlutterEngine(engine);
-            flutterView.setFitsSystemWindows(true);
-            flutterView.setFocusable(true);
-            flutterView.setFocusableInTouchMode(true);
-            flutterView.setBackgroundColor(Color.TRANSPARENT);
-            
-            setupMethodChannels(engine);
-            
-            windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+            if (windowManager == null) {
+                windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+            }
             if (windowManager == null) {
                 logError("Failed to get WindowManager", null);
                 return;
             }
 
-            setupWindowSize();
-            
-            int dx = startX == OverlayConstants.DEFAULT_XY ? 0 : startX;
-            int dy = startY == OverlayConstants.DEFAULT_XY ? -statusBarHeightPx() : startY;
-            
-            WindowManager.LayoutParams params = createLayoutParams();
-            
-            flutterView.setOnTouchListener(this);
-            try {
-                windowManager.addView(flutterView, params);
-                moveOverlay(dx, dy, null);
-            } catch (Exception e) {
-                logError("Error adding view", e);
+            OverlayMetrics.setRefreshRate(windowManager.getDefaultDisplay().getRefreshRate());
+            OverlayWindow window = new OverlayWindow(this, windowManager, config, engine);
+            windows.put(config.id, window);
+            publishWindows();
+            window.show();
+            if (!window.isAttached()) {
+                removeWindow(config.id);
+                return;
+            }
+            states.moveTo(config.id, OverlayStateMachine.State.SHOWN);
+            applyScreenState(window);
+            if (hostPositionSubscriptions.contains(config.id)) {
+                window.setPositionUpdates(false, true);
             }
         } catch (Exception e) {
             logError("Error in view setup", e);
         }
     }
 
-    private void setupMethodChannels(FlutterEngine engine) {
-        flutterChannel = new MethodChannel(engine.getDartExecutor(), OverlayConstants.OVERLAY_TAG);
-        flutterChannel.setMethodCallHandler((call, result) -> {
+    /**
+     * Safe to call from any thread.
+     */
+    public static Map<String, Double> getCurrentPosition(String overlayId) {
+        OverlayWindow window = activeWindows.get(overlayId);
+        if (window != null) {
             try {
-                handleMethodCall(call, result);
+                return window.getCurrentPosition();
             } catch (Exception e) {
-                logError("Error in method call", e);
-                result.error("METHOD_ERROR", e.getMessage(), null);
-            }
-        });
-        
-        overlayMessageChannel = new BasicMessageChannel<>(
-                engine.getDartExecutor(), OverlayConstants.MESSENGER_TAG, JSONMessageCodec.INSTANCE);
-        overlayMessageChannel.setMessageHandler((message, reply) -> {
-            try {
-                WindowSetup.messenger.send(message);
-            } catch (Exception e) {
-                logError("Error in message handler", e);
-            }
-        });
-    }
-
-    private void handleMethodCall(io.flutter.plugin.common.MethodCall call, MethodChannel.Result result) {
-        if (windowManager == null || flutterView == null) {
-            result.success(false);
-            return;
-        }
-        
-        try {
-            switch (call.method) {
-                case "disableClickFlag":
-                    boolean enableClick = call.argument("enableClick");
-                    disableClickFlag(enableClick, result);
-                    break;
-                case "setBlurSettings":
-                    int blurRadius = call.argument("blurRadius");
-                    setBlurSettings(blurRadius, result);
-                    break;
-                case "updateFlag":
-                    String flag = call.argument("flag").toString();
-                    updateOverlayFlag(result, flag);
-                    break;
-                case "updateOverlayPosition":
-                    int x = call.<Integer>argument("x");
-                    int y = call.<Integer>argument("y");
-                    moveOverlay(x, y, result);
-                    break;
-                case "resizeOverlay":
-                    int width = call.argument("width");
-                    int height = call.argument("height");
-                    boolean enableDrag = call.argument("enableDrag");
-                    resizeOverlay(width, height, enableDrag, result);
-                    break;
-                default:
-                    result.notImplemented();
+                Log.e(TAG, "Error getting current position: " + e.getMessage());
             }
-        } catch (Exception e) {
-            logError("Error handling method: " + call.method, e);
-            result.error("METHOD_ERROR", e.getMessage(), null);
         }
+        return null;
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN_MR1)
-    private int screenHeight() {
-        Display display = windowManager.getDefaultDisplay();
-        DisplayMetrics dm = new DisplayMetrics();
-        display.getRealMetrics(dm);
-        return inPortrait() ? dm.heightPixels + statusBarHeightPx() + navigationBarHeightPx()
-                : dm.heightPixels + statusBarHeightPx();
+    static Map<String, Object> displayGeometry(Context context) {
+        OverlayService service = instance;
+        return service != null ? service.geometry().toMap() : new DisplayGeometry(context).toMap();
     }
 
-    private int statusBarHeightPx() {
-        if (mStatusBarHeight == -1) {
-            int statusBarHeightId = mResources.getIdentifier("status_bar_height", "dimen", "android");
-            mStatusBarHeight = statusBarHeightId > 0 ? 
-                mResources.getDimensionPixelSize(statusBarHeightId) : 
-                dpToPx(DEFAULT_STATUS_BAR_HEIGHT_DP);
+    static void applyWindowUpdate(String overlayId, Map<?, ?> arguments, MethodChannel.Result result) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        if (window == null) {
+            result.success(null);
+            return;
         }
-        return mStatusBarHeight;
+        window.applyWindowUpdate(arguments, result);
     }
 
-    int navigationBarHeightPx() {
-        if (mNavigationBarHeight == -1) {
-            int navBarHeightId = mResources.getIdentifier("navigation_bar_height", "dimen", "android");
-            mNavigationBarHeight = navBarHeightId > 0 ? 
-                mResources.getDimensionPixelSize(navBarHeightId) : 
-                dpToPx(DEFAULT_NAV_BAR_HEIGHT_DP);
+    static void animateOverlay(String overlayId, Map<?, ?> arguments, MethodChannel.Result result) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        if (window == null) {
+            result.success(false);
+            return;
         }
-        return mNavigationBarHeight;
+        window.animateOverlay(arguments, result);
     }
 
-    private void updateViewParams(WindowManager.LayoutParams params, Runnable action) {
-        if (windowManager != null && flutterView != null && flutterView.getWindowToken() != null) {
-            action.run();
-            try {
-                windowManager.updateViewLayout(flutterView, params);
-            } catch (Exception e) {
-                logError("Error updating view layout", e);
-            }
-        }
+    static boolean cancelOverlayAnimation(String overlayId) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        return window != null && window.cancelAnimation();
     }
 
-    private void setBlurSettings(int blurRadius, MethodChannel.Result result) {
-        if (windowManager != null && flutterView != null) {
-            WindowManager.LayoutParams params = (WindowManager.LayoutParams) flutterView.getLayoutParams();
-            updateViewParams(params, () -> {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                    if (blurRadius > 0) {
-                        params.setBlurBehindRadius(blurRadius);
-                        params.flags |= WindowManager.LayoutParams.FLAG_BLUR_BEHIND;
-                        params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
-                    } else {
-                        params.flags &= ~WindowManager.LayoutParams.FLAG_BLUR_BEHIND;
-                        params.alpha = 1;
-                    }
-                }
-            });
-            result.success(true);
+    static void setPositionUpdates(String overlayId, boolean enabled) {
+        if (enabled) {
+            hostPositionSubscriptions.add(overlayId);
         } else {
-            result.success(false);
+            hostPositionSubscriptions.remove(overlayId);
         }
-    }
-
-    private void disableClickFlag(boolean enable, MethodChannel.Result result) {
-        if (windowManager != null && flutterView != null) {
-            WindowManager.LayoutParams params = (WindowManager.LayoutParams) flutterView.getLayoutParams();
-            updateViewParams(params, () -> {
-                int commonFlags = WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
-                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
-                        | WindowManager.LayoutParams.FLAG_LAYOUT_INSET_DECOR
-                        | WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
-                
-                if (enable) {
-                    params.flags = WindowManager.LayoutParams.FLAG_FULLSCREEN | commonFlags;
-                    params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
-                } else {
-                    params.flags = WindowSetup.flag | commonFlags;
-                    params.alpha = 1;
-                }
-            });
-            result.success(true);
-        } else {
-            result.success(false);
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        if (window != null) {
+            window.setPositionUpdates(false, enabled);
         }
     }
 
-    private void updateOverlayFlag(MethodChannel.Result result, String flag) {
-        if (windowManager != null && flutterView != null) {
-            WindowManager.LayoutParams params = (WindowManager.LayoutParams) flutterView.getLayoutParams();
-            updateViewParams(params, () -> {
-                WindowSetup.setFlag(flag);
-                int commonFlags = WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS |
-                        WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
-                        WindowManager.LayoutParams.FLAG_LAYOUT_INSET_DECOR |
-                        WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
-                        
-                params.flags = WindowSetup.flag | commonFlags;
-                
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && WindowSetup.flag == clickableFlag) {
-                    params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
-                } else {
-                    params.alpha = 1;
-                }
-            });
-            result.success(true);
-        } else {
-            result.success(false);
-        }
+    static boolean hideOverlay(String overlayId) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        return window != null && window.hide();
     }
 
-    private void resizeOverlay(int width, int height, boolean enableDrag, MethodChannel.Result result) {
-        if (windowManager != null && flutterView != null) {
-            WindowManager.LayoutParams params = (WindowManager.LayoutParams) flutterView.getLayoutParams();
-            updateViewParams(params, () -> {
-                params.width = (width == -1999 || width == -1) ? -1 : dpToPx(width);
-                params.height = (height == -1999 || height == -1) ? height : dpToPx(height);
-                WindowSetup.enableDrag = enableDrag;
-            });
-            result.success(true);
-        } else {
-            result.success(false);
+    static void revealOverlay(String overlayId, MethodChannel.Result result) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        if (window == null) {
+            result.success(null);
+            return;
         }
+        window.reveal(result);
     }
 
-    private void moveOverlay(int x, int y, MethodChannel.Result result) {
-        try {
-            if (windowManager != null && flutterView != null) {
-                try {
-                    WindowManager.LayoutParams params = (WindowManager.LayoutParams) flutterView.getLayoutParams();
-                    updateViewParams(params, () -> {
-                        params.x = (x == -1999 || x == -1) ? -1 : dpToPx(x);
-                        params.y = dpToPx(y);
-                    });
-                    if (result != null) result.success(true);
-                } catch (IllegalArgumentException e) {
-                    logError("Error moving overlay", e);
-                    if (result != null) result.error("MOVE_ERROR", "View not attached to window", null);
-                }
-            } else if (result != null) {
-                result.success(false);
-            }
-        } catch (Exception e) {
-            logError("General error in moveOverlay", e);
-            if (result != null) result.error("MOVE_ERROR", e.getMessage(), null);
-        }
+    static Map<String, Object> getVisibilityTimings(String overlayId) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        return window != null ? window.getVisibilityTimings() : null;
     }
 
-    public static Map<String, Double> getCurrentPosition() {
-        if (instance != null && instance.flutterView != null && instance.windowManager != null) {
-            try {
-                WindowManager.LayoutParams params = (WindowManager.LayoutParams) instance.flutterView.getLayoutParams();
-                Map<String, Double> position = new HashMap<>();
-                position.put("x", instance.pxToDp(params.x));
-                position.put("y", instance.pxToDp(params.y));
-                return position;
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting current position: " + e.getMessage());
-            }
-        }
-        return null;
-    }
+    public static boolean moveOverlay(String overlayId, int x, int y) {
+        OverlayService service = instance;
+        OverlayWindow window = service != null ? service.windows.get(overlayId) : null;
+        if (window == null || !window.isAttached()) return false;
 
-    public static boolean moveOverlay(int x, int y) {
-        if (instance == null || instance.flutterView == null || instance.windowManager == null) return false;
-        
         try {
-            WindowManager.LayoutParams params = (WindowManager.LayoutParams) instance.flutterView.getLayoutParams();
-            instance.updateViewParams(params, () -> {
-                params.x = (x == -1999 || x == -1) ? -1 : instance.dpToPx(x);
-                params.y = instance.dpToPx(y);
-            });
+            window.moveOverlay(x, y, null);
             return true;
         } catch (Exception e) {
             Log.e(TAG, "Error in static moveOverlay: " + e.getMessage());
@@ -533,14 +683,15 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
             final int notifyIcon = getDrawableResourceId("mipmap", "launcher");
             int iconToUse = notifyIcon == 0 ? R.drawable.notification_icon : notifyIcon;
             
+            WindowSetup.Settings settings = WindowSetup.settings();
             try {
                 startForeground(OverlayConstants.NOTIFICATION_ID, 
                     new NotificationCompat.Builder(this, OverlayConstants.CHANNEL_ID)
-                    .setContentTitle(WindowSetup.overlayTitle != null ? WindowSetup.overlayTitle : "Overlay Running")
-                    .setContentText(WindowSetup.overlayContent != null ? WindowSetup.overlayContent : "Tap to return to app")
+                    .setContentTitle(settings.overlayTitle != null ? settings.overlayTitle : "Overlay Running")
+                    .setContentText(settings.overlayContent != null ? settings.overlayContent : "Tap to return to app")
                     .setSmallIcon(iconToUse)
                     .setContentIntent(pendingIntent)
-                    .setVisibility(WindowSetup.notificationVisibility)
+                    .setVisibility(settings.notificationVisibility)
                     .build());
             } catch (Exception e) {
                 logError("Error creating notification", e);
@@ -552,12 +703,65 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
                     .build());
             }
             
+            wakeLockPolicy.setDefaultMode(readWakeLockMode());
+            snapshots.setDirectory(new File(getCacheDir(), OverlaySnapshotCache.DIRECTORY_NAME));
+            keyguardLocked = isKeyguardLocked();
+            registerScreenReceiver();
             instance = this;
         } catch (Exception e) {
             logError("Error in onCreate", e);
         }
     }
 
+    /**
+     * Wake lock mode from the {@link OverlayConstants#WAKELOCK_POLICY_META} meta-data, the lock is
+     * held for as long as an overlay is shown by default.
+     */
+    private OverlayWakeLockPolicy.Mode readWakeLockMode() {
+        try {
+            ApplicationInfo info = getPackageManager().getApplicationInfo(getPackageName(), PackageManager.GET_META_DATA);
+            String name = info.metaData != null ? info.metaData.getString(OverlayConstants.WAKELOCK_POLICY_META) : null;
+            return OverlayWakeLockPolicy.Mode.parse(name, OverlayWakeLockPolicy.Mode.ALWAYS);
+        } catch (Exception e) {
+            logError("Error reading wake lock policy", e);
+            return OverlayWakeLockPolicy.Mode.ALWAYS;
+        }
+    }
+
+    static void configureWakeLock(OverlayWakeLockPolicy.Mode mode, long timeoutMs) {
+        wakeLockPolicy.configure(mode, timeoutMs);
+    }
+
+    /**
+     * An overlay was touched, keeps a timed wake lock alive.
+     */
+    void onUserActivity() {
+        wakeLockPolicy.onUserActivity();
+    }
+
+    static void configureSnapshotCache(int maxBytes, boolean diskSpill) {
+        snapshots.configure(maxBytes, diskSpill);
+    }
+
+    /**
+     * Drops the placeholder snapshot of one overlay, or of all of them for a null id.
+     */
+    static void clearSnapshots(String overlayId) {
+        if (overlayId == null) {
+            snapshots.clear();
+        } else {
+            snapshots.remove(overlayId);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            snapshots.trimMemory();
+        }
+    }
+
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel serviceChannel = new NotificationChannel(
@@ -575,135 +779,43 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
             String.format("ic_%s", name), resType, getApplicationContext().getPackageName());
     }
 
-    private int dpToPx(int dp) {
-        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
-                Float.parseFloat(dp + ""), mResources.getDisplayMetrics());
+    int dpToPx(int dp) {
+        return geometry().dpToPx(dp);
     }
 
-    private double pxToDp(int px) {
-        return (double) px / mResources.getDisplayMetrics().density;
+    double pxToDp(int px) {
+        return geometry().pxToDp(px);
     }
 
-    private boolean inPortrait() {
-        return mResources.getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT;
+    int screenWidthPx() {
+        return geometry().windowWidthPx();
     }
 
-    @Override
-    public boolean onTouch(View view, MotionEvent event) {
-        if (windowManager == null || flutterView == null || !WindowSetup.enableDrag) {
-            return false;
-        }
-        
-        try {
-            WindowManager.LayoutParams params = (WindowManager.LayoutParams) flutterView.getLayoutParams();
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    dragging = false;
-                    lastX = event.getRawX();
-                    lastY = event.getRawY();
-                    break;
-                case MotionEvent.ACTION_MOVE:
-                    float dx = event.getRawX() - lastX;
-                    float dy = event.getRawY() - lastY;
-                    if (!dragging && dx * dx + dy * dy < 25) {
-                        return false;
-                    }
-                    lastX = event.getRawX();
-                    lastY = event.getRawY();
-                    boolean invertX = WindowSetup.gravity == (Gravity.TOP | Gravity.RIGHT)
-                            || WindowSetup.gravity == (Gravity.CENTER | Gravity.RIGHT)
-                            || WindowSetup.gravity == (Gravity.BOTTOM | Gravity.RIGHT);
-                    boolean invertY = WindowSetup.gravity == (Gravity.BOTTOM | Gravity.LEFT)
-                            || WindowSetup.gravity == Gravity.BOTTOM
-                            || WindowSetup.gravity == (Gravity.BOTTOM | Gravity.RIGHT);
-                    updateViewParams(params, () -> {
-                        params.x += ((int) dx * (invertX ? -1 : 1));
-                        params.y += ((int) dy * (invertY ? -1 : 1));
-                    });
-                    dragging = true;
-                    break;
-                case MotionEvent.ACTION_UP:
-                case MotionEvent.ACTION_CANCEL:
-                    lastYPosition = params.y;
-                    if (!WindowSetup.positionGravity.equals("none")) {
-                        updateViewParams(params, () -> {});
-                        startTrayAnimation();
-                    }
-                    return false;
-                default:
-                    return false;
-            }
-            return false;
-        } catch (Exception e) {
-            logError("Error in onTouch", e);
-            return false;
-        }
+    int statusBarHeightPx() {
+        return geometry().statusBarHeightPx();
     }
 
-    private void startTrayAnimation() {
-        try {
-            if (mTrayAnimationTimer != null) {
-                mTrayAnimationTimer.cancel();
-                mTrayAnimationTimer = null;
-            }
-            
-            mTrayAnimationTimer = new Timer();
-            mTrayAnimationTimer.schedule(new TrayAnimationTimerTask(), 0, 25);
-        } catch (Exception e) {
-            logError("Error starting tray animation", e);
+    DisplayGeometry geometry() {
+        if (geometry == null) {
+            geometry = new DisplayGeometry(this);
+            geometry.setListener(this::onGeometryChanged);
+            geometry.register();
         }
+        return geometry;
     }
 
-    private class TrayAnimationTimerTask extends TimerTask {
-        int mDestX;
-        int mDestY;
-        WindowManager.LayoutParams params;
-
-        public TrayAnimationTimerTask() {
-            super();
-            params = (WindowManager.LayoutParams) flutterView.getLayoutParams();
-            mDestY = lastYPosition;
-            
-            switch (WindowSetup.positionGravity) {
-                case "auto":
-                    mDestX = (params.x + (flutterView.getWidth() / 2)) <= szWindow.x / 2 ? 0
-                            : szWindow.x - flutterView.getWidth();
-                    break;
-                case "left":
-                    mDestX = 0;
-                    break;
-                case "right":
-                    mDestX = szWindow.x - flutterView.getWidth();
-                    break;
-                default:
-                    mDestX = params.x;
-                    mDestY = params.y;
-                    break;
-            }
-        }
-
-        @Override
-        public void run() {
-            mAnimationHandler.post(() -> {
-                params.x = (2 * (params.x - mDestX)) / 3 + mDestX;
-                params.y = (2 * (params.y - mDestY)) / 3 + mDestY;
-                updateViewLayoutSafely(params);
-                
-                if (Math.abs(params.x - mDestX) < 2 && Math.abs(params.y - mDestY) < 2) {
-                    cancel();
-                    mTrayAnimationTimer.cancel();
-                }
-            });
+    private void onGeometryChanged(DisplayGeometry geometry) {
+        deliverToEngines(OverlayConstants.GEOMETRY_TAG, geometry.toMap());
+        for (OverlayWindow window : windows.values()) {
+            window.onGeometryChanged();
         }
     }
 
-    private void updateViewLayoutSafely(WindowManager.LayoutParams params) {
-        if (windowManager != null && flutterView != null && flutterView.getWindowToken() != null) {
-            try {
-                windowManager.updateViewLayout(flutterView, params);
-            } catch (Exception e) {
-                logError("Error updating view layout", e);
-            }
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (geometry != null) {
+            geometry.invalidate();
         }
     }
 
@@ -731,68 +843,12 @@ public class OverlayService extends AccessibilityService implements View.OnTouch
         }
     }
 
-    private void setupWindowSize() {
-        try {
-            if (windowManager != null) {
-                windowManager.getDefaultDisplay().getSize(szWindow);
-                return;
-            }
-            
-            DisplayMetrics metrics = new DisplayMetrics();
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                getDisplay().getRealMetrics(metrics);
-            } else {
-                WindowManager wm = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
-                if (wm != null) {
-                    wm.getDefaultDisplay().getRealMetrics(metrics);
-                } else {
-                    metrics = getResources().getDisplayMetrics();
-                }
-            }
-            szWindow.set(metrics.widthPixels, metrics.heightPixels);
-        } catch (Exception e) {
-            logError("Error setting up window size", e);
-            szWindow.set(1080, 1920); // Fallback size
-        }
-    }
-
-    private WindowManager.LayoutParams createLayoutParams() {
-        int baseFlags = WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS |
-                WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
-                WindowManager.LayoutParams.FLAG_LAYOUT_INSET_DECOR |
-                WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
-                
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                        ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                        : WindowManager.LayoutParams.TYPE_PHONE,
-                WindowSetup.flag | baseFlags,
-                PixelFormat.TRANSLUCENT);
-        
-        try {
-            params.gravity = WindowSetup.gravity;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && 
-                WindowSetup.flag == clickableFlag) {
-                params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
-            } else {
-                params.alpha = 1.0f;
-            }
-        } catch (Exception e) {
-            logError("Error setting layout params", e);
-            params.gravity = Gravity.TOP | Gravity.LEFT;
-            params.alpha = 1.0f;
-        }
-        
-        return params;
-    }
-
     private void logDebug(String message) {
         Log.d(TAG, message);
     }
 
-    private void logError(String message, Exception e) {
+    void logError(String message, Exception e) {
+        OverlayMetrics.increment(OverlayMetrics.ERRORS, 1);
         Log.e(TAG, message + (e != null ? ": " + e.getMessage() : ""));
     }
 }
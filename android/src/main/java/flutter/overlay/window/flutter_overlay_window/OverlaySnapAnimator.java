@@ -0,0 +1,140 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+/**
+ * Spring animation that snaps the overlay window to its resting position after a drag.
+ * <p>
+ * Runs on the main thread {@link Choreographer}, so it is vsync aligned and needs no
+ * extra thread. Nothing is allocated once an animation is running.
+ */
+final class OverlaySnapAnimator implements Choreographer.FrameCallback {
+
+    /** Longest step used to integrate the spring, keeps stiff springs stable on slow frames. */
+    private static final float MAX_STEP_SECONDS = 0.004f;
+    /** Longest frame gap taken into account, e.g. after the process was descheduled. */
+    private static final float MAX_FRAME_SECONDS = 0.064f;
+    private static final float REST_DISTANCE_PX = 0.5f;
+    private static final float REST_VELOCITY_PX = 20f;
+    /**
+     * Springs integrated with {@link #MAX_STEP_SECONDS} steps stay stable and accurate within these
+     * bounds, a stiffer or more damped spring makes the Euler step overshoot and diverge.
+     */
+    static final float MIN_STIFFNESS = 1f;
+    static final float MAX_STIFFNESS = 10_000f;
+    static final float MIN_DAMPING_RATIO = 0.05f;
+    static final float MAX_DAMPING_RATIO = 2f;
+
+    private final OverlayDragController.LayoutCommitter committer;
+    private WindowManager.LayoutParams params;
+    private float stiffness = 700f;
+    private float dampingRatio = 0.75f;
+    private float flingFriction = 4f;
+
+    private float x, y;
+    private float velocityX, velocityY;
+    private float targetX, targetY;
+    private long lastFrameNanos;
+    private boolean running;
+
+    OverlaySnapAnimator(OverlayDragController.LayoutCommitter committer) {
+        this.committer = committer;
+    }
+
+    /**
+     * @param stiffness     spring constant in 1/s², higher values snap faster
+     * @param dampingRatio  1 is critically damped, lower values overshoot and bounce
+     * @param flingFriction exponential decay rate in 1/s of a released fling, lower values throw further
+     */
+    void setPhysics(float stiffness, float dampingRatio, float flingFriction) {
+        if (stiffness > 0) this.stiffness = clampStiffness(stiffness);
+        if (dampingRatio > 0) this.dampingRatio = clampDampingRatio(dampingRatio);
+        if (flingFriction > 0) this.flingFriction = flingFriction;
+    }
+
+    static float clampStiffness(float stiffness) {
+        return Math.max(MIN_STIFFNESS, Math.min(stiffness, MAX_STIFFNESS));
+    }
+
+    static float clampDampingRatio(float dampingRatio) {
+        return Math.max(MIN_DAMPING_RATIO, Math.min(dampingRatio, MAX_DAMPING_RATIO));
+    }
+
+    /**
+     * Distance in pixels a free fling released at {@code velocity} px/s would travel.
+     * Used to pick the edge the user threw the overlay towards.
+     */
+    float flingDistance(float velocity) {
+        return velocity / flingFriction;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void start(WindowManager.LayoutParams params, int destX, int destY, float velocityX, float velocityY) {
+        this.params = params;
+        this.x = params.x;
+        this.y = params.y;
+        this.targetX = destX;
+        this.targetY = destY;
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+        this.lastFrameNanos = 0;
+        if (!running) {
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    void cancel() {
+        if (running) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            running = false;
+        }
+        params = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running || params == null) {
+            running = false;
+            return;
+        }
+        if (lastFrameNanos == 0) {
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+            return;
+        }
+        float elapsed = Math.min((frameTimeNanos - lastFrameNanos) / 1e9f, MAX_FRAME_SECONDS);
+        lastFrameNanos = frameTimeNanos;
+
+        float damping = 2f * dampingRatio * (float) Math.sqrt(stiffness);
+        while (elapsed > 0) {
+            float step = Math.min(elapsed, MAX_STEP_SECONDS);
+            velocityX += (-stiffness * (x - targetX) - damping * velocityX) * step;
+            velocityY += (-stiffness * (y - targetY) - damping * velocityY) * step;
+            x += velocityX * step;
+            y += velocityY * step;
+            elapsed -= step;
+        }
+
+        boolean atRest = Math.abs(x - targetX) < REST_DISTANCE_PX && Math.abs(y - targetY) < REST_DISTANCE_PX
+                && Math.abs(velocityX) < REST_VELOCITY_PX && Math.abs(velocityY) < REST_VELOCITY_PX;
+        if (atRest) {
+            x = targetX;
+            y = targetY;
+        }
+        params.x = Math.round(x);
+        params.y = Math.round(y);
+        committer.commit(params);
+
+        if (atRest) {
+            running = false;
+            params = null;
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Last rendered frame of every overlay window, shown as a placeholder while the next
+ * {@code showOverlay} waits for its first frame.
+ * <p>
+ * Snapshots are kept in an {@link LruCache} bounded in bytes. With disk spill enabled, a snapshot
+ * evicted from memory (or dropped on {@link #trimMemory()}) is written as a PNG under the
+ * directory given to {@link #setDirectory}, and read back into memory by {@link #prefetch}. Files
+ * are written and read on a background thread, {@link #get} only ever looks in memory.
+ */
+final class OverlaySnapshotCache {
+
+    private static final String TAG = "OverlaySnapshotCache";
+    static final String DIRECTORY_NAME = "flutter_overlay_snapshots";
+    static final int DEFAULT_MAX_BYTES =
+            (int) Math.min(Runtime.getRuntime().maxMemory() / 16, 32L * 1024 * 1024);
+
+    private final Executor diskExecutor;
+    private LruCache<String, Bitmap> memory = newMemoryCache(DEFAULT_MAX_BYTES);
+    private int maxBytes = DEFAULT_MAX_BYTES;
+    private boolean diskSpill;
+    private File directory;
+
+    OverlaySnapshotCache() {
+        this(Executors.newSingleThreadExecutor());
+    }
+
+    OverlaySnapshotCache(Executor diskExecutor) {
+        this.diskExecutor = diskExecutor;
+    }
+
+    /**
+     * Changes the memory budget and whether evicted snapshots go to disk, snapshots that no longer
+     * fit are evicted right away.
+     */
+    synchronized void configure(int maxBytes, boolean diskSpill) {
+        this.diskSpill = diskSpill;
+        if (maxBytes <= 0 || maxBytes == this.maxBytes) {
+            return;
+        }
+        // LruCache#resize needs API 21, move the entries to a new cache instead.
+        LruCache<String, Bitmap> previous = memory;
+        this.maxBytes = maxBytes;
+        memory = newMemoryCache(maxBytes);
+        for (Map.Entry<String, Bitmap> entry : previous.snapshot().entrySet()) {
+            memory.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    synchronized void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    synchronized boolean isDiskSpillEnabled() {
+        return diskSpill;
+    }
+
+    void put(String overlayId, Bitmap snapshot) {
+        // A file spilled earlier is older than this snapshot.
+        deleteFile(overlayId);
+        currentMemory().put(overlayId, snapshot);
+    }
+
+    /**
+     * The snapshot of {@code overlayId} held in memory, a spilled one only shows up here once
+     * {@link #prefetch} has read it back.
+     */
+    @Nullable
+    Bitmap get(String overlayId) {
+        return currentMemory().get(overlayId);
+    }
+
+    /**
+     * Reads the spilled snapshot of {@code overlayId} back into memory on the disk thread, a
+     * snapshot already in memory is kept as is.
+     */
+    void prefetch(String overlayId) {
+        if (currentMemory().get(overlayId) != null) {
+            return;
+        }
+        File file = fileFor(overlayId);
+        if (file == null) {
+            return;
+        }
+        diskExecutor.execute(() -> {
+            if (!file.isFile() || currentMemory().get(overlayId) != null) {
+                return;
+            }
+            Bitmap snapshot;
+            try {
+                snapshot = BitmapFactory.decodeFile(file.getPath());
+            } catch (Exception | OutOfMemoryError e) {
+                Log.e(TAG, "Error reading snapshot of " + overlayId + ": " + e.getMessage());
+                return;
+            }
+            if (snapshot != null) {
+                currentMemory().put(overlayId, snapshot);
+            }
+        });
+    }
+
+    void remove(String overlayId) {
+        currentMemory().remove(overlayId);
+        deleteFile(overlayId);
+    }
+
+    /**
+     * Drops every snapshot, in memory and on disk.
+     */
+    void clear() {
+        File directory;
+        synchronized (this) {
+            // Replacing the cache drops the entries without spilling them.
+            memory = newMemoryCache(maxBytes);
+            directory = this.directory;
+        }
+        if (directory == null) {
+            return;
+        }
+        diskExecutor.execute(() -> {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Frees the memory held by snapshots, spilling them to disk when enabled.
+     */
+    void trimMemory() {
+        currentMemory().evictAll();
+    }
+
+    int sizeBytes() {
+        return currentMemory().size();
+    }
+
+    private synchronized LruCache<String, Bitmap> currentMemory() {
+        return memory;
+    }
+
+    private LruCache<String, Bitmap> newMemoryCache(int maxBytes) {
+        return new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, @Nullable Bitmap newValue) {
+                if (evicted && isDiskSpillEnabled()) {
+                    spill(key, oldValue);
+                }
+            }
+        };
+    }
+
+    private void spill(String overlayId, Bitmap snapshot) {
+        File file = fileFor(overlayId);
+        if (file == null) {
+            return;
+        }
+        diskExecutor.execute(() -> {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                return;
+            }
+            try (OutputStream out = new FileOutputStream(file)) {
+                snapshot.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } catch (Exception e) {
+                Log.e(TAG, "Error writing snapshot of " + overlayId + ": " + e.getMessage());
+                file.delete();
+            }
+        });
+    }
+
+    private void deleteFile(String overlayId) {
+        File file = fileFor(overlayId);
+        if (file != null) {
+            diskExecutor.execute(file::delete);
+        }
+    }
+
+    @Nullable
+    private synchronized File fileFor(String overlayId) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            return new File(directory, URLEncoder.encode(overlayId, "UTF-8") + ".png");
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+}
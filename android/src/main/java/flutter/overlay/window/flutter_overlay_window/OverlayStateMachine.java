@@ -0,0 +1,139 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lifecycle state of every overlay id, safe to read and change from any thread.
+ * <p>
+ * An overlay goes {@code STOPPED -> STARTING -> SHOWN <-> HIDDEN -> STOPPING -> STOPPED}, and can
+ * be started again while shown or hidden to replace its window. Transitions are compare-and-set,
+ * a move that is not allowed from the current state is refused, so two callers racing to stop
+ * the same overlay see exactly one successful {@code STOPPING}. The listener is called once per
+ * successful transition, on the thread that made it.
+ */
+final class OverlayStateMachine {
+
+    enum State {
+        STARTING, SHOWN, HIDDEN, STOPPING, STOPPED;
+
+        /**
+         * Whether the overlay is requested or on screen, hidden overlays included.
+         */
+        boolean isActive() {
+            return this == STARTING || this == SHOWN || this == HIDDEN;
+        }
+
+        boolean canMoveTo(State next) {
+            switch (next) {
+                case STARTING:
+                    return this == STOPPED || this == SHOWN || this == HIDDEN;
+                case SHOWN:
+                    return this == STARTING || this == HIDDEN;
+                case HIDDEN:
+                    return this == SHOWN;
+                case STOPPING:
+                    return isActive();
+                default:
+                    return this == STOPPING || this == STARTING;
+            }
+        }
+
+        String wireName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    interface Listener {
+        void onStateChanged(String overlayId, State state);
+    }
+
+    private final ConcurrentHashMap<String, AtomicReference<State>> states = new ConcurrentHashMap<>();
+    @Nullable
+    private final Listener listener;
+
+    OverlayStateMachine(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    State get(String overlayId) {
+        AtomicReference<State> state = states.get(overlayId);
+        return state != null ? state.get() : State.STOPPED;
+    }
+
+    /**
+     * Moves {@code overlayId} to {@code next}, returns false when that is not allowed from its
+     * current state. Moving to the current state is a no-op and returns false as well.
+     */
+    boolean moveTo(String overlayId, State next) {
+        AtomicReference<State> state = stateOf(overlayId);
+        State current;
+        do {
+            current = state.get();
+            if (!current.canMoveTo(next)) {
+                return false;
+            }
+        } while (!state.compareAndSet(current, next));
+        if (listener != null) {
+            listener.onStateChanged(overlayId, next);
+        }
+        return true;
+    }
+
+    /**
+     * Stops {@code overlayId} through {@code STOPPING}, whatever state it is in.
+     */
+    void stop(String overlayId) {
+        moveTo(overlayId, State.STOPPING);
+        moveTo(overlayId, State.STOPPED);
+    }
+
+    /**
+     * Stops every overlay that is not stopped yet, those already stopping included.
+     */
+    void stopAll() {
+        for (Map.Entry<String, AtomicReference<State>> entry : states.entrySet()) {
+            if (entry.getValue().get() != State.STOPPED) {
+                stop(entry.getKey());
+            }
+        }
+    }
+
+    boolean isAnyActive() {
+        for (AtomicReference<State> state : states.values()) {
+            if (state.get().isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<String> activeIds() {
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, AtomicReference<State>> entry : states.entrySet()) {
+            if (entry.getValue().get().isActive()) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    private AtomicReference<State> stateOf(String overlayId) {
+        AtomicReference<State> state = states.get(overlayId);
+        if (state == null) {
+            AtomicReference<State> created = new AtomicReference<>(State.STOPPED);
+            // putIfAbsent keeps the first one when two threads create the same id.
+            state = states.putIfAbsent(overlayId, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,248 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides when the overlay service holds its {@link PowerManager#PARTIAL_WAKE_LOCK}.
+ * <p>
+ * The lock is never held without a timeout: in {@link Mode#ALWAYS} and
+ * {@link Mode#WHILE_SCREEN_ON} it is renewed shortly before it expires, so a stuck process
+ * lets it go by itself, and in {@link Mode#TIMED} it is released just before it would expire
+ * once the overlay has not been shown or touched for the timeout, so the reported held time
+ * stops where the lock does. {@link Mode#WHILE_SCREEN_ON} follows the screen state the service
+ * passes to {@link #onScreenChanged}. Held time is reported to {@link OverlayMetrics}. All
+ * methods must be called on the main thread.
+ */
+final class OverlayWakeLockPolicy {
+
+    private static final String TAG = "OverlayWakeLock";
+    private static final String WAKELOCK_TAG = "flutter_overlay_window:WakeLock";
+
+    static final long DEFAULT_TIMEOUT_MS = 10 * 60 * 1000L;
+    private static final long MIN_TIMEOUT_MS = 10_000L;
+    private static final long RENEW_MARGIN_MS = 5_000L;
+    /**
+     * A timed lock is released this long before its timeout, while it still keeps the CPU awake
+     * to run the release. Past the timeout the CPU may sleep and the release would run late.
+     */
+    private static final long RELEASE_MARGIN_MS = 500L;
+
+    enum Mode {
+        NONE, WHILE_SCREEN_ON, TIMED, ALWAYS;
+
+        static Mode parse(@Nullable String name, Mode fallback) {
+            if (name == null) return fallback;
+            if (name.equalsIgnoreCase("none")) return NONE;
+            if (name.equalsIgnoreCase("whileScreenOn")) return WHILE_SCREEN_ON;
+            if (name.equalsIgnoreCase("timed")) return TIMED;
+            if (name.equalsIgnoreCase("always")) return ALWAYS;
+            return fallback;
+        }
+
+        String wireName() {
+            switch (this) {
+                case NONE:
+                    return "none";
+                case WHILE_SCREEN_ON:
+                    return "whileScreenOn";
+                case TIMED:
+                    return "timed";
+                default:
+                    return "always";
+            }
+        }
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable onTimeout = this::onTimeout;
+    private Mode mode = Mode.ALWAYS;
+    private long timeoutMs = DEFAULT_TIMEOUT_MS;
+    private boolean configured;
+
+    private Context context;
+    private PowerManager.WakeLock wakeLock;
+    private boolean screenOn = true;
+    private long activeUntil;
+    private long acquisitions;
+    private long renewals;
+
+    /**
+     * Mode and timeout set from Dart, they win over the manifest default.
+     */
+    void configure(Mode mode, long timeoutMs) {
+        configured = true;
+        this.mode = mode;
+        this.timeoutMs = Math.max(MIN_TIMEOUT_MS, timeoutMs);
+        if (context != null) {
+            activeUntil = SystemClock.elapsedRealtime() + this.timeoutMs;
+            update();
+        }
+    }
+
+    /**
+     * Mode read from the manifest meta-data, ignored once Dart configured the policy.
+     */
+    void setDefaultMode(Mode mode) {
+        if (!configured) {
+            this.mode = mode;
+        }
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Called when an overlay is shown.
+     */
+    void start(Context context) {
+        if (this.context == null) {
+            this.context = context.getApplicationContext();
+            screenOn = isInteractive();
+        }
+        onUserActivity();
+    }
+
+    /**
+     * Called when the last overlay is gone, releases the lock for good.
+     */
+    void stop() {
+        handler.removeCallbacks(onTimeout);
+        release();
+        context = null;
+        wakeLock = null;
+    }
+
+    /**
+     * The overlay was shown or touched, restarts the timeout of {@link Mode#TIMED}.
+     */
+    void onUserActivity() {
+        if (context == null) {
+            return;
+        }
+        activeUntil = SystemClock.elapsedRealtime() + timeoutMs;
+        update();
+    }
+
+    /**
+     * Called by the service's screen receiver on {@link Intent#ACTION_SCREEN_OFF} and
+     * {@link Intent#ACTION_SCREEN_ON}.
+     */
+    void onScreenChanged(boolean on) {
+        if (screenOn == on) {
+            return;
+        }
+        screenOn = on;
+        if (on) {
+            // Coming back counts as activity, a timed lock is held again for a full timeout.
+            activeUntil = SystemClock.elapsedRealtime() + timeoutMs;
+        }
+        update();
+    }
+
+    boolean isHeld() {
+        return wakeLock != null && wakeLock.isHeld();
+    }
+
+    Map<String, Object> getState() {
+        Map<String, Object> state = new HashMap<>();
+        state.put("mode", mode.wireName());
+        state.put("timeoutMs", timeoutMs);
+        state.put("held", isHeld());
+        state.put("screenOn", screenOn);
+        state.put("heldMillis", OverlayMetrics.wakeLockHeldMillis());
+        state.put("acquisitions", acquisitions);
+        state.put("renewals", renewals);
+        return state;
+    }
+
+    private boolean shouldHold() {
+        if (context == null) {
+            return false;
+        }
+        switch (mode) {
+            case ALWAYS:
+                return true;
+            case WHILE_SCREEN_ON:
+                return screenOn;
+            case TIMED:
+                return SystemClock.elapsedRealtime() < activeUntil - RELEASE_MARGIN_MS;
+            default:
+                return false;
+        }
+    }
+
+    private void update() {
+        handler.removeCallbacks(onTimeout);
+        if (!shouldHold()) {
+            release();
+            return;
+        }
+        long holdMs = mode == Mode.TIMED ? activeUntil - SystemClock.elapsedRealtime() : timeoutMs;
+        acquire(holdMs);
+        // Renewing modes come back a little before the lock expires, a timed lock to release it.
+        handler.postDelayed(onTimeout, holdMs - (mode == Mode.TIMED ? RELEASE_MARGIN_MS : RENEW_MARGIN_MS));
+    }
+
+    private void onTimeout() {
+        if (isHeld() && shouldHold()) {
+            renewals++;
+        }
+        update();
+    }
+
+    private void acquire(long holdMs) {
+        try {
+            if (wakeLock == null) {
+                PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+                if (powerManager == null) {
+                    return;
+                }
+                wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, WAKELOCK_TAG);
+                wakeLock.setReferenceCounted(false);
+            }
+            boolean wasHeld = wakeLock.isHeld();
+            // Acquiring a held lock that is not reference counted only moves its timeout.
+            wakeLock.acquire(holdMs);
+            if (!wasHeld) {
+                acquisitions++;
+                OverlayMetrics.onWakeLockAcquired();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error acquiring the wake lock: " + e.getMessage());
+        }
+    }
+
+    private void release() {
+        try {
+            if (wakeLock != null && wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error releasing the wake lock: " + e.getMessage());
+        }
+        OverlayMetrics.onWakeLockReleased();
+    }
+
+    private boolean isInteractive() {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) {
+            return true;
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH
+                ? powerManager.isInteractive()
+                : powerManager.isScreenOn();
+    }
+}
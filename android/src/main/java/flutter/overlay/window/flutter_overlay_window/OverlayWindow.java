@@ -0,0 +1,1107 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.PixelCopy;
+import android.view.Surface;
+import android.view.SurfaceView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.embedding.android.FlutterSurfaceView;
+import io.flutter.embedding.android.FlutterTextureView;
+import io.flutter.embedding.android.FlutterView;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.renderer.FlutterUiDisplayListener;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.JSONMessageCodec;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * One overlay window shown by {@link OverlayService}: its {@link FlutterView}, layout params,
+ * engine channels and drag state. Every window runs its own engine.
+ * <p>
+ * {@link #hide()} and {@link #reveal} only toggle the view visibility, the touch flags and the
+ * engine lifecycle, the view stays attached to the window manager and to the engine so it comes
+ * back in one frame.
+ * <p>
+ * The window root is a {@link FrameLayout} holding the {@link FlutterView}. When the previous
+ * window with the same id left a snapshot in {@link OverlayService#snapshots}, it is shown on top
+ * as an {@link ImageView} and faded out once the engine renders its first frame. Snapshots are
+ * only taken from surface render modes, see {@link #captureSnapshot}.
+ */
+final class OverlayWindow implements View.OnTouchListener {
+
+    private static final float MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER = 0.8f;
+    private static final long SNAPSHOT_FADE_MS = 150;
+    /** Longest a closed window stays up waiting for the copy of its last frame. */
+    private static final long SNAPSHOT_TIMEOUT_MS = 100;
+    /** Teardown of closed windows waiting for their snapshot, by overlay id, main thread only. */
+    private static final Map<String, Runnable> pendingTeardowns = new HashMap<>();
+    private static final int CLICKABLE_FLAG = WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+            | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
+            WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
+    private static final int COMMON_FLAGS = WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
+            | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+            | WindowManager.LayoutParams.FLAG_LAYOUT_INSET_DECOR
+            | WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
+
+    final OverlayWindowConfig config;
+    final FlutterEngine engine;
+    private final OverlayService service;
+    private final WindowManager windowManager;
+    private final OverlayDragController dragController =
+            new OverlayDragController(p -> commitLayout(p, OverlayPositionPublisher.SOURCE_DRAG));
+    private final OverlaySnapAnimator snapAnimator =
+            new OverlaySnapAnimator(p -> commitLayout(p, OverlayPositionPublisher.SOURCE_SNAP));
+    private final OverlayGeometryAnimator geometryAnimator =
+            new OverlayGeometryAnimator(p -> commitLayout(p, OverlayPositionPublisher.SOURCE_ANIMATION));
+    private final OverlayPositionPublisher positionPublisher;
+    private final OverlayRenderPauser renderPauser;
+    private final OverlayFrameRateThrottler frameRateThrottler = new OverlayFrameRateThrottler(this::setFrameRate);
+    private final Rect frame = new Rect();
+    /** Class name overlay windows report in their accessibility events, the one of their root view. */
+    static final String WINDOW_CLASS_NAME = FrameLayout.class.getName();
+    static final int UNKNOWN_LAYER = Integer.MIN_VALUE;
+    private static final int UNKNOWN_WINDOW_ID = -1;
+    /** Layer of this window in the last occlusion pass of the service. */
+    int accessibilityLayer = UNKNOWN_LAYER;
+    private int accessibilityWindowId = UNKNOWN_WINDOW_ID;
+    /** Position in dp as two float bits, written when added and on layout, read from any thread. */
+    private volatile long publishedPosition = packPosition(Float.NaN, Float.NaN);
+    final BinaryMessenger messenger;
+    private final float[] animationStart = new float[OverlayGeometryAnimator.CHANNELS];
+    private FrameLayout root;
+    private FlutterView flutterView;
+    private ImageView placeholder;
+    private boolean firstFrameRendered;
+    /** Set once {@code addView} returns, the window token only arrives with the first traversal. */
+    private boolean added;
+    private WindowManager.LayoutParams params;
+    /** What the window manager gets while hidden: {@link #params} without touches. */
+    private WindowManager.LayoutParams hiddenParams;
+    private MethodChannel flutterChannel;
+    private BasicMessageChannel<Object> overlayMessageChannel;
+    private BasicMessageChannel<Object> hostMessageChannel;
+    private int lastYPosition;
+    private boolean hidden;
+    private MethodChannel.Result pendingReveal;
+    private double coldStartMillis = -1;
+    private double lastRevealMillis = -1;
+    private int snappedEdge = Gravity.NO_GRAVITY;
+
+    OverlayWindow(OverlayService service, WindowManager windowManager, OverlayWindowConfig config,
+                  FlutterEngine engine) {
+        this.service = service;
+        this.windowManager = windowManager;
+        this.config = config;
+        this.engine = engine;
+        this.messenger = OverlayCountingMessenger.wrap(engine.getDartExecutor());
+        this.positionPublisher = new OverlayPositionPublisher(config.id, messenger, this::readGeometry);
+        this.renderPauser = new OverlayRenderPauser(new OverlayRenderPauser.Lifecycle() {
+            @Override
+            public void pause() {
+                engine.getLifecycleChannel().appIsInactive();
+                engine.getLifecycleChannel().appIsPaused();
+            }
+
+            @Override
+            public void resume() {
+                engine.getLifecycleChannel().appIsResumed();
+            }
+        });
+    }
+
+    boolean isAttached() {
+        return added;
+    }
+
+    boolean isHidden() {
+        return hidden;
+    }
+
+    void show() {
+        try {
+            // Two views must not be attached to the engine at once.
+            finishPendingTeardown(config.id);
+            flutterView = createFlutterView();
+            root = new FrameLayout(service.getApplicationContext());
+            root.addView(flutterView, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+            showSnapshotPlaceholder();
+            flutterView.addOnFirstFrameRenderedListener(new FlutterUiDisplayListener() {
+                @Override
+                public void onFlutterUiDisplayed() {
+                    firstFrameRendered = true;
+                    fadeOutPlaceholder();
+                    OverlayMetrics.recordTime(OverlayMetrics.SHOW_TO_FIRST_FRAME,
+                            System.nanoTime() - config.requestedAtNanos);
+                    OverlayMetrics.endAsyncSection(OverlayMetrics.SECTION_SHOW, config.id.hashCode());
+                    coldStartMillis = millisSince(config.requestedAtNanos);
+                    if (flutterView != null) {
+                        flutterView.removeOnFirstFrameRenderedListener(this);
+                    }
+                }
+
+                @Override
+                public void onFlutterUiNoLongerDisplayed() {
+                }
+            });
+            flutterView.attachToFlutterEngine(engine);
+            flutterView.setFitsSystemWindows(true);
+            flutterView.setFocusable(true);
+            flutterView.setFocusableInTouchMode(true);
+            flutterView.setBackgroundColor(Color.TRANSPARENT);
+
+            setupMethodChannels();
+
+            int dx = config.startX == OverlayConstants.DEFAULT_XY ? 0 : config.startX;
+            int dy = config.startY == OverlayConstants.DEFAULT_XY ? -service.statusBarHeightPx() : config.startY;
+
+            params = createLayoutParams();
+
+            flutterView.setOnTouchListener(this);
+            try {
+                windowManager.addView(root, params);
+                added = true;
+                publishPosition();
+                moveOverlay(dx, dy, null);
+                frameRateThrottler.configure(config.idleFrameRate, config.idleAfterMs);
+            } catch (Exception e) {
+                service.logError("Error adding view", e);
+            }
+        } catch (Exception e) {
+            service.logError("Error in view setup", e);
+        }
+    }
+
+    /**
+     * Takes the window off screen and pauses rendering, keeping the view attached. The window
+     * stops taking touches as well, a hidden full screen window would still take all of them.
+     */
+    boolean hide() {
+        if (!isAttached()) {
+            return false;
+        }
+        if (hidden) {
+            return true;
+        }
+        snapAnimator.cancel();
+        geometryAnimator.cancel();
+        dragController.cancel();
+        hidden = true;
+        completePendingReveal(null);
+        root.setVisibility(View.GONE);
+        updateWindowFlags();
+        renderPauser.set(OverlayRenderPauser.REASON_HIDDEN, true);
+        OverlayService.states.moveTo(config.id, OverlayStateMachine.State.HIDDEN);
+        return true;
+    }
+
+    /**
+     * Brings back a window hidden with {@link #hide()}. The engine is resumed and the view made
+     * visible in the same frame, {@code result} completes with the time to the next draw. The
+     * engine stays paused while another pause reason holds, such as the screen being off.
+     */
+    void reveal(@Nullable MethodChannel.Result result) {
+        if (!isAttached() || !hidden) {
+            if (result != null) result.success(isAttached() ? 0.0 : null);
+            return;
+        }
+        final long start = System.nanoTime();
+        hidden = false;
+        completePendingReveal(null);
+        pendingReveal = result;
+        renderPauser.set(OverlayRenderPauser.REASON_HIDDEN, false);
+        root.setVisibility(View.VISIBLE);
+        updateWindowFlags();
+        OverlayService.states.moveTo(config.id, OverlayStateMachine.State.SHOWN);
+        flutterView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (flutterView != null) {
+                    flutterView.getViewTreeObserver().removeOnPreDrawListener(this);
+                }
+                if (pendingReveal == result && !hidden) {
+                    lastRevealMillis = millisSince(start);
+                    completePendingReveal(lastRevealMillis);
+                }
+                return true;
+            }
+        });
+    }
+
+    Map<String, Object> getVisibilityTimings() {
+        Map<String, Object> timings = new HashMap<>();
+        timings.put("hidden", hidden);
+        timings.put("coldStartMillis", coldStartMillis >= 0 ? coldStartMillis : null);
+        timings.put("lastRevealMillis", lastRevealMillis >= 0 ? lastRevealMillis : null);
+        timings.put("pauseReasons", OverlayRenderPauser.reasonNames(renderPauser.getReasons()));
+        return timings;
+    }
+
+    /**
+     * Sets or clears a service wide reason to pause rendering, such as the screen being off.
+     */
+    void setPaused(int reason, boolean paused) {
+        renderPauser.set(reason, paused);
+    }
+
+    /**
+     * Pauses rendering while one of the first {@code count} system windows is above this window
+     * and covers all of it. Windows below, such as a blue light filter, do not count.
+     */
+    void updateOcclusion(List<Rect> systemWindows, int[] layers, int count) {
+        if (!isAttached()) {
+            return;
+        }
+        boolean occluded = false;
+        if (accessibilityLayer != UNKNOWN_LAYER && OverlayRenderPauser.isOnScreen(params, root.getWidth(),
+                root.getHeight(), service.geometry().realBounds(), frame) && !frame.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                if (layers[i] > accessibilityLayer && systemWindows.get(i).contains(frame)) {
+                    occluded = true;
+                    break;
+                }
+            }
+        }
+        renderPauser.set(OverlayRenderPauser.REASON_OCCLUDED, occluded);
+    }
+
+    /**
+     * Id of this window in {@link android.view.accessibility.AccessibilityWindowInfo#getId()},
+     * read from the local view once it is attached, without a call to the system.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    int accessibilityWindowId() {
+        if (accessibilityWindowId == UNKNOWN_WINDOW_ID && root != null && root.getWindowToken() != null) {
+            AccessibilityNodeInfo node = root.createAccessibilityNodeInfo();
+            int id = node.getWindowId();
+            node.recycle();
+            // Stays unknown until the window manager has given the window an id.
+            if (id >= 0 && id != Integer.MAX_VALUE) {
+                accessibilityWindowId = id;
+            }
+        }
+        return accessibilityWindowId;
+    }
+
+    /**
+     * A touch, a message or a call from the overlay, restores the full refresh rate.
+     */
+    void onActivity() {
+        frameRateThrottler.onActivity();
+    }
+
+    /**
+     * Votes for {@code hz} on API 30+ with the frame rate of the Flutter surface, which only
+     * weighs in for that layer. A texture view draws into the window itself, its only lever is
+     * the window's preferred refresh rate, which the system applies to the whole display from
+     * the top-most window and so also throttles the app below: it is only set when the overlay
+     * opted in with {@code windowHint}.
+     */
+    private void setFrameRate(float hz) {
+        if (!isAttached()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            for (int i = 0; i < flutterView.getChildCount(); i++) {
+                View child = flutterView.getChildAt(i);
+                if (child instanceof SurfaceView) {
+                    Surface surface = ((SurfaceView) child).getHolder().getSurface();
+                    if (surface != null && surface.isValid()) {
+                        surface.setFrameRate(hz, Surface.FRAME_RATE_COMPATIBILITY_DEFAULT);
+                    }
+                }
+            }
+        }
+        if (config.idleWindowHint && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            params.preferredRefreshRate = hz;
+            try {
+                // Not a layout change, skip commitLayout so it does not count as activity.
+                windowManager.updateViewLayout(root, windowParams());
+            } catch (Exception e) {
+                service.logError("Error setting the frame rate", e);
+            }
+        }
+    }
+
+    /**
+     * Hands the touch flags for the current visibility to the window manager, in one layout
+     * update that does not count as activity.
+     */
+    private void updateWindowFlags() {
+        try {
+            windowManager.updateViewLayout(root, windowParams());
+        } catch (Exception e) {
+            service.logError("Error updating window flags", e);
+        }
+    }
+
+    /**
+     * {@link #params} as the window manager should see them. {@link #params} keeps the configured
+     * flags, so revealing the window gives them back whatever changed while it was hidden.
+     */
+    private WindowManager.LayoutParams windowParams() {
+        if (!hidden) {
+            return params;
+        }
+        if (hiddenParams == null) {
+            hiddenParams = new WindowManager.LayoutParams();
+        }
+        hiddenParams.copyFrom(params);
+        hiddenParams.flags |= WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE;
+        return hiddenParams;
+    }
+
+    private void updateOffScreen() {
+        renderPauser.onLayout(params, root.getWidth(), root.getHeight(), service.geometry().realBounds());
+    }
+
+    private void completePendingReveal(Double millis) {
+        MethodChannel.Result result = pendingReveal;
+        pendingReveal = null;
+        if (result != null) {
+            result.success(millis);
+        }
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+
+    void remove() {
+        snapAnimator.cancel();
+        geometryAnimator.cancel();
+        positionPublisher.release();
+        dragController.release();
+        renderPauser.release();
+        frameRateThrottler.release();
+        completePendingReveal(null);
+        if (flutterChannel != null) {
+            flutterChannel.setMethodCallHandler(null);
+        }
+        if (overlayMessageChannel != null) {
+            overlayMessageChannel.setMessageHandler(null);
+        }
+        if (flutterView != null) {
+            FlutterView view = flutterView;
+            FrameLayout windowRoot = root;
+            boolean wasAdded = added;
+            added = false;
+            flutterView = null;
+            placeholder = null;
+            root = null;
+            Runnable tearDown = () -> tearDown(view, windowRoot, wasAdded);
+            if (!captureSnapshot(view, tearDown)) {
+                tearDown.run();
+            }
+        }
+    }
+
+    /**
+     * Runs the teardown of the previous window with {@code overlayId} still waiting for its
+     * snapshot, before another view attaches to the same engine or the service goes away.
+     */
+    static void finishPendingTeardown(@Nullable String overlayId) {
+        if (overlayId == null) {
+            for (Runnable tearDown : new ArrayList<>(pendingTeardowns.values())) {
+                tearDown.run();
+            }
+            return;
+        }
+        Runnable tearDown = pendingTeardowns.get(overlayId);
+        if (tearDown != null) {
+            tearDown.run();
+        }
+    }
+
+    private void tearDown(FlutterView view, FrameLayout windowRoot, boolean wasAdded) {
+        try {
+            if (wasAdded) {
+                windowManager.removeView(windowRoot);
+            }
+            view.detachFromFlutterEngine();
+        } catch (Exception e) {
+            service.logError("Error removing view", e);
+        }
+    }
+
+    /**
+     * A transparent surface is drawn above the window, it would hide the placeholder.
+     */
+    private boolean usesSnapshots() {
+        return config.snapshotPlaceholder && !OverlayWindowConfig.RENDER_TRANSPARENT_SURFACE.equals(config.renderMode);
+    }
+
+    /**
+     * Copies the frame the surface shows so the next window with this id has something to show
+     * right away, and runs {@code tearDown} once the copy is done or after
+     * {@link #SNAPSHOT_TIMEOUT_MS}, the surface has to stay up while it is read. Returns false,
+     * without running {@code tearDown}, when nothing is captured: a texture view can only be read
+     * back by blocking the main thread, so only surface render modes keep snapshots.
+     */
+    private boolean captureSnapshot(FlutterView view, Runnable tearDown) {
+        if (!firstFrameRendered || !usesSnapshots() || Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return false;
+        }
+        View renderView = view.getChildCount() > 0 ? view.getChildAt(0) : null;
+        if (!(renderView instanceof SurfaceView) || renderView.getWidth() <= 0 || renderView.getHeight() <= 0) {
+            return false;
+        }
+        Surface surface = ((SurfaceView) renderView).getHolder().getSurface();
+        if (surface == null || !surface.isValid()) {
+            return false;
+        }
+        String overlayId = config.id;
+        Handler handler = new Handler(Looper.getMainLooper());
+        Runnable finish = new Runnable() {
+            @Override
+            public void run() {
+                if (pendingTeardowns.get(overlayId) != this) {
+                    return;
+                }
+                pendingTeardowns.remove(overlayId);
+                handler.removeCallbacks(this);
+                tearDown.run();
+            }
+        };
+        try {
+            Bitmap snapshot = Bitmap.createBitmap(renderView.getWidth(), renderView.getHeight(),
+                    Bitmap.Config.ARGB_8888);
+            pendingTeardowns.put(overlayId, finish);
+            handler.postDelayed(finish, SNAPSHOT_TIMEOUT_MS);
+            PixelCopy.request((SurfaceView) renderView, snapshot, copyResult -> {
+                if (copyResult == PixelCopy.SUCCESS) {
+                    putSnapshot(overlayId, snapshot);
+                }
+                finish.run();
+            }, handler);
+            return true;
+        } catch (Exception e) {
+            service.logError("Error capturing snapshot", e);
+            pendingTeardowns.remove(overlayId);
+            handler.removeCallbacks(finish);
+            return false;
+        }
+    }
+
+    private static void putSnapshot(String overlayId, @Nullable Bitmap snapshot) {
+        if (snapshot != null) {
+            OverlayService.snapshots.put(overlayId, snapshot);
+        }
+    }
+
+    private void showSnapshotPlaceholder() {
+        if (!usesSnapshots()) {
+            return;
+        }
+        // Memory only, a snapshot spilled to disk is decoded in the background by prefetch and
+        // this window starts without a placeholder rather than waiting for it.
+        Bitmap snapshot = OverlayService.snapshots.get(config.id);
+        if (snapshot == null) {
+            return;
+        }
+        placeholder = new ImageView(service.getApplicationContext());
+        // Drawn 1:1 from the top left, a window shown at another size crops instead of stretching.
+        placeholder.setScaleType(ImageView.ScaleType.MATRIX);
+        placeholder.setImageBitmap(snapshot);
+        root.addView(placeholder, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    }
+
+    private void fadeOutPlaceholder() {
+        ImageView view = placeholder;
+        if (view == null) {
+            return;
+        }
+        placeholder = null;
+        view.animate().alpha(0f).setDuration(SNAPSHOT_FADE_MS).withEndAction(() -> {
+            ViewGroup parent = (ViewGroup) view.getParent();
+            if (parent != null) {
+                parent.removeView(view);
+            }
+        });
+    }
+
+    /**
+     * A texture view composites through the app's GPU pipeline with an extra copy, surface
+     * views hand their buffers straight to the compositor. A transparent surface is put on top
+     * of the overlay window so it can still blend with what is behind it.
+     */
+    private FlutterView createFlutterView() {
+        switch (config.renderMode) {
+            case OverlayWindowConfig.RENDER_SURFACE:
+                return new FlutterView(service.getApplicationContext(),
+                        new FlutterSurfaceView(service.getApplicationContext(), false));
+            case OverlayWindowConfig.RENDER_TRANSPARENT_SURFACE:
+                return new FlutterView(service.getApplicationContext(),
+                        new FlutterSurfaceView(service.getApplicationContext(), true));
+            default:
+                return new FlutterView(service.getApplicationContext(),
+                        new FlutterTextureView(service.getApplicationContext()));
+        }
+    }
+
+    private void setupMethodChannels() {
+        // Every call on this channel changes the window, it stays on the main thread.
+        flutterChannel = new MethodChannel(messenger, OverlayConstants.OVERLAY_TAG);
+        flutterChannel.setMethodCallHandler((call, result) -> {
+            try {
+                handleMethodCall(call, result);
+            } catch (Exception e) {
+                service.logError("Error in method call", e);
+                result.error("METHOD_ERROR", e.getMessage(), null);
+            }
+        });
+
+        overlayMessageChannel = new BasicMessageChannel<>(
+                messenger, OverlayConstants.MESSENGER_TAG, JSONMessageCodec.INSTANCE);
+        overlayMessageChannel.setMessageHandler((message, reply) -> {
+            try {
+                BasicMessageChannel<Object> host = hostChannel();
+                if (host != null) {
+                    host.send(message, reply);
+                } else {
+                    reply.reply(null);
+                }
+            } catch (Exception e) {
+                service.logError("Error in message handler", e);
+            }
+        });
+
+        messenger.setMessageHandler(OverlayConstants.BYTES_MESSENGER_TAG,
+                new OverlayBinaryRelay(OverlayConstants.BYTES_MESSENGER_TAG, () -> WindowSetup.hostMessenger));
+    }
+
+    private BasicMessageChannel<Object> hostChannel() {
+        if (OverlayConstants.DEFAULT_OVERLAY_ID.equals(config.id)) {
+            return WindowSetup.messenger;
+        }
+        if (hostMessageChannel == null && WindowSetup.hostMessenger != null) {
+            hostMessageChannel = new BasicMessageChannel<>(WindowSetup.hostMessenger,
+                    OverlayConstants.messengerTag(config.id), JSONMessageCodec.INSTANCE);
+        }
+        return hostMessageChannel;
+    }
+
+    private void handleMethodCall(MethodCall call, MethodChannel.Result result) {
+        if (!isAttached()) {
+            result.success(false);
+            return;
+        }
+        frameRateThrottler.onActivity();
+
+        try {
+            switch (call.method) {
+                case "disableClickFlag":
+                    boolean enableClick = call.argument("enableClick");
+                    disableClickFlag(enableClick, result);
+                    break;
+                case "setBlurSettings":
+                    int blurRadius = call.argument("blurRadius");
+                    setBlurSettings(blurRadius, result);
+                    break;
+                case "updateFlag":
+                    String flag = call.argument("flag").toString();
+                    updateOverlayFlag(result, flag);
+                    break;
+                case "updateOverlayPosition":
+                    int x = call.<Integer>argument("x");
+                    int y = call.<Integer>argument("y");
+                    moveOverlay(x, y, result);
+                    break;
+                case "applyWindowUpdate":
+                    applyWindowUpdate(call.arguments(), result);
+                    break;
+                case "animateOverlay":
+                    animateOverlay(call.arguments(), result);
+                    break;
+                case "cancelOverlayAnimation":
+                    result.success(cancelAnimation());
+                    break;
+                case "setPositionUpdates":
+                    setPositionUpdates(true, Boolean.TRUE.equals(call.argument("enabled")));
+                    result.success(true);
+                    break;
+                case "resizeOverlay":
+                    int width = call.argument("width");
+                    int height = call.argument("height");
+                    boolean enableDrag = call.argument("enableDrag");
+                    resizeOverlay(width, height, enableDrag, result);
+                    break;
+                default:
+                    result.notImplemented();
+            }
+        } catch (Exception e) {
+            service.logError("Error handling method: " + call.method, e);
+            result.error("METHOD_ERROR", e.getMessage(), null);
+        }
+    }
+
+    private void updateViewParams(Runnable action) {
+        if (isAttached()) {
+            action.run();
+            updateViewLayoutSafely(params);
+        }
+    }
+
+    private void setBlurSettings(int blurRadius, MethodChannel.Result result) {
+        updateViewParams(() -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                if (blurRadius > 0) {
+                    params.setBlurBehindRadius(blurRadius);
+                    params.flags |= WindowManager.LayoutParams.FLAG_BLUR_BEHIND;
+                    params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
+                } else {
+                    params.flags &= ~WindowManager.LayoutParams.FLAG_BLUR_BEHIND;
+                    params.alpha = 1;
+                }
+            }
+        });
+        result.success(true);
+    }
+
+    private void disableClickFlag(boolean enable, MethodChannel.Result result) {
+        updateViewParams(() -> {
+            if (enable) {
+                params.flags = WindowManager.LayoutParams.FLAG_FULLSCREEN | COMMON_FLAGS;
+                params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
+            } else {
+                params.flags = config.flag | COMMON_FLAGS;
+                params.alpha = 1;
+            }
+        });
+        result.success(true);
+    }
+
+    private void updateOverlayFlag(MethodChannel.Result result, String flag) {
+        updateViewParams(() -> {
+            config.flag = WindowSetup.flagFromName(flag, config.flag);
+            params.flags = config.flag | COMMON_FLAGS;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && config.flag == CLICKABLE_FLAG) {
+                params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
+            } else {
+                params.alpha = 1;
+            }
+        });
+        result.success(true);
+    }
+
+    private void resizeOverlay(int width, int height, boolean enableDrag, MethodChannel.Result result) {
+        geometryAnimator.cancel();
+        updateViewParams(() -> {
+            params.width = (width == -1999 || width == -1) ? -1 : service.dpToPx(width);
+            params.height = (height == -1999 || height == -1) ? height : service.dpToPx(height);
+            config.enableDrag = enableDrag;
+        });
+        result.success(true);
+    }
+
+    /**
+     * Applies position, size, flags, alpha and blur together with a single
+     * {@code updateViewLayout}, and completes {@code result} with the resulting geometry.
+     */
+    void applyWindowUpdate(Map<?, ?> arguments, MethodChannel.Result result) {
+        if (!isAttached()) {
+            result.success(null);
+            return;
+        }
+        OverlayWindowUpdate update;
+        try {
+            update = OverlayWindowUpdate.parse(arguments);
+        } catch (IllegalArgumentException e) {
+            result.error("INVALID_UPDATE", e.getMessage(), null);
+            return;
+        }
+
+        if (update.x != null || update.y != null || update.width != null || update.height != null) {
+            geometryAnimator.cancel();
+        }
+        if (update.x != null) {
+            snappedEdge = Gravity.NO_GRAVITY;
+            params.x = (update.x == -1999 || update.x == -1) ? -1 : service.dpToPx(update.x);
+        }
+        if (update.y != null) {
+            params.y = service.dpToPx(update.y);
+        }
+        if (update.width != null) {
+            params.width = (update.width == -1999 || update.width == -1) ? -1 : service.dpToPx(update.width);
+        }
+        if (update.height != null) {
+            params.height = (update.height == -1999 || update.height == -1)
+                    ? update.height
+                    : service.dpToPx(update.height);
+        }
+        if (update.enableDrag != null) {
+            config.enableDrag = update.enableDrag;
+        }
+        float alpha = params.alpha;
+        if (update.flag != null) {
+            config.flag = WindowSetup.flagFromName(update.flag, config.flag);
+            params.flags = config.flag | COMMON_FLAGS;
+            alpha = 1;
+        }
+        if (update.blurRadius != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            if (update.blurRadius > 0) {
+                params.setBlurBehindRadius(update.blurRadius);
+                params.flags |= WindowManager.LayoutParams.FLAG_BLUR_BEHIND;
+                alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
+            } else {
+                params.flags &= ~WindowManager.LayoutParams.FLAG_BLUR_BEHIND;
+                alpha = 1;
+            }
+        }
+        if (update.alpha != null) {
+            alpha = update.alpha;
+        }
+        // Windows letting touches through must stay translucent enough on S+.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && config.flag == CLICKABLE_FLAG) {
+            alpha = Math.min(alpha, MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER);
+        }
+        params.alpha = alpha;
+
+        updateViewLayoutSafely(params);
+        result.success(getGeometry());
+    }
+
+    Map<String, Object> getGeometry() {
+        Map<String, Object> geometry = new HashMap<>();
+        geometry.put("x", service.pxToDp(params.x));
+        geometry.put("y", service.pxToDp(params.y));
+        geometry.put("width", params.width >= 0 ? service.pxToDp(params.width) : (double) params.width);
+        geometry.put("height", params.height >= 0 ? service.pxToDp(params.height) : (double) params.height);
+        geometry.put("alpha", (double) params.alpha);
+        geometry.put("flag", config.flag);
+        return geometry;
+    }
+
+    /**
+     * Animates position and size natively on {@code Choreographer} frames. {@code result}
+     * completes with true once the target is reached, or false if the animation is cancelled by a
+     * drag, another animation or an explicit move or resize.
+     */
+    void animateOverlay(Map<?, ?> arguments, MethodChannel.Result result) {
+        if (!isAttached()) {
+            result.success(false);
+            return;
+        }
+        OverlayGeometryAnimator.Spec spec;
+        try {
+            spec = OverlayGeometryAnimator.Spec.parse(arguments).toPixels(service.geometry().density());
+        } catch (IllegalArgumentException e) {
+            result.error("INVALID_ANIMATION", e.getMessage(), null);
+            return;
+        }
+        snapAnimator.cancel();
+        snappedEdge = Gravity.NO_GRAVITY;
+        animationStart[OverlayGeometryAnimator.X] = params.x;
+        animationStart[OverlayGeometryAnimator.Y] = params.y;
+        // Wrap and match parent sizes start from the laid out size.
+        animationStart[OverlayGeometryAnimator.WIDTH] = params.width >= 0 ? params.width : flutterView.getWidth();
+        animationStart[OverlayGeometryAnimator.HEIGHT] = params.height >= 0 ? params.height : flutterView.getHeight();
+        geometryAnimator.start(params, animationStart, spec, completed -> {
+            lastYPosition = params.y;
+            result.success(completed);
+        });
+    }
+
+    boolean cancelAnimation() {
+        boolean running = geometryAnimator.isRunning();
+        geometryAnimator.cancel();
+        return running;
+    }
+
+    void moveOverlay(int x, int y, MethodChannel.Result result) {
+        try {
+            if (isAttached()) {
+                try {
+                    snappedEdge = Gravity.NO_GRAVITY;
+                    geometryAnimator.cancel();
+                    updateViewParams(() -> {
+                        params.x = (x == -1999 || x == -1) ? -1 : service.dpToPx(x);
+                        params.y = service.dpToPx(y);
+                    });
+                    if (result != null) result.success(true);
+                } catch (IllegalArgumentException e) {
+                    service.logError("Error moving overlay", e);
+                    if (result != null) result.error("MOVE_ERROR", "View not attached to window", null);
+                }
+            } else if (result != null) {
+                result.success(false);
+            }
+        } catch (Exception e) {
+            service.logError("General error in moveOverlay", e);
+            if (result != null) result.error("MOVE_ERROR", e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Starts or stops the position events of this window for the overlay engine or the main app.
+     */
+    void setPositionUpdates(boolean fromOverlay, boolean enabled) {
+        positionPublisher.setSubscribed(fromOverlay, enabled);
+    }
+
+    private void readGeometry(double[] out) {
+        if (params == null) {
+            return;
+        }
+        out[0] = service.pxToDp(params.x);
+        out[1] = service.pxToDp(params.y);
+        int width = params.width >= 0 || flutterView == null ? params.width : flutterView.getWidth();
+        int height = params.height >= 0 || flutterView == null ? params.height : flutterView.getHeight();
+        out[2] = service.pxToDp(width);
+        out[3] = service.pxToDp(height);
+    }
+
+    /**
+     * Position of the last layout, safe to call from any thread.
+     */
+    Map<String, Double> getCurrentPosition() {
+        long packed = publishedPosition;
+        float x = Float.intBitsToFloat((int) (packed >>> 32));
+        float y = Float.intBitsToFloat((int) packed);
+        if (Float.isNaN(x)) {
+            return null;
+        }
+        Map<String, Double> position = new HashMap<>();
+        position.put("x", (double) x);
+        position.put("y", (double) y);
+        return position;
+    }
+
+    private void publishPosition() {
+        publishedPosition = packPosition((float) service.pxToDp(params.x), (float) service.pxToDp(params.y));
+    }
+
+    private static long packPosition(float x, float y) {
+        return ((long) Float.floatToRawIntBits(x) << 32) | (Float.floatToRawIntBits(y) & 0xffffffffL);
+    }
+
+    @Override
+    public boolean onTouch(View view, MotionEvent event) {
+        if (!isAttached()) {
+            return false;
+        }
+        frameRateThrottler.onActivity();
+        if (!config.enableDrag) {
+            return false;
+        }
+
+        try {
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    service.onUserActivity();
+                    snapAnimator.cancel();
+                    geometryAnimator.cancel();
+                    snappedEdge = Gravity.NO_GRAVITY;
+                    dragController.onDown(event, params, config.gravity);
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    dragController.onMove(event);
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
+                    dragController.onUp(event);
+                    lastYPosition = params.y;
+                    if (!config.positionGravity.equals("none")) {
+                        startTrayAnimation();
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+            return false;
+        } catch (Exception e) {
+            service.logError("Error in onTouch", e);
+            return false;
+        }
+    }
+
+    private void startTrayAnimation() {
+        try {
+            int screenWidth = service.screenWidthPx();
+            float velocityX = dragController.getVelocityX();
+            // The configured friction decides which edge a fling reaches, apply it before projecting.
+            snapAnimator.setPhysics(config.snapStiffness, config.snapDampingRatio, config.snapFlingFriction);
+            int destX;
+            switch (config.positionGravity) {
+                case "auto":
+                    float projectedCenter = params.x + (flutterView.getWidth() / 2f)
+                            + snapAnimator.flingDistance(velocityX);
+                    destX = projectedCenter <= screenWidth / 2f ? 0 : screenWidth - flutterView.getWidth();
+                    break;
+                case "left":
+                    destX = 0;
+                    break;
+                case "right":
+                    destX = screenWidth - flutterView.getWidth();
+                    break;
+                default:
+                    return;
+            }
+            snappedEdge = destX == 0 ? Gravity.LEFT : Gravity.RIGHT;
+            snapAnimator.start(params, destX, lastYPosition, velocityX, 0);
+        } catch (Exception e) {
+            service.logError("Error starting tray animation", e);
+        }
+    }
+
+    /**
+     * Called after a rotation, fold or display change: a window snapped to an edge moves to the
+     * same edge of the new bounds, and the window is brought back inside the visible area.
+     */
+    void onGeometryChanged() {
+        if (!isAttached() || dragController.isDragging()) {
+            return;
+        }
+        snapAnimator.cancel();
+        geometryAnimator.cancel();
+        // Let the window relayout for the new configuration before reading its position.
+        flutterView.post(() -> {
+            if (!isAttached()) {
+                return;
+            }
+            fitToDisplay();
+            updateOffScreen();
+        });
+    }
+
+    /**
+     * Moves a window snapped to an edge to the same edge of the new bounds and shifts it back
+     * inside the visible area, in a single layout. The frame is computed from {@link #params}
+     * with the window manager's gravity rules, the view is not laid out at its new place yet.
+     */
+    private void fitToDisplay() {
+        int width = params.width >= 0 ? params.width : root.getWidth();
+        int height = params.height >= 0 ? params.height : root.getHeight();
+        boolean changed = false;
+        if (snappedEdge != Gravity.NO_GRAVITY && !config.positionGravity.equals("none")) {
+            int x = snappedEdge == Gravity.LEFT ? 0 : service.screenWidthPx() - width;
+            changed = x != params.x;
+            params.x = x;
+        }
+        if (shiftInside(params, width, height, service.geometry().realBounds(),
+                service.geometry().visibleBounds(), frame)) {
+            lastYPosition = params.y;
+            changed = true;
+        }
+        if (changed) {
+            commitLayout(params, OverlayPositionPublisher.SOURCE_DISPLAY);
+        }
+    }
+
+    /**
+     * Shifts the window placed by {@code params} back inside {@code visible}, returns whether it
+     * moved. {@code out} receives its frame before the shift.
+     */
+    static boolean shiftInside(WindowManager.LayoutParams params, int width, int height, Rect screen, Rect visible,
+                               Rect out) {
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        Gravity.apply(params.gravity, width, height, screen, params.x, params.y, out);
+        int dx = overflowShift(out.left, width, visible.left, visible.right);
+        int dy = overflowShift(out.top, height, visible.top, visible.bottom);
+        if (dx == 0 && dy == 0) {
+            return false;
+        }
+        // With a right or bottom gravity the offsets grow towards the left or the top.
+        params.x += (params.gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.RIGHT ? -dx : dx;
+        params.y += (params.gravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.BOTTOM ? -dy : dy;
+        return true;
+    }
+
+    /**
+     * Shift bringing {@code [start, start + size)} inside {@code [min, max)}, zero for a window
+     * larger than the area.
+     */
+    static int overflowShift(int start, int size, int min, int max) {
+        if (size >= max - min) {
+            return 0;
+        }
+        if (start < min) {
+            return min - start;
+        }
+        if (start + size > max) {
+            return max - (start + size);
+        }
+        return 0;
+    }
+
+    private void updateViewLayoutSafely(WindowManager.LayoutParams params) {
+        commitLayout(params, OverlayPositionPublisher.SOURCE_PROGRAMMATIC);
+    }
+
+    private void commitLayout(WindowManager.LayoutParams params, int source) {
+        if (isAttached()) {
+            long start = System.nanoTime();
+            OverlayMetrics.beginSection(OverlayMetrics.SECTION_LAYOUT_UPDATE);
+            try {
+                windowManager.updateViewLayout(root, hidden ? windowParams() : params);
+                publishPosition();
+                positionPublisher.onLayoutChanged(source);
+                updateOffScreen();
+                frameRateThrottler.onActivity();
+            } catch (Exception e) {
+                service.logError("Error updating view layout", e);
+            } finally {
+                OverlayMetrics.endSection();
+                OverlayMetrics.recordTime(OverlayMetrics.LAYOUT_UPDATE, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private WindowManager.LayoutParams createLayoutParams() {
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                        ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                        : WindowManager.LayoutParams.TYPE_PHONE,
+                config.flag | COMMON_FLAGS,
+                OverlayWindowConfig.RENDER_SURFACE.equals(config.renderMode)
+                        ? PixelFormat.OPAQUE
+                        : PixelFormat.TRANSLUCENT);
+
+        try {
+            params.gravity = config.gravity;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
+                config.flag == CLICKABLE_FLAG) {
+                params.alpha = MAXIMUM_OPACITY_ALLOWED_FOR_S_AND_HIGHER;
+            } else {
+                params.alpha = 1.0f;
+            }
+        } catch (Exception e) {
+            service.logError("Error setting layout params", e);
+            params.gravity = Gravity.TOP | Gravity.LEFT;
+            params.alpha = 1.0f;
+        }
+
+        return params;
+    }
+}
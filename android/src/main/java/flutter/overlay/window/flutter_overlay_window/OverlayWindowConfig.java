@@ -0,0 +1,120 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import android.view.Gravity;
+import android.view.WindowManager;
+
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodCall;
+
+/**
+ * Configuration of one overlay window, built from the {@code showOverlay} arguments.
+ */
+final class OverlayWindowConfig {
+
+    static final String RENDER_TEXTURE = "texture";
+    static final String RENDER_SURFACE = "surface";
+    static final String RENDER_TRANSPARENT_SURFACE = "transparentSurface";
+
+    final String id;
+    String entrypoint = OverlayConstants.DEFAULT_ENTRYPOINT;
+    String renderMode = RENDER_TEXTURE;
+    int height = WindowManager.LayoutParams.MATCH_PARENT;
+    int width = WindowManager.LayoutParams.MATCH_PARENT;
+    int flag = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+    int gravity = Gravity.CENTER;
+    String positionGravity = "none";
+    boolean enableDrag = false;
+    float snapStiffness = 700f;
+    float snapDampingRatio = 0.75f;
+    float snapFlingFriction = 4f;
+    int startX = OverlayConstants.DEFAULT_XY;
+    int startY = OverlayConstants.DEFAULT_XY;
+    boolean snapshotPlaceholder = false;
+    float idleFrameRate = 0f;
+    long idleAfterMs = 2000;
+    boolean idleWindowHint;
+    long requestedAtNanos = System.nanoTime();
+
+    OverlayWindowConfig(String id) {
+        this.id = id;
+    }
+
+    static OverlayWindowConfig fromCall(MethodCall call) {
+        String id = call.argument("overlayId");
+        OverlayWindowConfig config = new OverlayWindowConfig(id != null ? id : OverlayConstants.DEFAULT_OVERLAY_ID);
+
+        String entrypoint = call.argument("entryPoint");
+        String renderMode = call.argument("renderMode");
+        Integer height = call.argument("height");
+        Integer width = call.argument("width");
+        String alignment = call.argument("alignment");
+        String flag = call.argument("flag");
+        Boolean enableDrag = call.argument("enableDrag");
+        String positionGravity = call.argument("positionGravity");
+        Map<String, Integer> startPosition = call.argument("startPosition");
+        Map<String, Object> snapPhysics = call.argument("snapPhysics");
+        Boolean snapshotPlaceholder = call.argument("snapshotPlaceholder");
+        Map<String, Object> frameRateThrottle = call.argument("frameRateThrottle");
+
+        if (entrypoint != null) config.entrypoint = entrypoint;
+        if (RENDER_SURFACE.equals(renderMode) || RENDER_TRANSPARENT_SURFACE.equals(renderMode)) {
+            config.renderMode = renderMode;
+        }
+        config.width = width != null ? width : -1;
+        config.height = height != null ? height : -1;
+        config.enableDrag = enableDrag != null && enableDrag;
+        config.gravity = WindowSetup.gravityFromAlignment(alignment != null ? alignment : "center", config.gravity);
+        config.flag = WindowSetup.flagFromName(flag != null ? flag : "flagNotFocusable", config.flag);
+        config.positionGravity = positionGravity != null ? positionGravity : "none";
+        config.snapshotPlaceholder = snapshotPlaceholder != null && snapshotPlaceholder;
+        if (startPosition != null) {
+            Integer x = startPosition.get("x");
+            Integer y = startPosition.get("y");
+            if (x != null) config.startX = x;
+            if (y != null) config.startY = y;
+        }
+        if (snapPhysics != null) {
+            config.snapStiffness = floatValue(snapPhysics.get("stiffness"), config.snapStiffness);
+            config.snapDampingRatio = floatValue(snapPhysics.get("dampingRatio"), config.snapDampingRatio);
+            config.snapFlingFriction = floatValue(snapPhysics.get("flingFriction"), config.snapFlingFriction);
+        }
+        if (frameRateThrottle != null) {
+            config.idleFrameRate = floatValue(frameRateThrottle.get("idleFrameRate"), config.idleFrameRate);
+            Object idleAfterMs = frameRateThrottle.get("idleAfterMs");
+            if (idleAfterMs instanceof Number) config.idleAfterMs = ((Number) idleAfterMs).longValue();
+            config.idleWindowHint = Boolean.TRUE.equals(frameRateThrottle.get("windowHint"));
+        }
+        return config;
+    }
+
+    /**
+     * A copy the window can change, the published config is shared between threads.
+     */
+    OverlayWindowConfig copy() {
+        OverlayWindowConfig copy = new OverlayWindowConfig(id);
+        copy.entrypoint = entrypoint;
+        copy.renderMode = renderMode;
+        copy.height = height;
+        copy.width = width;
+        copy.flag = flag;
+        copy.gravity = gravity;
+        copy.positionGravity = positionGravity;
+        copy.enableDrag = enableDrag;
+        copy.snapStiffness = snapStiffness;
+        copy.snapDampingRatio = snapDampingRatio;
+        copy.snapFlingFriction = snapFlingFriction;
+        copy.startX = startX;
+        copy.startY = startY;
+        copy.snapshotPlaceholder = snapshotPlaceholder;
+        copy.idleFrameRate = idleFrameRate;
+        copy.idleAfterMs = idleAfterMs;
+        copy.idleWindowHint = idleWindowHint;
+        copy.requestedAtNanos = requestedAtNanos;
+        return copy;
+    }
+
+    private static float floatValue(Object value, float fallback) {
+        return value instanceof Number ? ((Number) value).floatValue() : fallback;
+    }
+}
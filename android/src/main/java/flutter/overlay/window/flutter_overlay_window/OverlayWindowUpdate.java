@@ -0,0 +1,90 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * One {@code applyWindowUpdate} transaction: every field is optional, a null field is left
+ * unchanged. {@link #parse(Map)} validates the whole update before anything is applied, so an
+ * invalid update changes nothing.
+ */
+final class OverlayWindowUpdate {
+
+    @Nullable Integer x;
+    @Nullable Integer y;
+    @Nullable Integer width;
+    @Nullable Integer height;
+    @Nullable String flag;
+    @Nullable Float alpha;
+    @Nullable Integer blurRadius;
+    @Nullable Boolean enableDrag;
+
+    static OverlayWindowUpdate parse(@Nullable Map<?, ?> arguments) {
+        if (arguments == null) {
+            throw new IllegalArgumentException("Missing window update");
+        }
+        OverlayWindowUpdate update = new OverlayWindowUpdate();
+        update.x = integer(arguments, "x");
+        update.y = integer(arguments, "y");
+        update.width = size(arguments, "width");
+        update.height = size(arguments, "height");
+        update.blurRadius = integer(arguments, "blurRadius");
+        if (update.blurRadius != null && update.blurRadius < 0) {
+            throw new IllegalArgumentException("blurRadius must not be negative: " + update.blurRadius);
+        }
+
+        Object flag = arguments.get("flag");
+        if (flag != null) {
+            if (!(flag instanceof String) || WindowSetup.flagFromName((String) flag, 0) == 0) {
+                throw new IllegalArgumentException("Unknown flag: " + flag);
+            }
+            update.flag = (String) flag;
+        }
+
+        Object alpha = arguments.get("alpha");
+        if (alpha != null) {
+            if (!(alpha instanceof Number)) {
+                throw new IllegalArgumentException("alpha must be a number: " + alpha);
+            }
+            float value = ((Number) alpha).floatValue();
+            if (value < 0f || value > 1f) {
+                throw new IllegalArgumentException("alpha must be between 0 and 1: " + value);
+            }
+            update.alpha = value;
+        }
+
+        Object enableDrag = arguments.get("enableDrag");
+        if (enableDrag != null) {
+            if (!(enableDrag instanceof Boolean)) {
+                throw new IllegalArgumentException("enableDrag must be a boolean: " + enableDrag);
+            }
+            update.enableDrag = (Boolean) enableDrag;
+        }
+        return update;
+    }
+
+    @Nullable
+    private static Integer integer(Map<?, ?> arguments, String key) {
+        Object value = arguments.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(key + " must be a number: " + value);
+        }
+        return ((Number) value).intValue();
+    }
+
+    /**
+     * A size in dp, or one of the {@code WindowSize} constants.
+     */
+    @Nullable
+    private static Integer size(Map<?, ?> arguments, String key) {
+        Integer value = integer(arguments, key);
+        if (value != null && value < 0 && value != -1 && value != -1999) {
+            throw new IllegalArgumentException(key + " must be positive or a WindowSize constant: " + value);
+        }
+        return value;
+    }
+}
@@ -6,96 +6,130 @@ import android.view.WindowManager;
 
 import androidx.core.app.NotificationCompat;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
 import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryMessenger;
 
 public abstract class WindowSetup {
 
-    static int height = WindowManager.LayoutParams.MATCH_PARENT;
-    static int width = WindowManager.LayoutParams.MATCH_PARENT;
-    static int flag = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
-    static int gravity = Gravity.CENTER;
-    static BasicMessageChannel<Object> messenger = null;
-    static String overlayTitle = "Overlay is activated";
-    static String overlayContent = "Tap to edit settings or disable";
-    static String positionGravity = "none";
-    static int notificationVisibility = NotificationCompat.VISIBILITY_PRIVATE;
-    static boolean enableDrag = false;
+    static volatile BasicMessageChannel<Object> messenger = null;
+    static volatile BinaryMessenger hostMessenger = null;
+    private static final AtomicReference<Settings> settings = new AtomicReference<>(Settings.DEFAULT);
 
+    /**
+     * What the last {@code showOverlay} calls asked for, never changed once published so the
+     * service can read it on any thread without seeing half of a call.
+     */
+    static final class Settings {
+        static final Settings DEFAULT = new Settings("Overlay is activated", "Tap to edit settings or disable",
+                NotificationCompat.VISIBILITY_PRIVATE, Collections.<String, OverlayWindowConfig>emptyMap());
 
-    static void setNotificationVisibility(String name) {
-        if (name.equalsIgnoreCase("visibilityPublic")) {
-            notificationVisibility = NotificationCompat.VISIBILITY_PUBLIC;
-        }
-        if (name.equalsIgnoreCase("visibilitySecret")) {
-            notificationVisibility = NotificationCompat.VISIBILITY_SECRET;
+        final String overlayTitle;
+        final String overlayContent;
+        final int notificationVisibility;
+        /** Window configs by overlay id, copy one before changing it. */
+        final Map<String, OverlayWindowConfig> configs;
+
+        private Settings(String overlayTitle, String overlayContent, int notificationVisibility,
+                         Map<String, OverlayWindowConfig> configs) {
+            this.overlayTitle = overlayTitle;
+            this.overlayContent = overlayContent;
+            this.notificationVisibility = notificationVisibility;
+            this.configs = configs;
         }
-        if (name.equalsIgnoreCase("visibilityPrivate")) {
-            notificationVisibility = NotificationCompat.VISIBILITY_PRIVATE;
+
+        private Settings withOverlay(OverlayWindowConfig config, String overlayTitle, String overlayContent,
+                                     int notificationVisibility) {
+            Map<String, OverlayWindowConfig> configs = new HashMap<>(this.configs);
+            configs.put(config.id, config);
+            return new Settings(overlayTitle, overlayContent, notificationVisibility,
+                    Collections.unmodifiableMap(configs));
         }
     }
 
-    static void setFlag(String name) {
-        if (name.equalsIgnoreCase("flagNotFocusable") || name.equalsIgnoreCase("defaultFlag")) {
-            flag = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+    static Settings settings() {
+        return settings.get();
+    }
+
+    /**
+     * Publishes {@code config} and the notification texts of a {@code showOverlay} call. The
+     * config must not be changed afterwards.
+     */
+    static void publish(OverlayWindowConfig config, String overlayTitle, String overlayContent,
+                        String notificationVisibility) {
+        Settings current;
+        Settings next;
+        do {
+            current = settings.get();
+            next = current.withOverlay(config, overlayTitle, overlayContent,
+                    notificationVisibilityFromName(notificationVisibility, current.notificationVisibility));
+        } while (!settings.compareAndSet(current, next));
+    }
+
+    static int notificationVisibilityFromName(String name, int fallback) {
+        if (name == null) {
+            return fallback;
         }
-        if (name.equalsIgnoreCase("flagNotTouchable") || name.equalsIgnoreCase("clickThrough")) {
-            flag = WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
-                    WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
+        if (name.equalsIgnoreCase("visibilityPublic")) {
+            return NotificationCompat.VISIBILITY_PUBLIC;
         }
-        if (name.equalsIgnoreCase("flagNotTouchModal") || name.equalsIgnoreCase("focusPointer")) {
-            flag = WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL;
+        if (name.equalsIgnoreCase("visibilitySecret")) {
+            return NotificationCompat.VISIBILITY_SECRET;
         }
+        if (name.equalsIgnoreCase("visibilityPrivate")) {
+            return NotificationCompat.VISIBILITY_PRIVATE;
+        }
+        return fallback;
     }
 
-    static void showWhenLocked(String name) {
+    static int flagFromName(String name, int fallback) {
         if (name.equalsIgnoreCase("flagNotFocusable") || name.equalsIgnoreCase("defaultFlag")) {
-            flag = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+            return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
         }
         if (name.equalsIgnoreCase("flagNotTouchable") || name.equalsIgnoreCase("clickThrough")) {
-            flag = WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
+            return WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
                     WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
         }
         if (name.equalsIgnoreCase("flagNotTouchModal") || name.equalsIgnoreCase("focusPointer")) {
-            flag = WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL;
+            return WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL;
         }
+        return fallback;
     }
 
-    static void setGravityFromAlignment(String alignment) {
+    static int gravityFromAlignment(String alignment, int fallback) {
         if (alignment.equalsIgnoreCase("topLeft")) {
-            gravity = Gravity.TOP | Gravity.LEFT;
-            return;
+            return Gravity.TOP | Gravity.LEFT;
         }
         if (alignment.equalsIgnoreCase("topCenter")) {
-            gravity = Gravity.TOP;
+            return Gravity.TOP;
         }
         if (alignment.equalsIgnoreCase("topRight")) {
-            gravity = Gravity.TOP | Gravity.RIGHT;
-            return;
+            return Gravity.TOP | Gravity.RIGHT;
         }
 
         if (alignment.equalsIgnoreCase("centerLeft")) {
-            gravity = Gravity.CENTER | Gravity.LEFT;
-            return;
+            return Gravity.CENTER | Gravity.LEFT;
         }
         if (alignment.equalsIgnoreCase("center")) {
-            gravity = Gravity.CENTER;
+            return Gravity.CENTER;
         }
         if (alignment.equalsIgnoreCase("centerRight")) {
-            gravity = Gravity.CENTER | Gravity.RIGHT;
-            return;
+            return Gravity.CENTER | Gravity.RIGHT;
         }
 
         if (alignment.equalsIgnoreCase("bottomLeft")) {
-            gravity = Gravity.BOTTOM | Gravity.LEFT;
-            return;
+            return Gravity.BOTTOM | Gravity.LEFT;
         }
         if (alignment.equalsIgnoreCase("bottomCenter")) {
-            gravity = Gravity.BOTTOM;
+            return Gravity.BOTTOM;
         }
         if (alignment.equalsIgnoreCase("bottomRight")) {
-            gravity = Gravity.BOTTOM | Gravity.RIGHT;
-            return;
+            return Gravity.BOTTOM | Gravity.RIGHT;
         }
-
+        return fallback;
     }
 }
@@ -0,0 +1,140 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.res.Resources;
+import android.graphics.Rect;
+import android.os.Looper;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.WindowManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(qualifiers = "w411dp-h891dp-xhdpi")
+public class DisplayGeometryTest {
+
+    private static final int ITERATIONS = 200_000;
+
+    private DisplayGeometry geometry;
+    private Resources resources;
+
+    @Before
+    public void setUp() {
+        geometry = new DisplayGeometry(RuntimeEnvironment.getApplication());
+        resources = RuntimeEnvironment.getApplication().getResources();
+    }
+
+    @Test
+    public void conversionsMatchTheDisplayMetrics() {
+        for (int dp = -2000; dp <= 2000; dp += 7) {
+            assertEquals(legacyDpToPx(dp), geometry.dpToPx(dp));
+            assertEquals((double) dp / resources.getDisplayMetrics().density, geometry.pxToDp(dp), 0);
+        }
+    }
+
+    @Test
+    public void invalidateReadsTheNewDensity() {
+        assertEquals(200, geometry.dpToPx(100));
+
+        RuntimeEnvironment.setQualifiers("xxhdpi");
+        assertEquals(200, geometry.dpToPx(100));
+
+        geometry.invalidate();
+        assertEquals(300, geometry.dpToPx(100));
+    }
+
+    @Test
+    public void listenerIsOnlyToldAboutActualChanges() {
+        int[] changes = new int[1];
+        geometry.setListener(g -> changes[0]++);
+        geometry.dpToPx(1);
+
+        geometry.invalidate();
+        geometry.invalidate();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(0, changes[0]);
+
+        RuntimeEnvironment.setQualifiers("land");
+        geometry.invalidate();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(1, changes[0]);
+        assertEquals(geometry.realWidthPx(), geometry.toMap().get("realWidth"));
+    }
+
+    @Test
+    public void overflowShiftBringsWindowsBackInside() {
+        assertEquals(0, OverlayWindow.overflowShift(100, 200, 0, 1080));
+        assertEquals(80, OverlayWindow.overflowShift(-80, 200, 0, 1080));
+        assertEquals(-120, OverlayWindow.overflowShift(1000, 200, 0, 1080));
+        assertEquals(0, OverlayWindow.overflowShift(-10, 1080, 0, 1080));
+    }
+
+    @Test
+    public void windowsResnappedToTheRightEdgeAreNotShiftedAgain() {
+        Rect portrait = new Rect(0, 0, 1080, 2400);
+        Rect visible = new Rect(0, 80, 1080, 2300);
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams();
+        params.gravity = Gravity.TOP | Gravity.LEFT;
+        // Where the landscape to portrait resnap puts a 200px window snapped to the right.
+        params.x = 1080 - 200;
+        params.y = 600;
+
+        assertFalse(OverlayWindow.shiftInside(params, 200, 200, portrait, visible, new Rect()));
+        assertEquals(880, params.x);
+    }
+
+    @Test
+    public void shiftInsideFollowsTheWindowGravity() {
+        Rect screen = new Rect(0, 0, 1080, 2400);
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams();
+        params.gravity = Gravity.BOTTOM | Gravity.RIGHT;
+        params.x = -50;
+        params.y = 10;
+
+        assertTrue(OverlayWindow.shiftInside(params, 200, 200, screen, new Rect(0, 80, 1080, 2300),
+                new Rect()));
+        assertEquals(0, params.x);
+        assertEquals(100, params.y);
+    }
+
+    /**
+     * The conversions run on every drag and resize, the cached path must not allocate.
+     */
+    @Test
+    public void cachedConversionDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += geometry.dpToPx(i & 1023);
+        }
+
+        long bytes = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += geometry.dpToPx(i & 1023);
+            sink += (long) geometry.pxToDp(i & 1023);
+        }
+        bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+        OverlayBenchmark.sink += sink;
+        assertTrue("cached conversions allocated " + bytes + " bytes", bytes < 1024);
+    }
+
+    private int legacyDpToPx(int dp) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                Float.parseFloat(dp + ""), resources.getDisplayMetrics());
+    }
+}
@@ -0,0 +1,121 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.os.Looper;
+import android.view.accessibility.AccessibilityEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayAccessibilityPipelineTest {
+
+    private List<List<Map<String, Object>>> batches;
+    private OverlayAccessibilityPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        batches = new ArrayList<>();
+        pipeline = new OverlayAccessibilityPipeline(batches::add);
+    }
+
+    @Test
+    public void nothingIsDeliveredUntilEnabled() {
+        pipeline.onEvent(event(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, "com.example"));
+        idle(1000);
+
+        assertEquals(0, batches.size());
+        assertEquals(0L, pipeline.getStats().get("received"));
+    }
+
+    @Test
+    public void filtersByTypeAndPackage() {
+        pipeline.configure(true, AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED,
+                Collections.singletonList("com.example"), 50, false, false);
+
+        pipeline.onEvent(event(AccessibilityEvent.TYPE_VIEW_SCROLLED, "com.example"));
+        pipeline.onEvent(event(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, "com.other"));
+        pipeline.onEvent(event(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, "com.example"));
+        idle(50);
+
+        assertEquals(1, batches.size());
+        assertEquals(1, batches.get(0).size());
+        assertEquals("com.example", batches.get(0).get(0).get("packageName"));
+        assertFalse(batches.get(0).get(0).containsKey("node"));
+        assertEquals(2L, pipeline.getStats().get("filtered"));
+    }
+
+    @Test
+    public void burstIsCoalescedWithinTheDebounceWindow() {
+        pipeline.configure(true, 0, null, 100, false, false);
+
+        for (int i = 0; i < 20; i++) {
+            pipeline.onEvent(event(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, "com.example"));
+        }
+        pipeline.onEvent(event(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, "com.example"));
+        idle(99);
+        assertEquals(0, batches.size());
+
+        idle(1);
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(19L, pipeline.getStats().get("coalesced"));
+    }
+
+    @Test
+    public void disablingRestoresTheDeclaredServiceInfo() {
+        int declaredTypes = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED | AccessibilityEvent.TYPE_VIEW_CLICKED;
+        String[] declaredPackages = {"com.example"};
+        AccessibilityService service = Robolectric.setupService(TestService.class);
+        AccessibilityServiceInfo declared = new AccessibilityServiceInfo();
+        declared.eventTypes = declaredTypes;
+        declared.packageNames = declaredPackages;
+        service.setServiceInfo(declared);
+
+        pipeline.configure(true, AccessibilityEvent.TYPE_VIEW_SCROLLED,
+                Collections.singletonList("com.other"), 50, false, true);
+        pipeline.applyServiceInfo(service);
+        assertEquals(AccessibilityEvent.TYPE_VIEW_SCROLLED, service.getServiceInfo().eventTypes);
+        assertArrayEquals(new String[]{"com.other"}, service.getServiceInfo().packageNames);
+
+        pipeline.configure(false, 0, null, 50, false, true);
+        pipeline.applyServiceInfo(service);
+        assertEquals(declaredTypes, service.getServiceInfo().eventTypes);
+        assertArrayEquals(declaredPackages, service.getServiceInfo().packageNames);
+    }
+
+    private static AccessibilityEvent event(int type, String packageName) {
+        AccessibilityEvent event = AccessibilityEvent.obtain(type);
+        event.setPackageName(packageName);
+        return event;
+    }
+
+    private static void idle(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+
+    public static class TestService extends AccessibilityService {
+        @Override
+        public void onAccessibilityEvent(AccessibilityEvent event) {
+        }
+
+        @Override
+        public void onInterrupt() {
+        }
+    }
+}
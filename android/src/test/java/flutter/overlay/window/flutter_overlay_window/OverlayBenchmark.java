@@ -0,0 +1,139 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Small JMH style harness for the JVM tests: warms an operation up, measures it over several
+ * rounds and keeps the best round, then checks time and allocation per operation against the
+ * budgets in {@code overlay_perf_budgets.properties}.
+ * <p>
+ * Budgets are ceilings, not exact values, so slower machines do not fail spuriously. Run with
+ * {@code -PoverlayPerfRecord=true} to print the measured values (and write them to
+ * {@code build/overlay-perf/results.properties}) without failing, and with
+ * {@code -PoverlayPerfTolerance=2} to scale every time budget on a slow CI runner.
+ */
+final class OverlayBenchmark {
+
+    interface Operation {
+        /**
+         * Runs iteration {@code i}, the returned value is consumed so the work is not optimized away.
+         */
+        long run(int i);
+    }
+
+    static final class Result {
+        final String name;
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %.1f ns/op, %.2f B/op", name, nanosPerOp, bytesPerOp);
+        }
+    }
+
+    private static final String BUDGETS = "/overlay_perf_budgets.properties";
+    private static final int ROUNDS = 5;
+    /** Measuring allocations allocates a little itself, this much per op is noise. */
+    private static final double ALLOCATION_SLACK_BYTES = 1.0;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static Properties budgets;
+    static long sink;
+
+    private OverlayBenchmark() {
+    }
+
+    static Result measure(String name, int iterations, Operation operation) {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < iterations; i++) {
+            sink += operation.run(i);
+        }
+        double bestNanos = Double.MAX_VALUE;
+        double bestBytes = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += operation.run(i);
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+            bestNanos = Math.min(bestNanos, (double) nanos / iterations);
+            bestBytes = Math.min(bestBytes, (double) bytes / iterations);
+        }
+        return new Result(name, bestNanos, bestBytes);
+    }
+
+    /**
+     * Fails when {@code result} is slower or allocates more than its budget, a budget of -1
+     * is not checked. In record mode the result is only written out.
+     */
+    static void assertWithinBudget(Result result) {
+        if (Boolean.getBoolean("overlay.perf.record")) {
+            record(result);
+            return;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("overlay.perf.tolerance", "1"));
+        double nanosBudget = budget(result.name + ".nanosPerOp");
+        double bytesBudget = budget(result.name + ".bytesPerOp");
+        if (nanosBudget >= 0) {
+            assertTrue(result + " is over its budget of " + nanosBudget * tolerance + " ns/op",
+                    result.nanosPerOp <= nanosBudget * tolerance);
+        }
+        if (bytesBudget >= 0) {
+            assertTrue(result + " is over its budget of " + bytesBudget + " B/op",
+                    result.bytesPerOp <= bytesBudget + ALLOCATION_SLACK_BYTES);
+        }
+    }
+
+    private static synchronized double budget(String key) {
+        if (budgets == null) {
+            budgets = new Properties();
+            try (InputStream in = OverlayBenchmark.class.getResourceAsStream(BUDGETS)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing " + BUDGETS);
+                }
+                budgets.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unreadable " + BUDGETS, e);
+            }
+        }
+        String value = budgets.getProperty(key);
+        if (value == null) {
+            throw new IllegalStateException("No budget for " + key + " in " + BUDGETS);
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+    private static synchronized void record(Result result) {
+        System.out.println(result);
+        File file = new File("build/overlay-perf/results.properties");
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        try (Writer writer = new FileWriter(file, true)) {
+            writer.write(String.format(Locale.ROOT, "%s.nanosPerOp=%.1f%n%s.bytesPerOp=%.2f%n",
+                    result.name, result.nanosPerOp, result.name, result.bytesPerOp));
+        } catch (IOException e) {
+            System.err.println("Could not record " + result + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+public class OverlayChannelManagerTest {
+
+    private OverlayChannelManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new OverlayChannelManager(OverlayConstants.MESSENGER_TAG, StandardMessageCodec.INSTANCE);
+    }
+
+    @Test
+    public void channelIsCreatedOncePerEngine() {
+        Object engine = new Object();
+        RecordingMessenger messenger = new RecordingMessenger();
+
+        manager.bind(engine, messenger);
+        BasicMessageChannel<Object> channel = manager.getChannel();
+        manager.bind(engine, messenger);
+        manager.send("a", null);
+        manager.send("b", null);
+
+        assertSame(channel, manager.getChannel());
+        assertEquals(2, messenger.messages.size());
+        assertEquals("a", messenger.decoded(0));
+        assertEquals("b", messenger.decoded(1));
+    }
+
+    @Test
+    public void replacedEngineGetsItsOwnChannel() {
+        Object oldEngine = new Object();
+        Object newEngine = new Object();
+        RecordingMessenger oldMessenger = new RecordingMessenger();
+        RecordingMessenger newMessenger = new RecordingMessenger();
+
+        manager.bind(oldEngine, oldMessenger);
+        BasicMessageChannel<Object> oldChannel = manager.getChannel();
+        manager.bind(newEngine, newMessenger);
+        manager.send("after", null);
+
+        assertTrue(manager.isBoundTo(newEngine));
+        assertFalse(oldChannel == manager.getChannel());
+        assertEquals(0, oldMessenger.messages.size());
+        assertEquals("after", newMessenger.decoded(0));
+    }
+
+    @Test
+    public void staleUnbindDoesNotDropTheCurrentChannel() {
+        Object oldEngine = new Object();
+        Object newEngine = new Object();
+        manager.bind(oldEngine, new RecordingMessenger());
+        manager.bind(newEngine, new RecordingMessenger());
+
+        manager.unbind(oldEngine);
+        assertTrue(manager.isBoundTo(newEngine));
+
+        manager.unbind(newEngine);
+        assertFalse(manager.isBound());
+        assertNull(manager.getMessenger());
+    }
+
+    @Test
+    public void ownerListenerHearsBindAndUnbind() {
+        int[] changes = new int[1];
+        manager.setOwnerListener(() -> changes[0]++);
+        Object engine = new Object();
+
+        manager.bind(engine, new RecordingMessenger());
+        manager.bind(engine, new RecordingMessenger());
+        manager.unbind(new Object());
+        manager.unbind(engine);
+        assertEquals(2, changes[0]);
+    }
+
+    @Test
+    public void messagesAreQueuedUntilAnEngineIsBound() {
+        manager.send("queued", null);
+        assertEquals(1, manager.pendingCount());
+
+        RecordingMessenger messenger = new RecordingMessenger();
+        manager.bind(new Object(), messenger);
+
+        assertEquals(0, manager.pendingCount());
+        assertEquals("queued", messenger.decoded(0));
+    }
+
+    @Test
+    public void fullQueueRejectsTheOldestMessage() {
+        List<Object> replies = new ArrayList<>();
+        for (int i = 0; i <= OverlayChannelManager.MAX_PENDING_MESSAGES; i++) {
+            manager.send(i, replies::add);
+        }
+
+        assertEquals(OverlayChannelManager.MAX_PENDING_MESSAGES, manager.pendingCount());
+        assertEquals(1, replies.size());
+        assertEquals(OverlayChannelManager.DROPPED_REPLY, replies.get(0));
+
+        RecordingMessenger messenger = new RecordingMessenger();
+        manager.bind(new Object(), messenger);
+        assertEquals(1, messenger.decoded(0));
+    }
+}
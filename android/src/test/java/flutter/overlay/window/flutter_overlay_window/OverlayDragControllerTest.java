@@ -0,0 +1,101 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.WindowManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayDragControllerTest {
+
+    private int layoutUpdates;
+    private WindowManager.LayoutParams params;
+    private OverlayDragController controller;
+
+    @Before
+    public void setUp() {
+        layoutUpdates = 0;
+        params = new WindowManager.LayoutParams();
+        controller = new OverlayDragController(p -> layoutUpdates++);
+    }
+
+    @Test
+    public void burstOfMovesProducesOneLayoutUpdatePerFrame() {
+        controller.onDown(event(MotionEvent.ACTION_DOWN, 0, 0, 0), params, Gravity.TOP | Gravity.LEFT);
+        for (int i = 1; i <= 8; i++) {
+            controller.onMove(event(MotionEvent.ACTION_MOVE, i, i * 10, i * 5));
+        }
+        assertEquals(0, layoutUpdates);
+
+        nextFrame();
+        assertEquals(1, layoutUpdates);
+        assertEquals(80, params.x);
+        assertEquals(40, params.y);
+
+        for (int i = 9; i <= 16; i++) {
+            controller.onMove(event(MotionEvent.ACTION_MOVE, i, i * 10, i * 5));
+        }
+        nextFrame();
+        assertEquals(2, layoutUpdates);
+        assertEquals(160, params.x);
+        assertEquals(80, params.y);
+    }
+
+    @Test
+    public void historicalSamplesAreNotDropped() {
+        controller.onDown(event(MotionEvent.ACTION_DOWN, 0, 0, 0), params, Gravity.TOP | Gravity.LEFT);
+        // The finger went out to 30 and came back inside the touch slop within one batch, only the
+        // historical sample at 30 starts the drag.
+        MotionEvent move = event(MotionEvent.ACTION_MOVE, 1, 2, 0);
+        move.addBatch(2, 30, 0, 1f, 1f, 0);
+        move.addBatch(3, 3, 0, 1f, 1f, 0);
+        assertEquals(2, move.getHistorySize());
+
+        assertTrue(controller.onMove(move));
+        nextFrame();
+        assertEquals(1, layoutUpdates);
+        assertEquals(3, params.x);
+    }
+
+    @Test
+    public void movesInsideTouchSlopDoNotTouchTheWindow() {
+        controller.onDown(event(MotionEvent.ACTION_DOWN, 0, 0, 0), params, Gravity.TOP | Gravity.LEFT);
+        controller.onMove(event(MotionEvent.ACTION_MOVE, 1, 2, 2));
+        nextFrame();
+        controller.onUp(event(MotionEvent.ACTION_UP, 2, 2, 2));
+        assertEquals(0, layoutUpdates);
+        assertEquals(0, params.x);
+    }
+
+    @Test
+    public void releaseCommitsPendingDeltaImmediately() {
+        controller.onDown(event(MotionEvent.ACTION_DOWN, 0, 0, 0), params, Gravity.TOP | Gravity.RIGHT);
+        controller.onMove(event(MotionEvent.ACTION_MOVE, 1, 50, 20));
+        controller.onUp(event(MotionEvent.ACTION_UP, 2, 50, 20));
+        assertEquals(1, layoutUpdates);
+        assertEquals(-50, params.x);
+        assertEquals(20, params.y);
+
+        nextFrame();
+        assertEquals(1, layoutUpdates);
+    }
+
+    private static MotionEvent event(int action, long time, float x, float y) {
+        return MotionEvent.obtain(0, time, action, x, y, 0);
+    }
+
+    private static void nextFrame() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(20));
+    }
+}
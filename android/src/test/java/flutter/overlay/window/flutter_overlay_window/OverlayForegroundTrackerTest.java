@@ -0,0 +1,97 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.accessibilityservice.AccessibilityService;
+import android.view.accessibility.AccessibilityEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayForegroundTrackerTest {
+
+    private final List<String> transitions = new ArrayList<>();
+    private OverlayForegroundTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new OverlayForegroundTracker((packageName, className, packageChanged) ->
+                transitions.add(packageName + "/" + className + (packageChanged ? "" : " (window)")));
+        tracker.configure(true, null, null, null);
+    }
+
+    @Test
+    public void repeatedStateChangesAreDeduplicated() {
+        tracker.onEvent(windowStateChanged("com.example", "com.example.Main"), null);
+        tracker.onEvent(windowStateChanged("com.example", "com.example.Main"), null);
+        tracker.onEvent(windowStateChanged("com.example", "com.example.Details"), null);
+        tracker.onEvent(windowStateChanged("com.other", "com.other.Main"), null);
+        tracker.onEvent(windowStateChanged("com.other", "com.other.Main"), null);
+
+        assertEquals(3, transitions.size());
+        assertEquals("com.example/com.example.Main", transitions.get(0));
+        assertEquals("com.example/com.example.Details (window)", transitions.get(1));
+        assertEquals("com.other/com.other.Main", transitions.get(2));
+        assertEquals(2L, tracker.getStats().get("duplicates"));
+    }
+
+    @Test
+    public void otherEventTypesAreIgnored() {
+        AccessibilityEvent scrolled = AccessibilityEvent.obtain(AccessibilityEvent.TYPE_VIEW_SCROLLED);
+        scrolled.setPackageName("com.example");
+        tracker.onEvent(scrolled, null);
+
+        assertTrue(transitions.isEmpty());
+    }
+
+    @Test
+    public void ownOverlayWindowsAreNotAnAppSwitch() {
+        AccessibilityService service = Robolectric.setupService(TestService.class);
+        String ownPackage = service.getPackageName();
+        tracker.onEvent(windowStateChanged("com.example", "com.example.Main"), service);
+        tracker.onEvent(windowStateChanged(ownPackage, OverlayWindow.WINDOW_CLASS_NAME), service);
+        tracker.onEvent(windowStateChanged(ownPackage, "com.host.MainActivity"), service);
+
+        assertEquals(2, transitions.size());
+        assertEquals("com.example/com.example.Main", transitions.get(0));
+        assertEquals(ownPackage + "/com.host.MainActivity", transitions.get(1));
+    }
+
+    @Test
+    public void rulesResolvePerPackageAndOverlay() {
+        tracker.configure(true, Collections.singletonMap("com.camera", OverlayForegroundTracker.ACTION_HIDE),
+                OverlayForegroundTracker.ACTION_SHOW, Collections.singletonList("chat"));
+
+        assertEquals(OverlayForegroundTracker.ACTION_HIDE, tracker.actionFor("com.camera"));
+        assertEquals(OverlayForegroundTracker.ACTION_SHOW, tracker.actionFor("com.example"));
+        assertTrue(tracker.appliesTo("chat"));
+        assertFalse(tracker.appliesTo(OverlayConstants.DEFAULT_OVERLAY_ID));
+    }
+
+    private static AccessibilityEvent windowStateChanged(String packageName, String className) {
+        AccessibilityEvent event = AccessibilityEvent.obtain(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
+        event.setPackageName(packageName);
+        event.setClassName(className);
+        return event;
+    }
+
+    public static class TestService extends AccessibilityService {
+        @Override
+        public void onAccessibilityEvent(AccessibilityEvent event) {
+        }
+
+        @Override
+        public void onInterrupt() {
+        }
+    }
+}
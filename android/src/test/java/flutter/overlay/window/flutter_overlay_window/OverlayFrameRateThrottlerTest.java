@@ -0,0 +1,88 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayFrameRateThrottlerTest {
+
+    private static final long IDLE_AFTER_MS = 2000;
+
+    private final List<Float> rates = new ArrayList<>();
+    private OverlayFrameRateThrottler throttler;
+
+    @Before
+    public void setUp() {
+        throttler = new OverlayFrameRateThrottler(rates::add);
+    }
+
+    @After
+    public void tearDown() {
+        throttler.release();
+    }
+
+    @Test
+    public void throttlesOnceIdle() {
+        throttler.configure(30f, IDLE_AFTER_MS);
+        advance(IDLE_AFTER_MS - 1);
+        assertFalse(throttler.isIdle());
+
+        advance(1);
+        assertTrue(throttler.isIdle());
+        assertEquals(Arrays.asList(30f), rates);
+    }
+
+    @Test
+    public void activityPostponesTheIdlePeriod() {
+        throttler.configure(30f, IDLE_AFTER_MS);
+        advance(1500);
+        throttler.onActivity();
+
+        advance(IDLE_AFTER_MS - 1);
+        assertFalse(throttler.isIdle());
+        advance(1);
+        assertTrue(throttler.isIdle());
+    }
+
+    @Test
+    public void activityRestoresTheFullRateRightAway() {
+        throttler.configure(30f, IDLE_AFTER_MS);
+        advance(IDLE_AFTER_MS);
+
+        throttler.onActivity();
+        assertFalse(throttler.isIdle());
+        assertEquals(Arrays.asList(30f, 0f), rates);
+
+        advance(IDLE_AFTER_MS);
+        assertEquals(Arrays.asList(30f, 0f, 30f), rates);
+    }
+
+    @Test
+    public void zeroRateNeverThrottles() {
+        throttler.configure(0f, IDLE_AFTER_MS);
+        throttler.onActivity();
+        advance(IDLE_AFTER_MS * 5);
+
+        assertFalse(throttler.isEnabled());
+        assertTrue(rates.isEmpty());
+    }
+
+    private static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
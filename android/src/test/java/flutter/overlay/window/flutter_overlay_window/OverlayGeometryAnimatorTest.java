@@ -0,0 +1,151 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.view.WindowManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayGeometryAnimatorTest {
+
+    private int layoutUpdates;
+    private Boolean completed;
+    private WindowManager.LayoutParams params;
+    private OverlayGeometryAnimator animator;
+
+    @Before
+    public void setUp() {
+        layoutUpdates = 0;
+        completed = null;
+        params = new WindowManager.LayoutParams();
+        params.width = WindowManager.LayoutParams.MATCH_PARENT;
+        animator = new OverlayGeometryAnimator(p -> layoutUpdates++);
+    }
+
+    @Test
+    public void keyframeAnimationReachesTheTargetAndCompletes() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("x", 200);
+        arguments.put("height", 100);
+        arguments.put("durationMs", 200);
+        arguments.put("curve", "linear");
+        start(arguments);
+
+        advance(100);
+        assertNull(completed);
+        assertTrue(params.x > 0 && params.x < 200);
+        assertEquals(WindowManager.LayoutParams.MATCH_PARENT, params.width);
+
+        advance(200);
+        assertEquals(Boolean.TRUE, completed);
+        assertEquals(200, params.x);
+        assertEquals(100, params.height);
+        assertFalse(animator.isRunning());
+
+        int updates = layoutUpdates;
+        advance(100);
+        assertEquals(updates, layoutUpdates);
+    }
+
+    @Test
+    public void keyframesArePassedThrough() {
+        Map<String, Object> keyframe = new HashMap<>();
+        keyframe.put("at", 0.5);
+        keyframe.put("y", 300);
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("y", 0);
+        arguments.put("durationMs", 400);
+        arguments.put("curve", "linear");
+        arguments.put("keyframes", Collections.singletonList(keyframe));
+        start(arguments);
+
+        advance(220);
+        assertTrue("y=" + params.y, params.y > 250);
+        advance(300);
+        assertEquals(0, params.y);
+        assertEquals(Boolean.TRUE, completed);
+    }
+
+    @Test
+    public void springComesToRestOnTheTarget() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("x", 150);
+        arguments.put("y", 40);
+        arguments.put("stiffness", 500);
+        start(arguments);
+
+        advance(2000);
+        assertEquals(Boolean.TRUE, completed);
+        assertEquals(150, params.x);
+        assertEquals(40, params.y);
+    }
+
+    @Test
+    public void cancelStopsWhereTheWindowIs() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("x", 200);
+        arguments.put("durationMs", 200);
+        start(arguments);
+        advance(100);
+        int x = params.x;
+
+        animator.cancel();
+        assertEquals(Boolean.FALSE, completed);
+        advance(200);
+        assertEquals(x, params.x);
+    }
+
+    @Test
+    public void invalidAnimationsAreRejected() {
+        assertRejected(Collections.emptyMap());
+        assertRejected(map("width", -1));
+        Map<String, Object> unknownCurve = map("x", 10);
+        unknownCurve.put("curve", "wobble");
+        assertRejected(unknownCurve);
+        Map<String, Object> unordered = map("x", 10);
+        unordered.put("keyframes", Arrays.asList(map("at", 0.6), map("at", 0.3)));
+        assertRejected(unordered);
+    }
+
+    private void start(Map<String, Object> arguments) {
+        float[] start = {0, 0, 1080, 0};
+        animator.start(params, start, OverlayGeometryAnimator.Spec.parse(arguments).toPixels(1f),
+                c -> completed = c);
+    }
+
+    private static Map<String, Object> map(String key, Object value) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(key, value);
+        return map;
+    }
+
+    private static void assertRejected(Map<String, Object> arguments) {
+        try {
+            OverlayGeometryAnimator.Spec.parse(arguments);
+            fail(arguments + " was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void advance(long millis) {
+        for (long elapsed = 0; elapsed < millis; elapsed += 16) {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayMessageBatcherTest {
+
+    private static final long FLUSH_INTERVAL_MS = 10;
+
+    private final List<Object> batches = new ArrayList<>();
+    private final List<BasicMessageChannel.Reply<Object>> replies = new ArrayList<>();
+    private OverlayMessageBatcher batcher;
+
+    @Before
+    public void setUp() {
+        batcher = new OverlayMessageBatcher((batch, reply) -> {
+            batches.add(((Map<?, ?>) batch).get(OverlayMessageBatcher.BATCH_KEY));
+            replies.add(reply);
+        });
+        batcher.configure(true, 16, OverlayMessageBatcher.POLICY_DROP_OLDEST, null, FLUSH_INTERVAL_MS);
+    }
+
+    @Test
+    public void waitsForTheReplyBeforeTheNextBatch() {
+        batcher.offer("a");
+        batcher.offer("b");
+        nextFlush();
+        batcher.offer("c");
+        nextFlush();
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), batches);
+
+        replies.get(0).reply(null);
+        nextFlush();
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("c")), batches);
+    }
+
+    @Test
+    public void aChannelChangeStopsWaitingForTheLostReply() {
+        batcher.offer("a");
+        nextFlush();
+        batcher.offer("b");
+        nextFlush();
+        assertEquals(1, batches.size());
+
+        // The engine the first batch went to is gone, its reply never comes.
+        batcher.onChannelChanged();
+        nextFlush();
+        assertEquals(Collections.singletonList("b"), batches.get(1));
+
+        // A late reply to the lost batch does not release the one in flight.
+        replies.get(0).reply(null);
+        batcher.offer("c");
+        nextFlush();
+        assertEquals(2, batches.size());
+
+        replies.get(1).reply(null);
+        nextFlush();
+        assertEquals(Collections.singletonList("c"), batches.get(2));
+    }
+
+    @Test
+    public void shrinkingWhileBufferedDropsTheOldest() {
+        batcher.offer("a");
+        nextFlush();
+        batcher.offer("b");
+        batcher.offer("c");
+        batcher.offer("d");
+
+        batcher.configure(true, 2, OverlayMessageBatcher.POLICY_DROP_OLDEST, null, FLUSH_INTERVAL_MS);
+        assertEquals(1L, batcher.getStats().get("dropped"));
+        assertEquals(2, batcher.getStats().get("queued"));
+
+        replies.get(0).reply(null);
+        nextFlush();
+        assertEquals(Arrays.asList("c", "d"), batches.get(1));
+    }
+
+    private static void nextFlush() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(FLUSH_INTERVAL_MS));
+    }
+}
@@ -0,0 +1,80 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+public class OverlayMetricsTest {
+
+    @Before
+    public void setUp() {
+        OverlayMetrics.setRefreshRate(60f);
+        OverlayMetrics.reset();
+    }
+
+    @Test
+    public void timersKeepCountTotalAndMax() {
+        OverlayMetrics.recordTime(OverlayMetrics.LAYOUT_UPDATE, 2_000_000);
+        OverlayMetrics.recordTime(OverlayMetrics.LAYOUT_UPDATE, 6_000_000);
+        OverlayMetrics.recordTime(OverlayMetrics.LAYOUT_UPDATE, 1_000_000);
+
+        Map<?, ?> layout = (Map<?, ?>) OverlayMetrics.snapshot().get("layoutUpdate");
+        assertEquals(3L, layout.get("count"));
+        assertEquals(9.0, (double) layout.get("totalMillis"), 1e-9);
+        assertEquals(6.0, (double) layout.get("maxMillis"), 1e-9);
+        assertEquals(3.0, (double) layout.get("averageMillis"), 1e-9);
+
+        OverlayMetrics.reset();
+        layout = (Map<?, ?>) OverlayMetrics.snapshot().get("layoutUpdate");
+        assertEquals(0L, layout.get("count"));
+    }
+
+    @Test
+    public void lateDragFramesCountAsDropped() {
+        OverlayMetrics.onDragFrame(8_000_000);
+        OverlayMetrics.onDragFrame(-1_000_000);
+        OverlayMetrics.onDragFrame(40_000_000);
+
+        Map<String, Object> metrics = OverlayMetrics.snapshot();
+        assertEquals(3L, metrics.get("dragFrames"));
+        assertEquals(2L, metrics.get("droppedDragFrames"));
+    }
+
+    @Test
+    public void skippedRenderingCountsWholeFrames() {
+        OverlayMetrics.onRenderingSkipped(1_000_000_000L);
+        OverlayMetrics.onRenderingSkipped(10_000_000L);
+
+        assertEquals(60L, OverlayMetrics.snapshot().get("savedFrames"));
+    }
+
+    @Test
+    public void countingMessengerCountsBothDirections() {
+        RecordingMessenger delegate = new RecordingMessenger();
+        BinaryMessenger messenger = OverlayCountingMessenger.wrap(delegate);
+        assertEquals(messenger, OverlayCountingMessenger.wrap(messenger));
+
+        ByteBuffer sent = StandardMessageCodec.INSTANCE.encodeMessage("hello");
+        int sentBytes = sent.position();
+        messenger.send("channel", sent);
+
+        messenger.setMessageHandler("channel", (message, reply) -> reply.reply(null));
+        ByteBuffer received = StandardMessageCodec.INSTANCE.encodeMessage(42);
+        received.flip();
+        delegate.handler.onMessage(received, reply -> {
+        });
+
+        Map<String, Object> metrics = OverlayMetrics.snapshot();
+        assertEquals(1L, metrics.get("messagesSent"));
+        assertEquals((long) sentBytes, metrics.get("bytesSent"));
+        assertEquals(1L, metrics.get("messagesReceived"));
+        assertEquals((long) received.limit(), metrics.get("bytesReceived"));
+    }
+}
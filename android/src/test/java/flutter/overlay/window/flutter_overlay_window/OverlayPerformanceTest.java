@@ -0,0 +1,185 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+
+import java.nio.ByteBuffer;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * Hot path benchmarks checked against {@code overlay_perf_budgets.properties}, a regression
+ * past a budget fails the build.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(qualifiers = "w411dp-h891dp-xhdpi")
+public class OverlayPerformanceTest {
+
+    private static final int ITERATIONS = 100_000;
+
+    @Before
+    public void setUp() {
+        OverlayMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        WindowSetup.hostMessenger = null;
+    }
+
+    @Test
+    public void dragMove() {
+        int[] commits = new int[1];
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams();
+        OverlayDragController controller = new OverlayDragController(p -> commits[0]++);
+        MotionEvent[] moves = new MotionEvent[64];
+        for (int i = 0; i < moves.length; i++) {
+            // Back and forth so the window stays put and every move crosses a whole pixel.
+            float x = 100 + (i % 2 == 0 ? i : -i);
+            moves[i] = MotionEvent.obtain(0, i, MotionEvent.ACTION_MOVE, x, 100 + i, 0);
+        }
+        controller.onDown(MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 100, 100, 0),
+                params, Gravity.TOP | Gravity.LEFT);
+        Choreographer choreographer = Choreographer.getInstance();
+
+        OverlayBenchmark.Result result = OverlayBenchmark.measure("dragMove", ITERATIONS, i -> {
+            controller.onMove(moves[i & 63]);
+            // Run the frame the move asked for right away instead of waiting for vsync.
+            choreographer.removeFrameCallback(controller);
+            controller.doFrame(System.nanoTime());
+            return params.x;
+        });
+        assertTrue(commits[0] > 0);
+        OverlayBenchmark.assertWithinBudget(result);
+    }
+
+    @Test
+    public void dpPxConversion() {
+        DisplayGeometry geometry = new DisplayGeometry(RuntimeEnvironment.getApplication());
+        OverlayBenchmark.Result result = OverlayBenchmark.measure("dpPxConversion", ITERATIONS,
+                i -> geometry.dpToPx(i & 1023) + (long) geometry.pxToDp(i & 1023));
+        OverlayBenchmark.assertWithinBudget(result);
+    }
+
+    @Test
+    public void configNamesParseToTheirFlagsAndGravity() {
+        int notFocusable = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        assertEquals(notFocusable, WindowSetup.flagFromName("defaultFlag", 0));
+        assertEquals(notFocusable, WindowSetup.flagFromName("flagNotFocusable", 0));
+        assertEquals(WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE | notFocusable
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN,
+                WindowSetup.flagFromName("clickThrough", 0));
+        assertEquals(WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL, WindowSetup.flagFromName("focusPointer", 0));
+        assertEquals(-1, WindowSetup.flagFromName("unknown", -1));
+
+        assertEquals(Gravity.TOP | Gravity.LEFT, WindowSetup.gravityFromAlignment("topLeft", 0));
+        assertEquals(Gravity.TOP, WindowSetup.gravityFromAlignment("topCenter", 0));
+        assertEquals(Gravity.CENTER, WindowSetup.gravityFromAlignment("center", 0));
+        assertEquals(Gravity.CENTER | Gravity.RIGHT, WindowSetup.gravityFromAlignment("centerRight", 0));
+        assertEquals(Gravity.BOTTOM | Gravity.RIGHT, WindowSetup.gravityFromAlignment("bottomRight", 0));
+        assertEquals(-1, WindowSetup.gravityFromAlignment("unknown", -1));
+    }
+
+    /**
+     * Timing only, its budget is not checked, see {@link #configNamesParseToTheirFlagsAndGravity}
+     * for what the names parse to.
+     */
+    @Test
+    public void configParsing() {
+        String[] flags = {"defaultFlag", "clickThrough", "focusPointer", "flagNotFocusable", "unknown"};
+        String[] alignments = {"topLeft", "topCenter", "center", "centerRight", "bottomRight", "unknown"};
+        OverlayBenchmark.Result result = OverlayBenchmark.measure("configParsing", ITERATIONS,
+                i -> WindowSetup.flagFromName(flags[i % flags.length], 0)
+                        + WindowSetup.gravityFromAlignment(alignments[i % alignments.length], 0));
+        OverlayBenchmark.assertWithinBudget(result);
+    }
+
+    @Test
+    public void messageForwarding() {
+        ByteBuffer message = StandardMessageCodec.INSTANCE.encodeMessage("payload of a shared message");
+        int size = message.position();
+        EchoMessenger target = new EchoMessenger();
+        OverlayBinaryRelay relay = new OverlayBinaryRelay(OverlayConstants.BYTES_MESSENGER_TAG, () -> target);
+        long[] replies = new long[1];
+        BinaryMessenger.BinaryReply reply = response -> replies[0]++;
+
+        OverlayBenchmark.Result result = OverlayBenchmark.measure("messageForwarding", ITERATIONS, i -> {
+            // Incoming buffers start at position 0, like the ones the engine hands over.
+            message.limit(size).position(0);
+            relay.onMessage(message, reply);
+            return replies[0];
+        });
+        OverlayBenchmark.assertWithinBudget(result);
+    }
+
+    @Test
+    public void positionPublish() {
+        EchoMessenger overlay = new EchoMessenger();
+        OverlayPositionPublisher publisher = new OverlayPositionPublisher("default", overlay, out -> {
+            out[0] = 12;
+            out[1] = 34;
+            out[2] = 200;
+            out[3] = 100;
+        });
+        publisher.setSubscribed(true, true);
+        Choreographer choreographer = Choreographer.getInstance();
+
+        OverlayBenchmark.Result result = OverlayBenchmark.measure("positionPublish", ITERATIONS, i -> {
+            publisher.onLayoutChanged(OverlayPositionPublisher.SOURCE_DRAG);
+            choreographer.removeFrameCallback(publisher);
+            publisher.doFrame(System.nanoTime());
+            return overlay.messages;
+        });
+        publisher.release();
+        OverlayBenchmark.assertWithinBudget(result);
+    }
+
+    @Test
+    public void serviceStartStop() {
+        Intent intent = new Intent(RuntimeEnvironment.getApplication(), OverlayService.class);
+        OverlayBenchmark.Result result = OverlayBenchmark.measure("serviceStartStop", 50, i -> {
+            ServiceController<OverlayService> controller = Robolectric.buildService(OverlayService.class, intent);
+            controller.create().startCommand(0, 1).destroy();
+            return OverlayService.isRunning ? 1 : 0;
+        });
+        OverlayBenchmark.assertWithinBudget(result);
+    }
+
+    private static final class EchoMessenger implements BinaryMessenger {
+        long messages;
+
+        @Override
+        public void send(String channel, ByteBuffer message) {
+            messages++;
+        }
+
+        @Override
+        public void send(String channel, ByteBuffer message, BinaryReply callback) {
+            messages++;
+            if (callback != null) {
+                callback.reply(null);
+            }
+        }
+
+        @Override
+        public void setMessageHandler(String channel, BinaryMessageHandler handler) {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayPositionPublisherTest {
+
+    private final RecordingMessenger overlay = new RecordingMessenger();
+    private final RecordingMessenger host = new RecordingMessenger();
+    private int x;
+    private OverlayPositionPublisher publisher;
+
+    @Before
+    public void setUp() {
+        WindowSetup.hostMessenger = host;
+        publisher = new OverlayPositionPublisher("chat", overlay, out -> {
+            out[0] = x;
+            out[1] = 20;
+            out[2] = 100;
+            out[3] = 50;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        WindowSetup.hostMessenger = null;
+    }
+
+    @Test
+    public void nothingIsSentWithoutSubscribers() {
+        publisher.onLayoutChanged(OverlayPositionPublisher.SOURCE_DRAG);
+        nextFrame();
+        assertEquals(0, overlay.messages.size());
+        assertEquals(0, host.messages.size());
+    }
+
+    @Test
+    public void changesAreCoalescedToOneEventPerFrame() {
+        publisher.setSubscribed(true, true);
+        nextFrame();
+        assertEquals(1, overlay.messages.size());
+
+        for (x = 1; x <= 5; x++) {
+            publisher.onLayoutChanged(OverlayPositionPublisher.SOURCE_DRAG);
+        }
+        publisher.onLayoutChanged(OverlayPositionPublisher.SOURCE_SNAP);
+        nextFrame();
+        assertEquals(2, overlay.messages.size());
+        assertEquals(0, host.messages.size());
+        assertArrayEquals(new double[]{6, 20, 100, 50, OverlayPositionPublisher.SOURCE_SNAP},
+                (double[]) overlay.decoded(1), 0);
+        assertEquals(5, publisher.getCoalescedCount());
+    }
+
+    @Test
+    public void hostEventsUseThePerOverlayChannel() {
+        publisher.setSubscribed(false, true);
+        nextFrame();
+        assertEquals(1, host.messages.size());
+        assertEquals(OverlayConstants.POSITION_TAG + "/chat", host.channels.get(0));
+        assertEquals(OverlayConstants.POSITION_TAG, OverlayPositionPublisher.hostTag(OverlayConstants.DEFAULT_OVERLAY_ID));
+
+        publisher.setSubscribed(false, false);
+        publisher.onLayoutChanged(OverlayPositionPublisher.SOURCE_PROGRAMMATIC);
+        nextFrame();
+        assertEquals(1, host.messages.size());
+    }
+
+    private static void nextFrame() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(20));
+    }
+}
@@ -0,0 +1,119 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+import android.view.Gravity;
+import android.view.WindowManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayRenderPauserTest {
+
+    private final Rect screen = new Rect(0, 0, 1080, 2400);
+    private final Rect frame = new Rect();
+    private int pauses;
+    private int resumes;
+    private OverlayRenderPauser pauser;
+
+    @Before
+    public void setUp() {
+        OverlayMetrics.reset();
+        pauser = new OverlayRenderPauser(new OverlayRenderPauser.Lifecycle() {
+            @Override
+            public void pause() {
+                pauses++;
+            }
+
+            @Override
+            public void resume() {
+                resumes++;
+            }
+        });
+    }
+
+    @Test
+    public void pausesOnTheFirstReasonAndResumesAfterTheLast() {
+        pauser.set(OverlayRenderPauser.REASON_SCREEN_OFF, true);
+        pauser.set(OverlayRenderPauser.REASON_KEYGUARD, true);
+        assertEquals(1, pauses);
+
+        pauser.set(OverlayRenderPauser.REASON_SCREEN_OFF, false);
+        assertTrue(pauser.isPaused());
+        assertEquals(0, resumes);
+
+        pauser.set(OverlayRenderPauser.REASON_KEYGUARD, false);
+        assertFalse(pauser.isPaused());
+        assertEquals(1, resumes);
+    }
+
+    @Test
+    public void aHiddenOverlayStaysPausedWhenTheScreenTurnsOn() {
+        pauser.set(OverlayRenderPauser.REASON_HIDDEN, true);
+        pauser.set(OverlayRenderPauser.REASON_SCREEN_OFF, true);
+        pauser.set(OverlayRenderPauser.REASON_SCREEN_OFF, false);
+
+        assertTrue(pauser.isPaused());
+        assertEquals(0, resumes);
+        assertEquals(Arrays.asList("hidden"), OverlayRenderPauser.reasonNames(pauser.getReasons()));
+    }
+
+    @Test
+    public void hiddenOverlaysDoNotCountAsSavedFrames() {
+        pauser.set(OverlayRenderPauser.REASON_HIDDEN, true);
+        pauser.set(OverlayRenderPauser.REASON_HIDDEN, false);
+        pauser.release();
+
+        assertEquals(0L, OverlayMetrics.snapshot().get("savedFrames"));
+    }
+
+    @Test
+    public void windowsDraggedOutOfTheDisplayAreOffScreen() {
+        WindowManager.LayoutParams params = params(Gravity.TOP | Gravity.LEFT, 200, 200);
+        params.x = -150;
+        assertTrue(OverlayRenderPauser.isOnScreen(params, 0, 0, screen, frame));
+
+        params.x = -200;
+        assertFalse(OverlayRenderPauser.isOnScreen(params, 0, 0, screen, frame));
+
+        params.x = 0;
+        params.y = 2400;
+        pauser.onLayout(params, 0, 0, screen);
+        assertEquals(Arrays.asList("offScreen"), OverlayRenderPauser.reasonNames(pauser.getReasons()));
+    }
+
+    @Test
+    public void rightGravityOffsetsGrowTowardsTheLeft() {
+        WindowManager.LayoutParams params = params(Gravity.TOP | Gravity.RIGHT, 200, 200);
+        params.x = 1080;
+        assertFalse(OverlayRenderPauser.isOnScreen(params, 0, 0, screen, frame));
+
+        params.x = -200;
+        assertFalse(OverlayRenderPauser.isOnScreen(params, 0, 0, screen, frame));
+    }
+
+    @Test
+    public void wrapContentUsesTheLaidOutSize() {
+        WindowManager.LayoutParams params = params(Gravity.TOP | Gravity.LEFT,
+                WindowManager.LayoutParams.WRAP_CONTENT, WindowManager.LayoutParams.WRAP_CONTENT);
+        params.x = -300;
+        // Not measured yet, assumed visible.
+        assertTrue(OverlayRenderPauser.isOnScreen(params, 0, 0, screen, frame));
+        assertFalse(OverlayRenderPauser.isOnScreen(params, 250, 250, screen, frame));
+        assertTrue(OverlayRenderPauser.isOnScreen(params, 350, 250, screen, frame));
+    }
+
+    private static WindowManager.LayoutParams params(int gravity, int width, int height) {
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(width, height);
+        params.gravity = gravity;
+        return params;
+    }
+}
@@ -0,0 +1,178 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.view.View;
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowWindowManagerImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.FlutterJNI;
+import io.flutter.embedding.engine.loader.FlutterLoader;
+import io.flutter.plugin.common.MethodChannel;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayServiceTest {
+
+    private ServiceController<OverlayService> controller;
+
+    @After
+    public void tearDown() {
+        if (controller != null) {
+            controller.destroy();
+        }
+        FlutterEngineCache.getInstance().clear();
+    }
+
+    @Test
+    public void showingAnOverlayKeepsItsWindowUntilClosed() {
+        ShadowWindowManagerImpl windowManager = show("chat");
+        assertEquals(1, windowManager.getViews().size());
+        assertEquals(OverlayStateMachine.State.SHOWN, OverlayService.states.get("chat"));
+        assertTrue(OverlayService.isActive("chat"));
+        // Published when the window is added, before any drag or move.
+        assertNotNull(OverlayService.getCurrentPosition("chat"));
+        assertEquals(0.0, OverlayService.getCurrentPosition("chat").get("x"), 0.0);
+
+        OverlayService.removeOverlay("chat");
+        assertTrue(windowManager.getViews().isEmpty());
+        assertEquals(OverlayStateMachine.State.STOPPED, OverlayService.states.get("chat"));
+    }
+
+    @Test
+    public void hiddenOverlaysLetTouchesThrough() {
+        View window = show("chat").getViews().get(0);
+
+        assertTrue(OverlayService.hideOverlay("chat"));
+        assertTrue((flagsOf(window) & WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE) != 0);
+
+        OverlayService.revealOverlay("chat", new NoResult());
+        assertEquals(0, flagsOf(window) & WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE);
+        assertTrue((flagsOf(window) & WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE) != 0);
+    }
+
+    @Test
+    public void startWithoutAnEngineStopsTheService() {
+        Intent intent = new Intent(RuntimeEnvironment.getApplication(), OverlayService.class)
+                .putExtra(OverlayService.INTENT_EXTRA_OVERLAY_ID, "chat");
+        controller = Robolectric.buildService(OverlayService.class, intent).create();
+
+        int mode = controller.get().onStartCommand(intent, 0, 1);
+        assertEquals(Service.START_NOT_STICKY, mode);
+        assertTrue(shadowOf(controller.get()).isStoppedBySelf());
+        assertFalse(OverlayService.isRunning);
+        assertFalse(OverlayService.isActive("chat"));
+        assertTrue(OverlayService.activeOverlayIds().isEmpty());
+    }
+
+    @Test
+    public void startingOverlayWithoutAnEngineEndsStopped() {
+        OverlayService.states.moveTo("chat", OverlayStateMachine.State.STARTING);
+        assertTrue(OverlayService.isActive("chat"));
+        Intent intent = new Intent(RuntimeEnvironment.getApplication(), OverlayService.class)
+                .putExtra(OverlayService.INTENT_EXTRA_OVERLAY_ID, "chat");
+        controller = Robolectric.buildService(OverlayService.class, intent).create();
+
+        controller.get().onStartCommand(intent, 0, 1);
+        assertEquals(OverlayStateMachine.State.STOPPED, OverlayService.states.get("chat"));
+        assertFalse(OverlayService.isActive("chat"));
+    }
+
+    @Test
+    public void shutdownIntentStopsTheService() {
+        controller = Robolectric.buildService(OverlayService.class).create();
+
+        controller.get().onStartCommand(new Intent(Intent.ACTION_SHUTDOWN), 0, 1);
+        assertTrue(shadowOf(controller.get()).isStoppedBySelf());
+        assertFalse(OverlayService.isRunning);
+    }
+
+    @Test
+    public void destroyReleasesTheServiceAndItsWakeLock() {
+        controller = Robolectric.buildService(OverlayService.class).create();
+        controller.destroy();
+        controller = null;
+
+        assertFalse(OverlayService.isRunning);
+        assertNull(OverlayService.getCurrentPosition(OverlayConstants.DEFAULT_OVERLAY_ID));
+        assertFalse((Boolean) OverlayMetrics.snapshot().get("wakeLockHeld"));
+    }
+
+    @Test
+    public void queriesCanBeAnsweredOffTheMainThread() throws InterruptedException {
+        controller = Robolectric.buildService(OverlayService.class).create();
+        List<Object> answers = new ArrayList<>();
+        Thread queue = new Thread(() -> {
+            answers.add(OverlayService.isRunning);
+            answers.add(OverlayService.isActive(OverlayConstants.DEFAULT_OVERLAY_ID));
+            answers.add(OverlayService.activeOverlayIds().size());
+            answers.add(OverlayService.getCurrentPosition(OverlayConstants.DEFAULT_OVERLAY_ID));
+        });
+        queue.start();
+        queue.join();
+
+        assertEquals(false, answers.get(0));
+        assertEquals(false, answers.get(1));
+        assertEquals(0, answers.get(2));
+        assertNull(answers.get(3));
+        assertFalse(FlutterOverlayWindowPlugin.QUERY_METHODS.contains("moveOverlay"));
+        assertFalse(FlutterOverlayWindowPlugin.QUERY_METHODS.contains("showOverlay"));
+    }
+
+    /**
+     * Shows {@code overlayId} on an engine without the native library, its channels go nowhere.
+     */
+    private ShadowWindowManagerImpl show(String overlayId) {
+        FlutterJNI jni = mock(FlutterJNI.class);
+        when(jni.isAttached()).thenReturn(true);
+        FlutterEngineCache.getInstance().put(OverlayConstants.engineTag(overlayId),
+                new FlutterEngine(RuntimeEnvironment.getApplication(), mock(FlutterLoader.class), jni));
+        Intent intent = new Intent(RuntimeEnvironment.getApplication(), OverlayService.class)
+                .putExtra(OverlayService.INTENT_EXTRA_OVERLAY_ID, overlayId);
+        controller = Robolectric.buildService(OverlayService.class, intent).create();
+        OverlayService.states.moveTo(overlayId, OverlayStateMachine.State.STARTING);
+        controller.get().onStartCommand(intent, 0, 1);
+        return Shadow.extract(controller.get().getSystemService(Context.WINDOW_SERVICE));
+    }
+
+    private static int flagsOf(View window) {
+        return ((WindowManager.LayoutParams) window.getLayoutParams()).flags;
+    }
+
+    private static final class NoResult implements MethodChannel.Result {
+        @Override
+        public void success(Object result) {
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+        }
+
+        @Override
+        public void notImplemented() {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.view.WindowManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlaySnapAnimatorTest {
+
+    private int maxX;
+    private WindowManager.LayoutParams params;
+    private OverlaySnapAnimator animator;
+
+    @Before
+    public void setUp() {
+        maxX = 0;
+        params = new WindowManager.LayoutParams();
+        animator = new OverlaySnapAnimator(p -> maxX = Math.max(maxX, Math.abs(p.x)));
+    }
+
+    @Test
+    public void flingDistanceFollowsTheConfiguredFriction() {
+        assertEquals(250f, animator.flingDistance(1000f), 0.01f);
+
+        animator.setPhysics(0, 0, 10f);
+        assertEquals(100f, animator.flingDistance(1000f), 0.01f);
+    }
+
+    @Test
+    public void springSettlesOnTheTarget() {
+        animator.start(params, 300, 40, 0, 0);
+        advance(2000);
+
+        assertFalse(animator.isRunning());
+        assertEquals(300, params.x);
+        assertEquals(40, params.y);
+    }
+
+    @Test
+    public void extremePhysicsAreClampedToAStableSpring() {
+        animator.setPhysics(1e9f, 100f, 0);
+        animator.start(params, 300, 0, 0, 0);
+        advance(3000);
+
+        assertFalse(animator.isRunning());
+        assertEquals(300, params.x);
+        // Clamped to an overdamped spring, which does not overshoot.
+        assertTrue("x=" + maxX, maxX <= 300);
+    }
+
+    @Test
+    public void clampKeepsValuesInRange() {
+        assertEquals(OverlaySnapAnimator.MAX_STIFFNESS, OverlaySnapAnimator.clampStiffness(1e9f), 0f);
+        assertEquals(OverlaySnapAnimator.MIN_STIFFNESS, OverlaySnapAnimator.clampStiffness(0.001f), 0f);
+        assertEquals(700f, OverlaySnapAnimator.clampStiffness(700f), 0f);
+        assertEquals(OverlaySnapAnimator.MAX_DAMPING_RATIO, OverlaySnapAnimator.clampDampingRatio(50f), 0f);
+        assertEquals(OverlaySnapAnimator.MIN_DAMPING_RATIO, OverlaySnapAnimator.clampDampingRatio(0.001f), 0f);
+    }
+
+    private static void advance(long millis) {
+        for (long elapsed = 0; elapsed < millis; elapsed += 16) {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlaySnapshotCacheTest {
+
+    private static final int SNAPSHOT_BYTES = 100 * 100 * 4;
+
+    private File directory;
+    private OverlaySnapshotCache cache;
+
+    @Before
+    public void setUp() {
+        directory = new File(RuntimeEnvironment.getApplication().getCacheDir(), OverlaySnapshotCache.DIRECTORY_NAME);
+        // Disk work runs inline so the files can be checked right away.
+        cache = new OverlaySnapshotCache(Runnable::run);
+        cache.setDirectory(directory);
+        cache.configure(SNAPSHOT_BYTES * 2, false);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedSnapshot() {
+        Bitmap first = snapshot();
+        cache.put("first", first);
+        cache.put("second", snapshot());
+        assertSame(first, cache.get("first"));
+
+        cache.put("third", snapshot());
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertEquals(SNAPSHOT_BYTES * 2, cache.sizeBytes());
+    }
+
+    @Test
+    public void evictedSnapshotsSpillToDisk() {
+        cache.configure(SNAPSHOT_BYTES * 2, true);
+        cache.put("first", snapshot());
+        cache.put("second", snapshot());
+        cache.put("third", snapshot());
+
+        assertTrue(new File(directory, "first.png").isFile());
+        assertFalse(new File(directory, "third.png").exists());
+        cache.prefetch("first");
+        assertNotNull(cache.get("first"));
+    }
+
+    @Test
+    public void getNeverReadsTheDisk() {
+        List<Runnable> diskTasks = new ArrayList<>();
+        cache = new OverlaySnapshotCache(diskTasks::add);
+        cache.setDirectory(directory);
+        cache.configure(SNAPSHOT_BYTES * 2, true);
+        cache.put("default", snapshot());
+        cache.trimMemory();
+        runAll(diskTasks);
+        assertTrue(new File(directory, "default.png").isFile());
+
+        assertNull(cache.get("default"));
+        cache.prefetch("default");
+        assertNull(cache.get("default"));
+        runAll(diskTasks);
+        assertNotNull(cache.get("default"));
+    }
+
+    @Test
+    public void trimMemoryKeepsSnapshotsOnlyOnDisk() {
+        cache.configure(SNAPSHOT_BYTES * 2, true);
+        cache.put("default", snapshot());
+
+        cache.trimMemory();
+        assertEquals(0, cache.sizeBytes());
+        assertTrue(new File(directory, "default.png").isFile());
+    }
+
+    @Test
+    public void aNewSnapshotReplacesTheSpilledOne() {
+        cache.configure(SNAPSHOT_BYTES * 2, true);
+        cache.put("default", snapshot());
+        cache.trimMemory();
+
+        Bitmap latest = snapshot();
+        cache.put("default", latest);
+        assertFalse(new File(directory, "default.png").exists());
+        assertSame(latest, cache.get("default"));
+    }
+
+    @Test
+    public void clearDropsMemoryAndDisk() {
+        cache.configure(SNAPSHOT_BYTES * 2, true);
+        cache.put("first", snapshot());
+        cache.trimMemory();
+        cache.put("second", snapshot());
+
+        cache.clear();
+        cache.prefetch("first");
+        assertNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertFalse(new File(directory, "first.png").exists());
+    }
+
+    @Test
+    public void shrinkingTheBudgetEvictsRightAway() {
+        cache.put("first", snapshot());
+        cache.put("second", snapshot());
+
+        cache.configure(SNAPSHOT_BYTES, false);
+        assertEquals(SNAPSHOT_BYTES, cache.sizeBytes());
+        assertNotNull(cache.get("second"));
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static Bitmap snapshot() {
+        return Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,127 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import flutter.overlay.window.flutter_overlay_window.OverlayStateMachine.State;
+
+public class OverlayStateMachineTest {
+
+    private final List<String> changes = Collections.synchronizedList(new ArrayList<>());
+    private OverlayStateMachine states;
+
+    @Before
+    public void setUp() {
+        states = new OverlayStateMachine((overlayId, state) -> changes.add(overlayId + ":" + state.wireName()));
+    }
+
+    @Test
+    public void goesThroughTheWholeLifecycle() {
+        assertEquals(State.STOPPED, states.get("chat"));
+        assertTrue(states.moveTo("chat", State.STARTING));
+        assertTrue(states.moveTo("chat", State.SHOWN));
+        assertTrue(states.moveTo("chat", State.HIDDEN));
+        assertTrue(states.moveTo("chat", State.SHOWN));
+        assertTrue(states.moveTo("chat", State.STOPPING));
+        assertTrue(states.moveTo("chat", State.STOPPED));
+
+        assertEquals(Arrays.asList("chat:starting", "chat:shown", "chat:hidden", "chat:shown",
+                "chat:stopping", "chat:stopped"), changes);
+    }
+
+    @Test
+    public void refusesTransitionsNotAllowedFromTheCurrentState() {
+        assertFalse(states.moveTo("chat", State.SHOWN));
+        assertFalse(states.moveTo("chat", State.HIDDEN));
+        assertFalse(states.moveTo("chat", State.STOPPING));
+
+        states.moveTo("chat", State.STARTING);
+        assertFalse(states.moveTo("chat", State.STARTING));
+        assertFalse(states.moveTo("chat", State.HIDDEN));
+        assertEquals(Collections.singletonList("chat:starting"), changes);
+    }
+
+    @Test
+    public void activeCoversStartingShownAndHidden() {
+        states.moveTo("chat", State.STARTING);
+        states.moveTo("bubble", State.STARTING);
+        states.moveTo("bubble", State.SHOWN);
+        states.moveTo("bubble", State.HIDDEN);
+        states.moveTo("gone", State.STARTING);
+        states.stop("gone");
+
+        assertTrue(states.get("chat").isActive());
+        assertTrue(states.get("bubble").isActive());
+        assertFalse(states.get("gone").isActive());
+        assertTrue(states.isAnyActive());
+        List<String> active = states.activeIds();
+        Collections.sort(active);
+        assertEquals(Arrays.asList("bubble", "chat"), active);
+    }
+
+    @Test
+    public void stopAllFinishesOverlaysAlreadyStopping() {
+        states.moveTo("chat", State.STARTING);
+        states.moveTo("bubble", State.STARTING);
+        states.moveTo("bubble", State.STOPPING);
+
+        states.stopAll();
+        assertEquals(State.STOPPED, states.get("chat"));
+        assertEquals(State.STOPPED, states.get("bubble"));
+        assertFalse(states.isAnyActive());
+    }
+
+    @Test
+    public void wireNamesIgnoreTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals("hidden", State.HIDDEN.wireName());
+            assertEquals("starting", State.STARTING.wireName());
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    public void onlyOneConcurrentStopWins() throws InterruptedException {
+        states.moveTo("chat", State.STARTING);
+        states.moveTo("chat", State.SHOWN);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger wins = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (states.moveTo("chat", State.STOPPING)) {
+                    wins.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, wins.get());
+        assertEquals(State.STOPPING, states.get("chat"));
+    }
+}
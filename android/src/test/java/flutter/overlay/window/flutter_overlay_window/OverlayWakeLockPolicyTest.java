@@ -0,0 +1,112 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class OverlayWakeLockPolicyTest {
+
+    private static final long TIMEOUT_MS = 60_000;
+
+    private Application context;
+    private OverlayWakeLockPolicy policy;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        policy = new OverlayWakeLockPolicy();
+        OverlayMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        policy.stop();
+    }
+
+    @Test
+    public void alwaysRenewsBeforeTheTimeout() {
+        policy.configure(OverlayWakeLockPolicy.Mode.ALWAYS, TIMEOUT_MS);
+        policy.start(context);
+        assertTrue(policy.isHeld());
+
+        advance(TIMEOUT_MS * 3);
+        assertTrue(policy.isHeld());
+        assertTrue((long) policy.getState().get("renewals") >= 3);
+        assertEquals(1L, policy.getState().get("acquisitions"));
+    }
+
+    @Test
+    public void whileScreenOnFollowsTheScreen() {
+        policy.configure(OverlayWakeLockPolicy.Mode.WHILE_SCREEN_ON, TIMEOUT_MS);
+        policy.start(context);
+        assertTrue(policy.isHeld());
+
+        policy.onScreenChanged(false);
+        assertFalse(policy.isHeld());
+
+        policy.onScreenChanged(true);
+        assertTrue(policy.isHeld());
+        assertEquals(2L, policy.getState().get("acquisitions"));
+    }
+
+    @Test
+    public void timedExpiresUnlessTheOverlayIsUsed() {
+        policy.configure(OverlayWakeLockPolicy.Mode.TIMED, TIMEOUT_MS);
+        policy.start(context);
+
+        advance(TIMEOUT_MS / 2);
+        policy.onUserActivity();
+        advance(TIMEOUT_MS * 3 / 4);
+        assertTrue(policy.isHeld());
+
+        advance(TIMEOUT_MS / 2);
+        assertFalse(policy.isHeld());
+        assertEquals(false, policy.getState().get("held"));
+    }
+
+    @Test
+    public void timedIsReleasedBeforeItExpires() {
+        policy.configure(OverlayWakeLockPolicy.Mode.TIMED, TIMEOUT_MS);
+        policy.start(context);
+
+        // Released by the policy while still held, not left to expire with the CPU asleep.
+        advance(TIMEOUT_MS - 1);
+        assertFalse(policy.isHeld());
+        assertEquals(0L, policy.getState().get("renewals"));
+    }
+
+    @Test
+    public void noneNeverHoldsTheLock() {
+        policy.configure(OverlayWakeLockPolicy.Mode.NONE, TIMEOUT_MS);
+        policy.start(context);
+        policy.onUserActivity();
+        assertFalse(policy.isHeld());
+    }
+
+    @Test
+    public void manifestDefaultDoesNotOverrideDart() {
+        policy.configure(OverlayWakeLockPolicy.Mode.TIMED, TIMEOUT_MS);
+        policy.setDefaultMode(OverlayWakeLockPolicy.Mode.ALWAYS);
+        assertEquals(OverlayWakeLockPolicy.Mode.TIMED, policy.getMode());
+        assertEquals(OverlayWakeLockPolicy.Mode.WHILE_SCREEN_ON,
+                OverlayWakeLockPolicy.Mode.parse("whileScreenOn", OverlayWakeLockPolicy.Mode.NONE));
+    }
+
+    private static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
@@ -0,0 +1,61 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class OverlayWindowUpdateTest {
+
+    @Test
+    public void missingFieldsAreLeftUnchanged() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("x", 10);
+        arguments.put("alpha", 0.5);
+        arguments.put("overlayId", "chat");
+
+        OverlayWindowUpdate update = OverlayWindowUpdate.parse(arguments);
+        assertEquals(Integer.valueOf(10), update.x);
+        assertEquals(0.5f, update.alpha, 0f);
+        assertNull(update.y);
+        assertNull(update.width);
+        assertNull(update.flag);
+        assertNull(update.enableDrag);
+    }
+
+    @Test
+    public void windowSizeConstantsAreAccepted() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("width", -1);
+        arguments.put("height", -1999);
+
+        OverlayWindowUpdate update = OverlayWindowUpdate.parse(arguments);
+        assertEquals(Integer.valueOf(-1), update.width);
+        assertEquals(Integer.valueOf(-1999), update.height);
+    }
+
+    @Test
+    public void invalidUpdatesAreRejected() {
+        assertRejected("alpha", 1.5);
+        assertRejected("alpha", "opaque");
+        assertRejected("flag", "unknownFlag");
+        assertRejected("blurRadius", -4);
+        assertRejected("width", -20);
+        assertRejected("x", "left");
+        assertRejected("enableDrag", 1);
+    }
+
+    private static void assertRejected(String key, Object value) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put(key, value);
+        try {
+            OverlayWindowUpdate.parse(arguments);
+            fail(key + "=" + value + " was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package flutter.overlay.window.flutter_overlay_window;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * Messenger that keeps everything sent through it, and the last handler set on it.
+ */
+final class RecordingMessenger implements BinaryMessenger {
+    final List<ByteBuffer> messages = new ArrayList<>();
+    final List<String> channels = new ArrayList<>();
+    BinaryMessageHandler handler;
+
+    /**
+     * Decodes message {@code index} with the standard codec.
+     */
+    Object decoded(int index) {
+        ByteBuffer message = messages.get(index);
+        message.flip();
+        return StandardMessageCodec.INSTANCE.decodeMessage(message);
+    }
+
+    @Override
+    public void send(String channel, ByteBuffer message) {
+        channels.add(channel);
+        messages.add(message);
+    }
+
+    @Override
+    public void send(String channel, ByteBuffer message, BinaryReply callback) {
+        send(channel, message);
+    }
+
+    @Override
+    public void setMessageHandler(String channel, BinaryMessageHandler handler) {
+        this.handler = handler;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.flutter_overlay_window_example;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.flutter.FlutterInjector;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineGroup;
+import io.flutter.embedding.engine.dart.DartExecutor;
+
+/**
+ * Reports the PSS cost of each overlay engine when every engine gets its own
+ * {@link FlutterEngineGroup} (the plugin's old behaviour) versus when all engines are
+ * spawned from one shared group (what the plugin does now), and what an engine recreated in the
+ * shared group after every engine was evicted costs.
+ * <p>
+ * Run with {@code ./gradlew :app:connectedDebugAndroidTest} and read the numbers from
+ * logcat under the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OverlayEngineMemoryBenchmark {
+
+    private static final String TAG = "OverlayEngineMemory";
+    private static final int ENGINES = 3;
+    private static final long SETTLE_MILLIS = 1500;
+
+    @Test
+    public void sharedEngineGroupCostsLessPerEngine() {
+        Context context = ApplicationProvider.getApplicationContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            FlutterInjector.instance().flutterLoader().startInitialization(context);
+            FlutterInjector.instance().flutterLoader().ensureInitializationComplete(context, null);
+        });
+
+        // The shared run goes first so that warm process-wide caches cannot favour it.
+        long shared = averagePssPerEngineKb(context, true);
+        long separate = averagePssPerEngineKb(context, false);
+        Log.i(TAG, "Average PSS per engine: shared group " + shared + " kB, separate groups " + separate + " kB");
+
+        assertTrue("Spawning from a shared group should cost less memory per engine", shared < separate);
+    }
+
+    @Test
+    public void engineRecreatedAfterEvictionIsNotSpawned() {
+        Context context = ApplicationProvider.getApplicationContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            FlutterInjector.instance().flutterLoader().startInitialization(context);
+            FlutterInjector.instance().flutterLoader().ensureInitializationComplete(context, null);
+        });
+        FlutterEngineGroup group = runOnMainSync(() -> new FlutterEngineGroup(context));
+
+        // Evicted: the only engine of the group is destroyed before the next one is created.
+        long before = settledPss();
+        FlutterEngine first = runOnMainSync(() -> createEngine(group, context));
+        long afterFirst = settledPss();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(first::destroy);
+        long evicted = settledPss();
+        FlutterEngine recreated = runOnMainSync(() -> createEngine(group, context));
+        long recreatedCost = settledPss() - evicted;
+
+        // Spawned: a second engine next to one still running in the group.
+        long beforeSpawn = settledPss();
+        FlutterEngine spawned = runOnMainSync(() -> createEngine(group, context));
+        long spawnedCost = settledPss() - beforeSpawn;
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            spawned.destroy();
+            recreated.destroy();
+        });
+        settledPss();
+
+        Log.i(TAG, "First engine +" + (afterFirst - before) + " kB, recreated after eviction +"
+                + recreatedCost + " kB, spawned next to a running engine +" + spawnedCost + " kB PSS");
+        assertTrue("An engine recreated in an empty group should cost more than a spawned one",
+                spawnedCost < recreatedCost);
+    }
+
+    private static FlutterEngine createEngine(FlutterEngineGroup group, Context context) {
+        return group.createAndRunEngine(context, new DartExecutor.DartEntrypoint(
+                FlutterInjector.instance().flutterLoader().findAppBundlePath(), "overlayMain"));
+    }
+
+    private interface MainThreadCall<T> {
+        T call();
+    }
+
+    private static <T> T runOnMainSync(MainThreadCall<T> action) {
+        List<T> result = new ArrayList<>(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> result.add(action.call()));
+        return result.get(0);
+    }
+
+    private long averagePssPerEngineKb(Context context, boolean shareGroup) {
+        List<FlutterEngine> engines = new ArrayList<>();
+        FlutterEngineGroup[] sharedGroup = new FlutterEngineGroup[1];
+        long before = settledPss();
+        long previous = before;
+        for (int i = 0; i < ENGINES; i++) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+                FlutterEngineGroup group;
+                if (shareGroup) {
+                    if (sharedGroup[0] == null) {
+                        sharedGroup[0] = new FlutterEngineGroup(context);
+                    }
+                    group = sharedGroup[0];
+                } else {
+                    group = new FlutterEngineGroup(context);
+                }
+                engines.add(group.createAndRunEngine(context, new DartExecutor.DartEntrypoint(
+                        FlutterInjector.instance().flutterLoader().findAppBundlePath(), "overlayMain")));
+            });
+            long current = settledPss();
+            Log.i(TAG, (shareGroup ? "shared" : "separate") + " engine #" + (i + 1)
+                    + ": +" + (current - previous) + " kB PSS");
+            previous = current;
+        }
+        long total = previous - before;
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (FlutterEngine engine : engines) {
+                engine.destroy();
+            }
+        });
+        settledPss();
+        return total / ENGINES;
+    }
+
+    private static long settledPss() {
+        SystemClock.sleep(SETTLE_MILLIS);
+        Runtime.getRuntime().gc();
+        return Debug.getPss();
+    }
+}
@@ -1,3 +1,4 @@
+import 'dart:async';
 import 'dart:developer';
 import 'dart:isolate';
 import 'dart:ui';
@@ -18,6 +19,8 @@ class _HomePageState extends State<HomePage> {
   final _receivePort = ReceivePort();
   SendPort? homePort;
   String? latestMessageFromOverlay;
+  StreamSubscription? _frameTimingSubscription;
+  OverlayRenderMode _frameTimingMode = OverlayRenderMode.texture;
 
   @override
   void initState() {
@@ -36,6 +39,30 @@ class _HomePageState extends State<HomePage> {
     });
   }
 
+  /// Opens the frame timing overlay with [mode], its report is shown once
+  /// enough frames were collected.
+  Future<void> _measureFrameTiming(OverlayRenderMode mode) async {
+    const overlayId = 'frameTiming';
+    await FlutterOverlayWindow.closeOverlay(overlayId: overlayId);
+    _frameTimingMode = mode;
+    _frameTimingSubscription ??=
+        FlutterOverlayWindow.overlayListenerFor(overlayId).listen((report) {
+      log("frame timing (${_frameTimingMode.name}): $report");
+      setState(() {
+        latestMessageFromOverlay =
+            'Frame timing (${_frameTimingMode.name}): $report';
+      });
+    });
+    await FlutterOverlayWindow.showOverlay(
+      overlayId: overlayId,
+      entryPoint: 'frameTimingOverlayMain',
+      renderMode: mode,
+      height: 300,
+      width: WindowSize.matchParent,
+      alignment: OverlayAlignment.bottomCenter,
+    );
+  }
+
   @override
   Widget build(BuildContext context) {
     return Scaffold(
@@ -137,6 +164,12 @@ class _HomePageState extends State<HomePage> {
               },
               child: const Text("Move overlay position to (0, 0)"),
             ),
+            const SizedBox(height: 20.0),
+            for (final mode in OverlayRenderMode.values)
+              TextButton(
+                onPressed: () => _measureFrameTiming(mode),
+                child: Text("Frame timing (${mode.name})"),
+              ),
             const SizedBox(height: 20),
             Text(latestMessageFromOverlay ?? ''),
           ],
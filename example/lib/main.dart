@@ -1,5 +1,6 @@
 import 'package:flutter/material.dart';
 import 'package:flutter_overlay_window_example/home_page.dart';
+import 'package:flutter_overlay_window_example/overlays/frame_timing_overlay.dart';
 import 'package:flutter_overlay_window_example/overlays/true_caller_overlay.dart';
 
 void main() {
@@ -18,6 +19,17 @@ void overlayMain() {
   );
 }
 
+@pragma("vm:entry-point")
+void frameTimingOverlayMain() {
+  WidgetsFlutterBinding.ensureInitialized();
+  runApp(
+    const MaterialApp(
+      debugShowCheckedModeBanner: false,
+      home: FrameTimingOverlay(),
+    ),
+  );
+}
+
 class MyApp extends StatefulWidget {
   const MyApp({Key? key}) : super(key: key);
 
@@ -0,0 +1,89 @@
+import 'dart:ui' show FrameTiming;
+
+import 'package:flutter/material.dart';
+import 'package:flutter/scheduler.dart';
+import 'package:flutter_overlay_window/flutter_overlay_window.dart';
+
+/// Animates continuously and reports its frame timings to the main app, so the
+/// render modes of [FlutterOverlayWindow.showOverlay] can be compared.
+class FrameTimingOverlay extends StatefulWidget {
+  const FrameTimingOverlay({Key? key}) : super(key: key);
+
+  @override
+  State<FrameTimingOverlay> createState() => _FrameTimingOverlayState();
+}
+
+class _FrameTimingOverlayState extends State<FrameTimingOverlay>
+    with SingleTickerProviderStateMixin {
+  static const int _sampleSize = 300;
+
+  late final AnimationController _controller;
+  final List<FrameTiming> _timings = [];
+  String _summary = 'Measuring...';
+
+  @override
+  void initState() {
+    super.initState();
+    _controller = AnimationController(
+      vsync: this,
+      duration: const Duration(seconds: 2),
+    )..repeat();
+    SchedulerBinding.instance.addTimingsCallback(_onTimings);
+  }
+
+  void _onTimings(List<FrameTiming> timings) {
+    if (_timings.length >= _sampleSize) return;
+    _timings.addAll(timings);
+    if (_timings.length < _sampleSize) return;
+
+    final build = _timings.map((t) => t.buildDuration.inMicroseconds).toList()
+      ..sort();
+    final raster =
+        _timings.map((t) => t.rasterDuration.inMicroseconds).toList()..sort();
+    final report = {
+      'frames': _timings.length,
+      'buildAvgMs': _average(build),
+      'buildP90Ms': _percentile(build, 0.9),
+      'rasterAvgMs': _average(raster),
+      'rasterP90Ms': _percentile(raster, 0.9),
+    };
+    FlutterOverlayWindow.shareData(report);
+    setState(() {
+      _summary = 'raster avg ${report['rasterAvgMs']}ms, '
+          'p90 ${report['rasterP90Ms']}ms';
+    });
+  }
+
+  static double _average(List<int> micros) =>
+      micros.reduce((a, b) => a + b) / micros.length / 1000.0;
+
+  static double _percentile(List<int> sortedMicros, double p) =>
+      sortedMicros[((sortedMicros.length - 1) * p).round()] / 1000.0;
+
+  @override
+  void dispose() {
+    SchedulerBinding.instance.removeTimingsCallback(_onTimings);
+    _controller.dispose();
+    super.dispose();
+  }
+
+  @override
+  Widget build(BuildContext context) {
+    return Material(
+      color: Colors.black87,
+      child: Center(
+        child: Column(
+          mainAxisSize: MainAxisSize.min,
+          children: [
+            RotationTransition(
+              turns: _controller,
+              child: const FlutterLogo(size: 96.0),
+            ),
+            const SizedBox(height: 12.0),
+            Text(_summary, style: const TextStyle(color: Colors.white)),
+          ],
+        ),
+      ),
+    );
+  }
+}
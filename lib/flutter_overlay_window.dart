@@ -3,3 +3,18 @@ library flutter_overlay_window;
 export 'package:flutter_overlay_window/src/overlay_window.dart';
 export 'package:flutter_overlay_window/src/overlay_config.dart';
 export 'package:flutter_overlay_window/src/models/overlay_position.dart';
+export 'package:flutter_overlay_window/src/models/snap_physics.dart';
+export 'package:flutter_overlay_window/src/models/message_batching.dart';
+export 'package:flutter_overlay_window/src/models/overlay_start_result.dart';
+export 'package:flutter_overlay_window/src/models/overlay_visibility_timings.dart';
+export 'package:flutter_overlay_window/src/models/accessibility_events.dart';
+export 'package:flutter_overlay_window/src/models/foreground_app.dart';
+export 'package:flutter_overlay_window/src/models/display_geometry.dart';
+export 'package:flutter_overlay_window/src/models/window_update.dart';
+export 'package:flutter_overlay_window/src/models/overlay_animation.dart';
+export 'package:flutter_overlay_window/src/models/overlay_position_event.dart';
+export 'package:flutter_overlay_window/src/models/overlay_metrics.dart';
+export 'package:flutter_overlay_window/src/models/wake_lock_state.dart';
+export 'package:flutter_overlay_window/src/models/frame_rate_throttle.dart';
+export 'package:flutter_overlay_window/src/models/overlay_state.dart';
+export 'package:flutter_overlay_window/src/models/overlay_message_dropped.dart';
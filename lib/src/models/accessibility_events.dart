@@ -0,0 +1,106 @@
+import 'package:flutter/foundation.dart';
+
+/// Android `AccessibilityEvent` types that can be combined in
+/// [AccessibilityEventConfig.eventTypes].
+class AccessibilityEventType {
+  AccessibilityEventType._();
+
+  static const int viewClicked = 0x00000001;
+  static const int viewLongClicked = 0x00000002;
+  static const int viewSelected = 0x00000004;
+  static const int viewFocused = 0x00000008;
+  static const int viewTextChanged = 0x00000010;
+  static const int windowStateChanged = 0x00000020;
+  static const int notificationStateChanged = 0x00000040;
+  static const int windowContentChanged = 0x00000800;
+  static const int viewScrolled = 0x00001000;
+  static const int windowsChanged = 0x00400000;
+
+  /// Every event type.
+  static const int all = 0xFFFFFFFF;
+}
+
+/// Configuration of the accessibility events delivered to
+/// [FlutterOverlayWindow.accessibilityEvents].
+///
+/// The plugin does no work for accessibility events until it is enabled.
+/// Events of the same type and package received within [debounce] are
+/// coalesced to the latest one.
+@immutable
+class AccessibilityEventConfig {
+  final bool enabled;
+
+  /// [AccessibilityEventType] flags to deliver, zero delivers every type.
+  final int eventTypes;
+
+  /// Packages to deliver events from, empty delivers every package.
+  final List<String> packageNames;
+
+  /// Delay during which events are collected before being delivered as one batch.
+  final Duration debounce;
+
+  /// Fetch the source node of every delivered event, which costs an IPC per event.
+  final bool includeNodeInfo;
+
+  /// Also narrow the accessibility service info, so the system does not send
+  /// filtered events to the app at all.
+  final bool applyToServiceInfo;
+
+  const AccessibilityEventConfig({
+    this.enabled = true,
+    this.eventTypes = AccessibilityEventType.windowStateChanged,
+    this.packageNames = const [],
+    this.debounce = const Duration(milliseconds: 100),
+    this.includeNodeInfo = false,
+    this.applyToServiceInfo = false,
+  });
+
+  const AccessibilityEventConfig.disabled() : this(enabled: false);
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'enabled': enabled,
+        'eventTypes': eventTypes.toSigned(32),
+        'packageNames': packageNames,
+        'debounceMs': debounce.inMilliseconds,
+        'includeNodeInfo': includeNodeInfo,
+        'applyToServiceInfo': applyToServiceInfo,
+      };
+}
+
+/// An accessibility event delivered by [FlutterOverlayWindow.accessibilityEvents].
+@immutable
+class OverlayAccessibilityEvent {
+  /// One of the [AccessibilityEventType] values.
+  final int eventType;
+  final String? packageName;
+  final String? className;
+
+  /// Event time in milliseconds since boot.
+  final int eventTime;
+
+  /// Source node properties, only set when [AccessibilityEventConfig.includeNodeInfo] is enabled.
+  final Map<Object?, Object?>? node;
+
+  const OverlayAccessibilityEvent({
+    required this.eventType,
+    this.packageName,
+    this.className,
+    required this.eventTime,
+    this.node,
+  });
+
+  factory OverlayAccessibilityEvent.fromMap(Map<Object?, Object?> map) =>
+      OverlayAccessibilityEvent(
+        eventType: map['eventType'] as int? ?? 0,
+        packageName: map['packageName'] as String?,
+        className: map['className'] as String?,
+        eventTime: map['eventTime'] as int? ?? 0,
+        node: map['node'] as Map<Object?, Object?>?,
+      );
+
+  @override
+  String toString() {
+    return 'OverlayAccessibilityEvent{eventType=$eventType, packageName=$packageName, '
+        'className=$className, eventTime=$eventTime}';
+  }
+}
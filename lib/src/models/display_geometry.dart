@@ -0,0 +1,69 @@
+import 'package:flutter/foundation.dart';
+
+/// Geometry of the display the overlays are shown on, in physical pixels.
+@immutable
+class OverlayDisplayGeometry {
+  final double density;
+
+  /// Size of the whole display, system bars included.
+  final int realWidth;
+  final int realHeight;
+
+  /// Size available to applications.
+  final int windowWidth;
+  final int windowHeight;
+
+  /// Part of the display not covered by the system bars or the cutout,
+  /// overlays are kept inside it after a change.
+  final int visibleLeft;
+  final int visibleTop;
+  final int visibleRight;
+  final int visibleBottom;
+
+  final int statusBarHeight;
+  final int navigationBarHeight;
+  final bool portrait;
+
+  /// Display rotation in quarter turns, from 0 to 3.
+  final int rotation;
+
+  const OverlayDisplayGeometry({
+    required this.density,
+    required this.realWidth,
+    required this.realHeight,
+    required this.windowWidth,
+    required this.windowHeight,
+    required this.visibleLeft,
+    required this.visibleTop,
+    required this.visibleRight,
+    required this.visibleBottom,
+    required this.statusBarHeight,
+    required this.navigationBarHeight,
+    required this.portrait,
+    required this.rotation,
+  });
+
+  factory OverlayDisplayGeometry.fromMap(Map<Object?, Object?>? map) =>
+      OverlayDisplayGeometry(
+        density: (map?['density'] as num?)?.toDouble() ?? 1.0,
+        realWidth: map?['realWidth'] as int? ?? 0,
+        realHeight: map?['realHeight'] as int? ?? 0,
+        windowWidth: map?['windowWidth'] as int? ?? 0,
+        windowHeight: map?['windowHeight'] as int? ?? 0,
+        visibleLeft: map?['visibleLeft'] as int? ?? 0,
+        visibleTop: map?['visibleTop'] as int? ?? 0,
+        visibleRight: map?['visibleRight'] as int? ?? 0,
+        visibleBottom: map?['visibleBottom'] as int? ?? 0,
+        statusBarHeight: map?['statusBarHeight'] as int? ?? 0,
+        navigationBarHeight: map?['navigationBarHeight'] as int? ?? 0,
+        portrait: map?['portrait'] as bool? ?? true,
+        rotation: map?['rotation'] as int? ?? 0,
+      );
+
+  @override
+  String toString() {
+    return 'OverlayDisplayGeometry{real=${realWidth}x$realHeight, '
+        'visible=[$visibleLeft, $visibleTop, $visibleRight, $visibleBottom], '
+        'density=$density, rotation=$rotation}';
+  }
+}
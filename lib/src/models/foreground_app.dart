@@ -0,0 +1,84 @@
+import 'package:flutter/foundation.dart';
+
+/// What happens to the overlays when an app comes to the foreground.
+enum ForegroundRuleAction {
+  /// Leave the overlays as they are.
+  none,
+
+  /// Show again the overlays hidden by a [hide] rule.
+  show,
+
+  /// Hide the overlays, like [FlutterOverlayWindow.hideOverlay].
+  hide,
+}
+
+/// Configuration of the foreground app tracking done by the accessibility service.
+///
+/// The [rules] are applied natively as soon as the foreground app changes,
+/// without waiting for Dart. Only the overlays hidden by a rule are shown
+/// again, an overlay hidden with [FlutterOverlayWindow.hideOverlay] stays hidden.
+@immutable
+class ForegroundTracking {
+  final bool enabled;
+
+  /// Action per package name.
+  final Map<String, ForegroundRuleAction> rules;
+
+  /// Action for the packages without a rule.
+  final ForegroundRuleAction defaultAction;
+
+  /// Overlays the rules apply to, empty applies them to every overlay.
+  final List<String> overlayIds;
+
+  const ForegroundTracking({
+    this.enabled = true,
+    this.rules = const {},
+    this.defaultAction = ForegroundRuleAction.none,
+    this.overlayIds = const [],
+  });
+
+  const ForegroundTracking.disabled() : this(enabled: false);
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'enabled': enabled,
+        'rules': rules.map((key, value) => MapEntry(key, value.name)),
+        'defaultAction': defaultAction.name,
+        'overlayIds': overlayIds,
+      };
+}
+
+/// A foreground app or window transition, see [FlutterOverlayWindow.foregroundAppChanges].
+@immutable
+class ForegroundAppChange {
+  final String packageName;
+
+  /// Class of the window that came to the foreground, when known.
+  final String? className;
+
+  /// `false` when only the window changed inside the same app.
+  final bool packageChanged;
+
+  final DateTime timestamp;
+
+  const ForegroundAppChange({
+    required this.packageName,
+    this.className,
+    required this.packageChanged,
+    required this.timestamp,
+  });
+
+  factory ForegroundAppChange.fromMap(Map<Object?, Object?> map) =>
+      ForegroundAppChange(
+        packageName: map['packageName'] as String? ?? '',
+        className: map['className'] as String?,
+        packageChanged: map['packageChanged'] as bool? ?? true,
+        timestamp: DateTime.fromMillisecondsSinceEpoch(
+            map['timestamp'] as int? ?? 0),
+      );
+
+  @override
+  String toString() {
+    return 'ForegroundAppChange{packageName=$packageName, className=$className, '
+        'packageChanged=$packageChanged}';
+  }
+}
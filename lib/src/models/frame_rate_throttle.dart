@@ -0,0 +1,44 @@
+import 'package:flutter/foundation.dart';
+
+/// Lowers the refresh rate asked for by an overlay once it has been idle, see
+/// [FlutterOverlayWindow.showOverlay].
+///
+/// A touch, a message from the main app, a window move or a call from the overlay restores the
+/// full rate right away. The rate is a hint: the system picks the display mode, and only honors
+/// it for overlays on devices with several refresh rates.
+///
+/// On Android 11 and later the rate is a vote of the overlay's own surface, with
+/// `OverlayRenderMode.surface` or `OverlayRenderMode.transparentSurface`. The default texture
+/// mode draws into the window itself and has no surface of its own to vote with, it is only
+/// throttled with [windowHint].
+@immutable
+class FrameRateThrottle {
+  /// Frames per second asked for while idle.
+  final double idleFrameRate;
+
+  /// How long the overlay has to be idle before it is throttled.
+  final Duration idleAfter;
+
+  /// Also asks for [idleFrameRate] as the preferred refresh rate of the overlay window.
+  ///
+  /// The system applies the preference of the top-most window to the whole display, so this
+  /// lowers the refresh rate of the app below the overlay as well. Off by default.
+  final bool windowHint;
+
+  const FrameRateThrottle({
+    this.idleFrameRate = 30,
+    this.idleAfter = const Duration(seconds: 2),
+    this.windowHint = false,
+  });
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'idleFrameRate': idleFrameRate,
+        'idleAfterMs': idleAfter.inMilliseconds,
+        'windowHint': windowHint,
+      };
+
+  @override
+  String toString() {
+    return 'FrameRateThrottle{idleFrameRate=$idleFrameRate, idleAfter=$idleAfter, windowHint=$windowHint}';
+  }
+}
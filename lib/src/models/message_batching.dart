@@ -0,0 +1,89 @@
+import 'package:flutter/foundation.dart';
+import 'package:flutter_overlay_window/src/overlay_config.dart';
+
+/// Configuration of the main app to overlay message batching.
+///
+/// When enabled, [FlutterOverlayWindow.shareData] no longer sends every message
+/// right away: messages are buffered by the plugin and delivered to the overlay
+/// as one batch per frame, or per [flushInterval] when set. The overlay keeps
+/// receiving them one by one through `overlayListener`.
+@immutable
+class MessageBatching {
+  final bool enabled;
+
+  /// Maximum number of buffered messages.
+  final int capacity;
+
+  /// What happens when the buffer is full.
+  final BatchOverflowPolicy policy;
+
+  /// Map key identifying messages of the same kind for [BatchOverflowPolicy.latestWinsPerKey].
+  final String keyField;
+
+  /// Delay between two batches, `null` means one batch per frame.
+  final Duration? flushInterval;
+
+  const MessageBatching({
+    this.enabled = true,
+    this.capacity = 256,
+    this.policy = BatchOverflowPolicy.dropOldest,
+    this.keyField = 'key',
+    this.flushInterval,
+  });
+
+  const MessageBatching.disabled() : this(enabled: false);
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'enabled': enabled,
+        'capacity': capacity,
+        'policy': policy.name,
+        'keyField': keyField,
+        'flushIntervalMs': flushInterval?.inMilliseconds ?? 0,
+      };
+}
+
+/// Counters of the message batching, see [FlutterOverlayWindow.getMessageStats].
+@immutable
+class MessageStats {
+  /// Messages handed to the plugin by [FlutterOverlayWindow.shareData].
+  final int received;
+
+  /// Messages delivered to the overlay.
+  final int delivered;
+
+  /// Number of batches sent to the overlay.
+  final int batches;
+
+  /// Messages dropped because the buffer was full.
+  final int dropped;
+
+  /// Messages replaced by a newer one with the same key.
+  final int coalesced;
+
+  /// Messages currently waiting in the buffer.
+  final int queued;
+
+  const MessageStats({
+    required this.received,
+    required this.delivered,
+    required this.batches,
+    required this.dropped,
+    required this.coalesced,
+    required this.queued,
+  });
+
+  factory MessageStats.fromMap(Map<Object?, Object?>? map) => MessageStats(
+        received: map?['received'] as int? ?? 0,
+        delivered: map?['delivered'] as int? ?? 0,
+        batches: map?['batches'] as int? ?? 0,
+        dropped: map?['dropped'] as int? ?? 0,
+        coalesced: map?['coalesced'] as int? ?? 0,
+        queued: map?['queued'] as int? ?? 0,
+      );
+
+  @override
+  String toString() {
+    return 'MessageStats{received=$received, delivered=$delivered, batches=$batches, '
+        'dropped=$dropped, coalesced=$coalesced, queued=$queued}';
+  }
+}
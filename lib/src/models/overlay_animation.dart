@@ -0,0 +1,91 @@
+import 'package:flutter/foundation.dart';
+import 'package:flutter_overlay_window/src/models/overlay_position.dart';
+
+/// Easing applied over the duration of an [OverlayAnimation].
+enum OverlayAnimationCurve {
+  linear,
+  easeIn,
+  easeOut,
+  easeInOut,
+  overshoot,
+  anticipateOvershoot,
+  bounce,
+}
+
+/// Intermediate geometry an [OverlayAnimation] passes through.
+///
+/// [at] is the point of the animation between 0 and 1 where the overlay
+/// reaches this geometry, `null` fields are not constrained by the keyframe.
+@immutable
+class OverlayKeyframe {
+  final double at;
+  final OverlayPosition? position;
+  final int? width;
+  final int? height;
+
+  const OverlayKeyframe(this.at, {this.position, this.width, this.height});
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'at': at,
+        if (position != null) ...position!.toMap(),
+        if (width != null) 'width': width,
+        if (height != null) 'height': height,
+      };
+}
+
+/// Position and size animation run natively on every frame, see
+/// [FlutterOverlayWindow.animateOverlay].
+///
+/// Sizes are in dp, [WindowSize] constants can not be animated. Without a
+/// [spring] the overlay follows the [keyframes] and [curve] over [duration],
+/// with a [spring] it moves towards the target until it comes to rest.
+@immutable
+class OverlayAnimation {
+  final OverlayPosition? position;
+  final int? width;
+  final int? height;
+  final Duration duration;
+  final OverlayAnimationCurve curve;
+  final List<OverlayKeyframe> keyframes;
+
+  /// Spring used instead of [duration] and [curve], its fling friction is ignored.
+  final OverlaySpring? spring;
+
+  const OverlayAnimation({
+    this.position,
+    this.width,
+    this.height,
+    this.duration = const Duration(milliseconds: 300),
+    this.curve = OverlayAnimationCurve.easeInOut,
+    this.keyframes = const [],
+    this.spring,
+  });
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        if (position != null) ...position!.toMap(),
+        if (width != null) 'width': width,
+        if (height != null) 'height': height,
+        if (spring == null) 'durationMs': duration.inMicroseconds / 1000,
+        if (spring == null) 'curve': curve.name,
+        if (spring == null && keyframes.isNotEmpty)
+          'keyframes': keyframes.map((k) => k.toMap()).toList(),
+        if (spring != null) ...spring!.toMap(),
+      };
+}
+
+/// Spring of an [OverlayAnimation].
+@immutable
+class OverlaySpring {
+  /// Spring constant, higher values move faster.
+  final double stiffness;
+
+  /// `1` is critically damped, lower values overshoot and bounce.
+  final double dampingRatio;
+
+  const OverlaySpring({this.stiffness = 500, this.dampingRatio = 1});
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'stiffness': stiffness,
+        'dampingRatio': dampingRatio,
+      };
+}
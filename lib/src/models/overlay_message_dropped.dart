@@ -0,0 +1,22 @@
+/// Thrown by [FlutterOverlayWindow.shareData] when the message never reached the overlay.
+///
+/// While the overlay engine is not running, messages wait in a bounded queue on the
+/// native side. Once it is full the oldest one is dropped to make room, and the
+/// [shareData] call that sent it fails with this exception.
+class OverlayMessageDroppedException implements Exception {
+  /// Overlay window the message was sent to.
+  final String overlayId;
+
+  const OverlayMessageDroppedException(this.overlayId);
+
+  /// Key of the reply the plugin sends for a dropped message.
+  static const String replyKey = 'overlayMessageDropped';
+
+  static bool isDroppedReply(dynamic reply) =>
+      reply is Map && reply[replyKey] == true;
+
+  @override
+  String toString() =>
+      'OverlayMessageDroppedException: the overlay "$overlayId" was not running '
+      'and the message was dropped from its full queue';
+}
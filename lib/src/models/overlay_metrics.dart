@@ -0,0 +1,117 @@
+import 'package:flutter/foundation.dart';
+
+/// Count, total and maximum of one measured operation in [OverlayMetrics].
+@immutable
+class OverlayTimerMetric {
+  final int count;
+  final Duration total;
+  final Duration max;
+  final Duration average;
+
+  const OverlayTimerMetric(this.count, this.total, this.max, this.average);
+
+  factory OverlayTimerMetric.fromMap(Object? map) {
+    final Map<Object?, Object?>? values = map is Map ? map.cast() : null;
+    return OverlayTimerMetric(
+      (values?['count'] as num?)?.toInt() ?? 0,
+      _duration(values?['totalMillis']),
+      _duration(values?['maxMillis']),
+      _duration(values?['averageMillis']),
+    );
+  }
+
+  static Duration _duration(Object? millis) => millis is num
+      ? Duration(microseconds: (millis * 1000).round())
+      : Duration.zero;
+
+  @override
+  String toString() {
+    return 'OverlayTimerMetric{count=$count, total=$total, max=$max, average=$average}';
+  }
+}
+
+/// Returned by [FlutterOverlayWindow.getMetrics], totals since the process
+/// started or since the last reset.
+@immutable
+class OverlayMetrics {
+  /// Time from [FlutterOverlayWindow.showOverlay] to the first rendered frame.
+  final OverlayTimerMetric showToFirstFrame;
+
+  /// Time spent creating overlay engines.
+  final OverlayTimerMetric engineCreate;
+
+  /// Window layout updates from drags, moves, resizes and animations.
+  final OverlayTimerMetric layoutUpdate;
+
+  /// Platform messages sent to Dart by the plugin, in the main app and the overlays.
+  final int messagesSent;
+  final int bytesSent;
+
+  /// Platform messages received from Dart by the plugin.
+  final int messagesReceived;
+  final int bytesReceived;
+
+  /// Frames that moved the overlay during a drag, and frames missed in between.
+  final int dragFrames;
+  final int droppedDragFrames;
+
+  /// Errors logged by the overlay service.
+  final int errors;
+
+  /// Frames overlay engines did not render while paused because nobody could see them, the
+  /// screen being off or the overlay being off-screen or covered. Counted when rendering resumes.
+  final int savedFrames;
+
+  /// How long the overlay service held its wake lock.
+  final Duration wakeLockHeldTime;
+  final bool wakeLockHeld;
+
+  /// Every value as sent by the plugin.
+  final Map<Object?, Object?> values;
+
+  const OverlayMetrics({
+    required this.showToFirstFrame,
+    required this.engineCreate,
+    required this.layoutUpdate,
+    required this.messagesSent,
+    required this.bytesSent,
+    required this.messagesReceived,
+    required this.bytesReceived,
+    required this.dragFrames,
+    required this.droppedDragFrames,
+    required this.errors,
+    this.savedFrames = 0,
+    required this.wakeLockHeldTime,
+    required this.wakeLockHeld,
+    required this.values,
+  });
+
+  factory OverlayMetrics.fromMap(Map<Object?, Object?>? map) {
+    final Map<Object?, Object?> values = map ?? const {};
+    int count(String key) => (values[key] as num?)?.toInt() ?? 0;
+    return OverlayMetrics(
+      showToFirstFrame: OverlayTimerMetric.fromMap(values['showToFirstFrame']),
+      engineCreate: OverlayTimerMetric.fromMap(values['engineCreate']),
+      layoutUpdate: OverlayTimerMetric.fromMap(values['layoutUpdate']),
+      messagesSent: count('messagesSent'),
+      bytesSent: count('bytesSent'),
+      messagesReceived: count('messagesReceived'),
+      bytesReceived: count('bytesReceived'),
+      dragFrames: count('dragFrames'),
+      droppedDragFrames: count('droppedDragFrames'),
+      errors: count('errors'),
+      savedFrames: count('savedFrames'),
+      wakeLockHeldTime: Duration(milliseconds: count('wakeLockHeldMillis')),
+      wakeLockHeld: values['wakeLockHeld'] as bool? ?? false,
+      values: values,
+    );
+  }
+
+  @override
+  String toString() {
+    return 'OverlayMetrics{showToFirstFrame=$showToFirstFrame, engineCreate=$engineCreate, '
+        'layoutUpdate=$layoutUpdate, messagesSent=$messagesSent, bytesSent=$bytesSent, '
+        'messagesReceived=$messagesReceived, bytesReceived=$bytesReceived, dragFrames=$dragFrames, '
+        'droppedDragFrames=$droppedDragFrames, errors=$errors, savedFrames=$savedFrames, wakeLockHeldTime=$wakeLockHeldTime}';
+  }
+}
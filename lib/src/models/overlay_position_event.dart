@@ -0,0 +1,55 @@
+import 'dart:typed_data';
+
+import 'package:flutter/foundation.dart';
+import 'package:flutter_overlay_window/src/models/overlay_position.dart';
+
+/// What moved or resized the overlay window.
+enum OverlayPositionSource {
+  /// `moveOverlay`, `resizeOverlay`, `applyWindowUpdate` or a new subscription.
+  programmatic,
+  drag,
+
+  /// Snapping to a screen edge after a drag.
+  snap,
+
+  /// `animateOverlay`.
+  animation,
+
+  /// Rotation, fold or display change.
+  display,
+}
+
+/// Geometry of an overlay window, at most one per frame, see
+/// [FlutterOverlayWindow.positionChanges].
+@immutable
+class OverlayPositionEvent {
+  final OverlayPosition position;
+
+  /// Laid out width in dp.
+  final double width;
+
+  /// Laid out height in dp.
+  final double height;
+  final OverlayPositionSource source;
+
+  const OverlayPositionEvent(
+      this.position, this.width, this.height, this.source);
+
+  /// Decodes the `[x, y, width, height, source]` array sent by the plugin.
+  factory OverlayPositionEvent.fromList(Float64List values) {
+    final int source = values[4].toInt();
+    return OverlayPositionEvent(
+      OverlayPosition(values[0], values[1]),
+      values[2],
+      values[3],
+      source >= 0 && source < OverlayPositionSource.values.length
+          ? OverlayPositionSource.values[source]
+          : OverlayPositionSource.programmatic,
+    );
+  }
+
+  @override
+  String toString() {
+    return 'OverlayPositionEvent{position=$position, width=$width, height=$height, source=${source.name}}';
+  }
+}
@@ -0,0 +1,24 @@
+import 'package:flutter/foundation.dart';
+
+/// Returned by [FlutterOverlayWindow.showOverlay].
+@immutable
+class OverlayStartResult {
+  /// `true` when an already running overlay engine was reused.
+  final bool warmStart;
+
+  /// Time spent creating the overlay engine, zero for a warm start.
+  final Duration engineCreateTime;
+
+  const OverlayStartResult(this.warmStart, this.engineCreateTime);
+
+  factory OverlayStartResult.fromMap(Map<Object?, Object?>? map) =>
+      OverlayStartResult(
+        map?['warmStart'] as bool? ?? false,
+        Duration(milliseconds: map?['engineCreateMillis'] as int? ?? 0),
+      );
+
+  @override
+  String toString() {
+    return 'OverlayStartResult{warmStart=$warmStart, engineCreateTime=$engineCreateTime}';
+  }
+}
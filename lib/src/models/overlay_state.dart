@@ -0,0 +1,48 @@
+import 'package:flutter/foundation.dart';
+
+/// Lifecycle of one overlay, see [FlutterOverlayWindow.overlayStateChanges].
+///
+/// An overlay goes `stopped -> starting -> shown <-> hidden -> stopping -> stopped`.
+enum OverlayLifecycleState {
+  /// [FlutterOverlayWindow.showOverlay] was called, the window is not on screen yet.
+  starting,
+  shown,
+
+  /// Hidden with [FlutterOverlayWindow.hideOverlay] or by a foreground rule.
+  hidden,
+  stopping,
+  stopped,
+}
+
+/// Reads a state sent by the plugin, unknown names read as stopped.
+OverlayLifecycleState overlayLifecycleStateFromName(Object? name) =>
+    OverlayLifecycleState.values.firstWhere(
+      (state) => state.name == name,
+      orElse: () => OverlayLifecycleState.stopped,
+    );
+
+/// A state transition of one overlay.
+@immutable
+class OverlayStateChange {
+  final String overlayId;
+  final OverlayLifecycleState state;
+
+  const OverlayStateChange({required this.overlayId, required this.state});
+
+  /// Whether the overlay counts as active for [FlutterOverlayWindow.isActive].
+  bool get isActive =>
+      state == OverlayLifecycleState.starting ||
+      state == OverlayLifecycleState.shown ||
+      state == OverlayLifecycleState.hidden;
+
+  factory OverlayStateChange.fromMap(Map<Object?, Object?> map) =>
+      OverlayStateChange(
+        overlayId: map['overlayId'] as String? ?? 'default',
+        state: overlayLifecycleStateFromName(map['state']),
+      );
+
+  @override
+  String toString() {
+    return 'OverlayStateChange{overlayId=$overlayId, state=$state}';
+  }
+}
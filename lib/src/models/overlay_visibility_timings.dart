@@ -0,0 +1,61 @@
+import 'package:flutter/foundation.dart';
+
+/// Why the overlay engine is not rendering, see [OverlayVisibilityTimings.pauseReasons].
+enum OverlayPauseReason {
+  /// Hidden with [FlutterOverlayWindow.hideOverlay] or by a foreground rule.
+  hidden,
+
+  /// The screen is off.
+  screenOff,
+
+  /// The keyguard is showing.
+  keyguard,
+
+  /// The overlay was moved entirely outside the display.
+  offScreen,
+
+  /// A system window such as the notification shade covers the overlay, only detected while
+  /// the accessibility service is enabled.
+  occluded,
+}
+
+/// Returned by [FlutterOverlayWindow.getVisibilityTimings].
+@immutable
+class OverlayVisibilityTimings {
+  /// `true` while the overlay is hidden with [FlutterOverlayWindow.hideOverlay].
+  final bool hidden;
+
+  /// Time from [FlutterOverlayWindow.showOverlay] to the first rendered frame.
+  final Duration? coldStart;
+
+  /// Time from the last [FlutterOverlayWindow.revealOverlay] to the overlay being drawn.
+  final Duration? lastReveal;
+
+  /// Why rendering is paused right now, empty while the overlay renders.
+  final Set<OverlayPauseReason> pauseReasons;
+
+  const OverlayVisibilityTimings(this.hidden, this.coldStart, this.lastReveal,
+      [this.pauseReasons = const {}]);
+
+  factory OverlayVisibilityTimings.fromMap(Map<Object?, Object?>? map) =>
+      OverlayVisibilityTimings(
+        map?['hidden'] as bool? ?? false,
+        _duration(map?['coldStartMillis']),
+        _duration(map?['lastRevealMillis']),
+        {
+          for (final name in (map?['pauseReasons'] as List?) ?? const [])
+            for (final reason in OverlayPauseReason.values)
+              if (reason.name == name) reason,
+        },
+      );
+
+  static Duration? _duration(Object? millis) => millis is num
+      ? Duration(microseconds: (millis * 1000).round())
+      : null;
+
+  @override
+  String toString() {
+    return 'OverlayVisibilityTimings{hidden=$hidden, coldStart=$coldStart, lastReveal=$lastReveal, '
+        'pauseReasons=$pauseReasons}';
+  }
+}
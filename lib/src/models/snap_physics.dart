@@ -0,0 +1,33 @@
+import 'package:flutter/foundation.dart';
+
+/// Spring physics used to snap the overlay to a screen edge after a drag
+/// when [PositionGravity] is not `none`.
+@immutable
+class SnapPhysics {
+  /// Spring constant, higher values snap faster.
+  final double stiffness;
+
+  /// `1` is critically damped, lower values overshoot and bounce.
+  final double dampingRatio;
+
+  /// How quickly a released fling slows down, lower values throw further.
+  /// With [PositionGravity.auto] the fling decides which edge the overlay snaps to.
+  final double flingFriction;
+
+  const SnapPhysics({
+    this.stiffness = 700,
+    this.dampingRatio = 0.75,
+    this.flingFriction = 4,
+  });
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'stiffness': stiffness,
+        'dampingRatio': dampingRatio,
+        'flingFriction': flingFriction,
+      };
+
+  @override
+  String toString() {
+    return 'SnapPhysics{stiffness=$stiffness, dampingRatio=$dampingRatio, flingFriction=$flingFriction}';
+  }
+}
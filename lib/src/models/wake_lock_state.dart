@@ -0,0 +1,55 @@
+import 'package:flutter/foundation.dart';
+import 'package:flutter_overlay_window/src/overlay_config.dart';
+
+/// Returned by [FlutterOverlayWindow.getWakeLockState].
+@immutable
+class OverlayWakeLockState {
+  final WakeLockPolicy policy;
+  final Duration timeout;
+
+  /// Whether the wake lock is held right now.
+  final bool held;
+
+  /// Whether the screen is on, as last reported to the overlay service.
+  final bool screenOn;
+
+  /// How long the wake lock was held since the process started or the last metrics reset.
+  final Duration heldTime;
+
+  /// How often the lock was acquired after being released, and renewed while held.
+  final int acquisitions;
+  final int renewals;
+
+  const OverlayWakeLockState({
+    required this.policy,
+    required this.timeout,
+    required this.held,
+    required this.screenOn,
+    required this.heldTime,
+    required this.acquisitions,
+    required this.renewals,
+  });
+
+  factory OverlayWakeLockState.fromMap(Map<Object?, Object?>? map) {
+    final Map<Object?, Object?> values = map ?? const {};
+    int count(String key) => (values[key] as num?)?.toInt() ?? 0;
+    return OverlayWakeLockState(
+      policy: WakeLockPolicy.values.firstWhere(
+        (policy) => policy.name == values['mode'],
+        orElse: () => WakeLockPolicy.always,
+      ),
+      timeout: Duration(milliseconds: count('timeoutMs')),
+      held: values['held'] as bool? ?? false,
+      screenOn: values['screenOn'] as bool? ?? true,
+      heldTime: Duration(milliseconds: count('heldMillis')),
+      acquisitions: count('acquisitions'),
+      renewals: count('renewals'),
+    );
+  }
+
+  @override
+  String toString() {
+    return 'OverlayWakeLockState{policy=$policy, timeout=$timeout, held=$held, '
+        'screenOn=$screenOn, heldTime=$heldTime, acquisitions=$acquisitions, renewals=$renewals}';
+  }
+}
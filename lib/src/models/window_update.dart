@@ -0,0 +1,70 @@
+import 'package:flutter/foundation.dart';
+import 'package:flutter_overlay_window/src/models/overlay_position.dart';
+import 'package:flutter_overlay_window/src/overlay_config.dart';
+
+/// Changes applied together by [FlutterOverlayWindow.applyWindowUpdate].
+///
+/// Every field is optional, `null` leaves it unchanged. Sizes are in dp or
+/// one of the [WindowSize] constants.
+@immutable
+class OverlayWindowUpdate {
+  final OverlayPosition? position;
+  final int? width;
+  final int? height;
+  final OverlayFlag? flag;
+
+  /// Window opacity between 0 and 1.
+  final double? alpha;
+
+  /// Blur radius of what is behind the overlay, 0 removes the blur. Android 12+ only.
+  final int? blurRadius;
+  final bool? enableDrag;
+
+  const OverlayWindowUpdate({
+    this.position,
+    this.width,
+    this.height,
+    this.flag,
+    this.alpha,
+    this.blurRadius,
+    this.enableDrag,
+  });
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        if (position != null) ...position!.toMap(),
+        if (width != null) 'width': width,
+        if (height != null) 'height': height,
+        if (flag != null) 'flag': flag!.name,
+        if (alpha != null) 'alpha': alpha,
+        if (blurRadius != null) 'blurRadius': blurRadius,
+        if (enableDrag != null) 'enableDrag': enableDrag,
+      };
+}
+
+/// Geometry of an overlay window after [FlutterOverlayWindow.applyWindowUpdate].
+@immutable
+class OverlayWindowGeometry {
+  final OverlayPosition position;
+
+  /// Width in dp, or one of the [WindowSize] constants.
+  final double width;
+
+  /// Height in dp, or one of the [WindowSize] constants.
+  final double height;
+  final double alpha;
+
+  const OverlayWindowGeometry(this.position, this.width, this.height, this.alpha);
+
+  factory OverlayWindowGeometry.fromMap(Map<Object?, Object?>? map) =>
+      OverlayWindowGeometry(
+        OverlayPosition.fromMap(map),
+        (map?['width'] as num?)?.toDouble() ?? 0,
+        (map?['height'] as num?)?.toDouble() ?? 0,
+        (map?['alpha'] as num?)?.toDouble() ?? 1,
+      );
+
+  @override
+  String toString() {
+    return 'OverlayWindowGeometry{position=$position, width=$width, height=$height, alpha=$alpha}';
+  }
+}
@@ -67,6 +67,74 @@ enum NotificationVisibility {
   visibilityPrivate
 }
 
+/// What the plugin does when the message batching buffer is full, see [MessageBatching].
+enum BatchOverflowPolicy {
+  /// Drop the oldest buffered message to make room for the new one.
+  dropOldest,
+
+  /// Only keep the latest message for each key, messages without a key behave like [dropOldest].
+  latestWinsPerKey,
+}
+
+/// When the plugin creates the overlay engine.
+///
+/// The initial strategy can also be set from the app manifest with
+/// `<meta-data android:name="flutter.overlay.window.engineStrategy" android:value="idle" />`.
+enum EngineStrategy {
+  /// Create the engine as soon as the main app attaches, this is the default.
+  eager,
+
+  /// Create the engine the first time [FlutterOverlayWindow.showOverlay] is called.
+  lazy,
+
+  /// Create the engine the first time the main thread is idle after the main app attached,
+  /// and again after the engine was destroyed.
+  idle,
+}
+
+/// When the overlay service keeps the CPU awake with a partial wake lock.
+///
+/// The lock is always taken with a timeout and renewed while it is needed, so a stuck process
+/// lets it go by itself. The initial policy can also be set from the app manifest with
+/// `<meta-data android:name="flutter.overlay.window.wakeLockPolicy" android:value="whileScreenOn" />`.
+enum WakeLockPolicy {
+  /// Never hold the wake lock.
+  none,
+
+  /// Hold the wake lock while the screen is on.
+  whileScreenOn,
+
+  /// Hold the wake lock until the overlay has not been shown or touched for the timeout.
+  timed,
+
+  /// Hold the wake lock while an overlay is shown, this is the default.
+  always,
+}
+
+/// State of the overlay engine.
+enum EngineReadiness {
+  /// No engine is running, the next `showOverlay` is a cold start.
+  none,
+
+  /// The engine will be created the next time the main thread is idle.
+  scheduled,
+
+  /// The engine is running, the next `showOverlay` is a warm start.
+  ready,
+}
+
+/// The view backing the overlay.
+enum OverlayRenderMode {
+  /// Render into a texture composited by the app, supports any transparency, this is the default.
+  texture,
+
+  /// Render into its own surface, cheapest for opaque overlays.
+  surface,
+
+  /// Render into its own surface drawn on top of the overlay window, keeps transparency.
+  transparentSurface,
+}
+
 class WindowSize {
   WindowSize._();
 
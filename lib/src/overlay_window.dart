@@ -1,8 +1,24 @@
 import 'dart:async';
 import 'dart:developer';
+import 'dart:typed_data';
 
 import 'package:flutter/services.dart';
+import 'package:flutter_overlay_window/src/models/accessibility_events.dart';
+import 'package:flutter_overlay_window/src/models/display_geometry.dart';
+import 'package:flutter_overlay_window/src/models/foreground_app.dart';
+import 'package:flutter_overlay_window/src/models/frame_rate_throttle.dart';
+import 'package:flutter_overlay_window/src/models/message_batching.dart';
+import 'package:flutter_overlay_window/src/models/overlay_message_dropped.dart';
+import 'package:flutter_overlay_window/src/models/overlay_metrics.dart';
 import 'package:flutter_overlay_window/src/models/overlay_position.dart';
+import 'package:flutter_overlay_window/src/models/overlay_position_event.dart';
+import 'package:flutter_overlay_window/src/models/overlay_start_result.dart';
+import 'package:flutter_overlay_window/src/models/overlay_state.dart';
+import 'package:flutter_overlay_window/src/models/overlay_visibility_timings.dart';
+import 'package:flutter_overlay_window/src/models/overlay_animation.dart';
+import 'package:flutter_overlay_window/src/models/snap_physics.dart';
+import 'package:flutter_overlay_window/src/models/wake_lock_state.dart';
+import 'package:flutter_overlay_window/src/models/window_update.dart';
 import 'package:flutter_overlay_window/src/overlay_config.dart';
 
 class FlutterOverlayWindow {
@@ -15,6 +31,33 @@ class FlutterOverlayWindow {
       MethodChannel("x-slayer/overlay");
   static const BasicMessageChannel _overlayMessageChannel =
       BasicMessageChannel("x-slayer/overlay_messenger", JSONMessageCodec());
+  static const String _batchKey = "__overlayBatch";
+  static final StreamController<ByteData> _bytesController = StreamController();
+  static const BasicMessageChannel<ByteData?> _overlayBytesChannel =
+      BasicMessageChannel("x-slayer/overlay_bytes_messenger", BinaryCodec());
+  static final Map<String, StreamController> _windowControllers = {};
+  static final StreamController<OverlayAccessibilityEvent>
+      _accessibilityController = StreamController.broadcast();
+  static const BasicMessageChannel<Object?> _accessibilityChannel =
+      BasicMessageChannel("x-slayer/overlay_accessibility", StandardMessageCodec());
+  static final StreamController<ForegroundAppChange> _foregroundController =
+      StreamController.broadcast();
+  static const BasicMessageChannel<Object?> _foregroundChannel =
+      BasicMessageChannel("x-slayer/overlay_foreground", StandardMessageCodec());
+  static final StreamController<OverlayDisplayGeometry> _geometryController =
+      StreamController.broadcast();
+  static const BasicMessageChannel<Object?> _geometryChannel =
+      BasicMessageChannel("x-slayer/overlay_geometry", StandardMessageCodec());
+  static final StreamController<OverlayStateChange> _stateController =
+      StreamController.broadcast();
+  static const BasicMessageChannel<Object?> _stateChannel =
+      BasicMessageChannel("x-slayer/overlay_state", StandardMessageCodec());
+  static const String _positionTag = "x-slayer/overlay_position";
+  static final Map<String, StreamController<OverlayPositionEvent>>
+      _positionControllers = {};
+
+  /// Id of the overlay opened without an explicit `overlayId`
+  static const String defaultOverlayId = 'default';
 
   /// Open overLay content
   ///
@@ -39,7 +82,24 @@ class FlutterOverlayWindow {
   /// `positionGravity` the overlay postion after drag and default is [PositionGravity.none]
   ///
   /// `startPosition` the overlay start position and default is null
-  static Future<void> showOverlay({
+  ///
+  /// `snapPhysics` the spring used to snap the overlay when `positionGravity` is not [PositionGravity.none]
+  ///
+  /// `overlayId` identifies the overlay window, showing another id opens an additional window
+  ///
+  /// `entryPoint` the `@pragma('vm:entry-point')` function the overlay runs and default is `overlayMain`
+  ///
+  /// `renderMode` the view backing the overlay and default is [OverlayRenderMode.texture]
+  ///
+  /// `snapshotPlaceholder` shows the last frame of the previous overlay with this id until the
+  /// first frame is rendered, see [configureSnapshotCache], and default is `false`. Frames are
+  /// only kept with [OverlayRenderMode.surface] on Android 7 and later: closing waits up to
+  /// 100 ms for the copy, and each snapshot holds width x height x 4 bytes
+  ///
+  /// `frameRateThrottle` lowers the refresh rate of the overlay while it is idle, and default is off
+  ///
+  /// `return` whether the overlay engine was already running (warm start) or had to be created
+  static Future<OverlayStartResult> showOverlay({
     int height = WindowSize.fullCover,
     int width = WindowSize.matchParent,
     OverlayAlignment alignment = OverlayAlignment.center,
@@ -50,8 +110,14 @@ class FlutterOverlayWindow {
     bool enableDrag = false,
     PositionGravity positionGravity = PositionGravity.none,
     OverlayPosition? startPosition,
+    SnapPhysics snapPhysics = const SnapPhysics(),
+    String overlayId = defaultOverlayId,
+    String entryPoint = 'overlayMain',
+    OverlayRenderMode renderMode = OverlayRenderMode.texture,
+    bool snapshotPlaceholder = false,
+    FrameRateThrottle? frameRateThrottle,
   }) async {
-    await _channel.invokeMethod(
+    final Map<Object?, Object?>? _res = await _channel.invokeMethod(
       'showOverlay',
       {
         "height": height,
@@ -64,8 +130,30 @@ class FlutterOverlayWindow {
         "notificationVisibility": visibility.name,
         "positionGravity": positionGravity.name,
         "startPosition": startPosition?.toMap(),
+        "snapPhysics": snapPhysics.toMap(),
+        "overlayId": overlayId,
+        "entryPoint": entryPoint,
+        "renderMode": renderMode.name,
+        "snapshotPlaceholder": snapshotPlaceholder,
+        "frameRateThrottle": frameRateThrottle?.toMap(),
       },
     );
+    return OverlayStartResult.fromMap(_res);
+  }
+
+  /// Change when the overlay engine is created, see [EngineStrategy]
+  static Future<void> setEngineStrategy(EngineStrategy strategy) async {
+    await _channel.invokeMethod('setEngineStrategy', {'strategy': strategy.name});
+  }
+
+  /// Check whether the overlay engine is running
+  static Future<EngineReadiness> getEngineReadiness() async {
+    final Map<Object?, Object?>? _res =
+        await _channel.invokeMethod('getEngineState');
+    return EngineReadiness.values.firstWhere(
+      (readiness) => readiness.name == _res?['readiness'],
+      orElse: () => EngineReadiness.none,
+    );
   }
 
   /// Check if overlay permission is granted
@@ -99,26 +187,265 @@ class FlutterOverlayWindow {
     await _channel.invokeMethod('requestAccessibilityPermission');
   }
   
+  /// Configure which accessibility events reach [accessibilityEvents]
+  static Future<void> configureAccessibilityEvents(
+      AccessibilityEventConfig config) async {
+    await _channel.invokeMethod('configureAccessibilityEvents', config.toMap());
+  }
+
+  /// Get the accessibility event counters: received, filtered, coalesced and delivered
+  static Future<Map<String, int>> getAccessibilityStats() async {
+    final Map<Object?, Object?>? _res =
+        await _channel.invokeMethod('getAccessibilityStats');
+    return _res?.map((key, value) => MapEntry(key as String, value as int)) ??
+        const {};
+  }
+
+  /// Streams the accessibility events selected with [configureAccessibilityEvents]
+  ///
+  /// Available in the main app and in the overlay, requires the accessibility permission.
+  static Stream<OverlayAccessibilityEvent> get accessibilityEvents {
+    _accessibilityChannel.setMessageHandler((message) async {
+      if (message is List) {
+        for (final event in message) {
+          _accessibilityController
+              .add(OverlayAccessibilityEvent.fromMap(event as Map<Object?, Object?>));
+        }
+      }
+      return null;
+    });
+    return _accessibilityController.stream;
+  }
+
+  /// Start or stop following the foreground app, and set the rules hiding the overlays per app
+  static Future<void> configureForegroundTracking(
+      ForegroundTracking tracking) async {
+    await _channel.invokeMethod('configureForegroundTracking', tracking.toMap());
+  }
+
+  /// Get the package name of the app currently in the foreground, as last seen by the tracking
+  static Future<String?> getForegroundPackage() async {
+    final Map<Object?, Object?>? _res =
+        await _channel.invokeMethod('getForegroundState');
+    return _res?['foregroundPackage'] as String?;
+  }
+
+  /// Streams the foreground app transitions once [configureForegroundTracking] is enabled
+  ///
+  /// Only actual changes are emitted. Available in the main app and in the overlay,
+  /// requires the accessibility permission.
+  static Stream<ForegroundAppChange> get foregroundAppChanges {
+    _foregroundChannel.setMessageHandler((message) async {
+      if (message is Map) {
+        _foregroundController.add(ForegroundAppChange.fromMap(message));
+      }
+      return null;
+    });
+    return _foregroundController.stream;
+  }
+
+  /// Get the current display geometry
+  static Future<OverlayDisplayGeometry> getDisplayGeometry() async {
+    final Map<Object?, Object?>? _res =
+        await _channel.invokeMethod('getDisplayGeometry');
+    return OverlayDisplayGeometry.fromMap(_res);
+  }
+
+  /// Streams the display geometry after a rotation, fold or display change while an overlay is shown
+  ///
+  /// Available in the main app and in the overlay.
+  static Stream<OverlayDisplayGeometry> get displayGeometryChanges {
+    _geometryChannel.setMessageHandler((message) async {
+      if (message is Map) {
+        _geometryController.add(OverlayDisplayGeometry.fromMap(message));
+      }
+      return null;
+    });
+    return _geometryController.stream;
+  }
+
   /// Closes overlay if open
-  static Future<bool?> closeOverlay() async {
-    final bool? _res = await _channel.invokeMethod('closeOverlay');
+  ///
+  /// `overlayId` closes only that overlay window, all of them are closed when it is null
+  static Future<bool?> closeOverlay({String? overlayId}) async {
+    final bool? _res = await _channel.invokeMethod(
+      'closeOverlay',
+      {'overlayId': overlayId},
+    );
     return _res;
   }
 
+  /// Takes the overlay off screen without closing it
+  ///
+  /// The overlay stays attached to its engine and stops rendering until [revealOverlay],
+  /// which is much cheaper than [closeOverlay] followed by [showOverlay].
+  static Future<bool> hideOverlay({String overlayId = defaultOverlayId}) async {
+    final bool? _res = await _channel.invokeMethod<bool?>(
+      'hideOverlay',
+      {'overlayId': overlayId},
+    );
+    return _res ?? false;
+  }
+
+  /// Brings back an overlay hidden with [hideOverlay]
+  ///
+  /// `return` the time until the overlay was drawn again, null if there is no such overlay
+  static Future<Duration?> revealOverlay({String overlayId = defaultOverlayId}) async {
+    final double? _res = await _channel.invokeMethod<double?>(
+      'revealOverlay',
+      {'overlayId': overlayId},
+    );
+    return _res == null ? null : Duration(microseconds: (_res * 1000).round());
+  }
+
+  /// Get the time it took the overlay to become visible, cold and after [revealOverlay]
+  static Future<OverlayVisibilityTimings> getVisibilityTimings({
+    String overlayId = defaultOverlayId,
+  }) async {
+    final Map<Object?, Object?>? _res = await _channel.invokeMethod(
+      'getVisibilityTimings',
+      {'overlayId': overlayId},
+    );
+    return OverlayVisibilityTimings.fromMap(_res);
+  }
+
+  /// Get the plugin metrics: show and engine start times, layout updates,
+  /// message traffic, dropped drag frames and wake lock time
+  ///
+  /// The same sections are emitted as `android.os.Trace` sections, so they also
+  /// show up in Perfetto. `reset` clears the metrics after reading them.
+  static Future<OverlayMetrics> getMetrics({bool reset = false}) async {
+    final Map<Object?, Object?>? _res =
+        await _channel.invokeMethod('getMetrics', {'reset': reset});
+    return OverlayMetrics.fromMap(_res);
+  }
+
+  /// Configure the snapshots kept for `snapshotPlaceholder`
+  ///
+  /// `maxBytes` bounds the snapshots kept in memory, by default 1/16 of the heap and at most 32MB
+  ///
+  /// `diskSpill` writes snapshots evicted from memory to the app cache directory instead of
+  /// dropping them
+  static Future<void> configureSnapshotCache({int? maxBytes, bool diskSpill = false}) async {
+    await _channel.invokeMethod('configureSnapshotCache', {
+      'maxBytes': maxBytes,
+      'diskSpill': diskSpill,
+    });
+  }
+
+  /// Drop the placeholder snapshot of one overlay, or of every overlay when `overlayId` is null
+  static Future<void> clearOverlaySnapshots({String? overlayId}) async {
+    await _channel.invokeMethod('clearOverlaySnapshots', {'overlayId': overlayId});
+  }
+
+  /// Change when the overlay service holds its wake lock, see [WakeLockPolicy]
+  ///
+  /// `timeout` is how long a [WakeLockPolicy.timed] lock outlives the last show or touch,
+  /// and how often the other policies renew the lock, at least 10 seconds
+  static Future<void> configureWakeLock(
+    WakeLockPolicy policy, {
+    Duration timeout = const Duration(minutes: 10),
+  }) async {
+    await _channel.invokeMethod('configureWakeLock', {
+      'mode': policy.name,
+      'timeoutMs': timeout.inMilliseconds,
+    });
+  }
+
+  /// Current wake lock policy and whether the lock is held
+  static Future<OverlayWakeLockState> getWakeLockState() async {
+    final Map<Object?, Object?>? _res =
+        await _channel.invokeMethod('getWakeLockState');
+    return OverlayWakeLockState.fromMap(_res);
+  }
+
   /// Broadcast data to and from overlay app
-  static Future shareData(dynamic data) async {
-    return await _overlayMessageChannel.send(data);
+  ///
+  /// `overlayId` the overlay window the main app sends to, inside an overlay it is ignored
+  ///
+  /// Throws [OverlayMessageDroppedException] when the overlay was not running and the
+  /// message was dropped from the full queue waiting for it.
+  static Future shareData(dynamic data, {String overlayId = defaultOverlayId}) async {
+    final reply = await _messageChannelFor(overlayId).send(data);
+    if (OverlayMessageDroppedException.isDroppedReply(reply)) {
+      throw OverlayMessageDroppedException(overlayId);
+    }
+    return reply;
+  }
+
+  static BasicMessageChannel _messageChannelFor(String overlayId) {
+    if (overlayId == defaultOverlayId) return _overlayMessageChannel;
+    return BasicMessageChannel(
+      "x-slayer/overlay_messenger/$overlayId",
+      const JSONMessageCodec(),
+    );
+  }
+
+  /// Streams message shared between the main app and the overlay window `overlayId`
+  static Stream<dynamic> overlayListenerFor(String overlayId) {
+    if (overlayId == defaultOverlayId) return overlayListener;
+    final controller =
+        _windowControllers.putIfAbsent(overlayId, () => StreamController());
+    _messageChannelFor(overlayId).setMessageHandler((message) async {
+      controller.add(message);
+      return message;
+    });
+    return controller.stream;
   }
 
   /// Streams message shared between overlay and main app
   static Stream<dynamic> get overlayListener {
     _overlayMessageChannel.setMessageHandler((message) async {
+      if (message is Map && message.containsKey(_batchKey)) {
+        for (final item in message[_batchKey] as List) {
+          _controller.add(item);
+        }
+        return null;
+      }
       _controller.add(message);
       return message;
     });
     return _controller.stream;
   }
 
+  /// Enable or disable batching of the messages sent with [shareData] from the main app.
+  ///
+  /// While batching is enabled [shareData] completes with `null` as soon as the
+  /// message is buffered, the overlay receives it with the next batch.
+  static Future<void> configureMessageBatching(MessageBatching batching) async {
+    await _channel.invokeMethod('configureMessageBatching', batching.toMap());
+  }
+
+  /// Get the message batching counters
+  static Future<MessageStats> getMessageStats() async {
+    final Map<Object?, Object?>? _res =
+        await _channel.invokeMethod('getMessageStats');
+    return MessageStats.fromMap(_res);
+  }
+
+  /// Send raw bytes to and from overlay app
+  ///
+  /// The payload is passed through the plugin as-is, without any JSON encoding.
+  /// Use it for frequent payloads, e.g. encoded with [StandardMessageCodec]:
+  ///
+  /// ```dart
+  /// await FlutterOverlayWindow.shareBytes(
+  ///   const StandardMessageCodec().encodeMessage({"speed": 42.0})!,
+  /// );
+  /// ```
+  static Future<ByteData?> shareBytes(ByteData data) async {
+    return await _overlayBytesChannel.send(data);
+  }
+
+  /// Streams raw bytes shared between overlay and main app with [shareBytes]
+  static Stream<ByteData> get overlayBytesListener {
+    _overlayBytesChannel.setMessageHandler((message) async {
+      if (message != null) _bytesController.add(message);
+      return null;
+    });
+    return _bytesController.stream;
+  }
+
   /// change blur
   static Future<void> setBlurSettings(int blurRadius, double alpha) async {
     try {
@@ -162,37 +489,186 @@ class FlutterOverlayWindow {
     return _res;
   }
 
+  /// Update position, size, flag, alpha and blur of the overlay at once
+  ///
+  /// The whole update is validated first and applied with a single relayout, so
+  /// no intermediate state is visible. Called from the overlay it updates that
+  /// overlay, from the main app pass the `overlayId` to update.
+  ///
+  /// `return` the resulting geometry, null if the overlay is not shown
+  static Future<OverlayWindowGeometry?> applyWindowUpdate(
+    OverlayWindowUpdate update, {
+    String? overlayId,
+  }) async {
+    final Map<Object?, Object?>? _res = overlayId == null
+        ? await _overlayChannel.invokeMethod('applyWindowUpdate', update.toMap())
+        : await _channel.invokeMethod(
+            'applyWindowUpdate',
+            {...update.toMap(), 'overlayId': overlayId},
+          );
+    return _res == null ? null : OverlayWindowGeometry.fromMap(_res);
+  }
+
+  /// Animate the overlay position and size
+  ///
+  /// The animation is handed over once and runs natively on every frame, so it
+  /// stays smooth while the Dart isolate is busy. Called from the overlay it
+  /// animates that overlay, from the main app pass the `overlayId` to animate.
+  /// Starting another animation, dragging, moving or resizing the overlay
+  /// cancels a running one.
+  ///
+  /// `return` true once the animation completed, false if it was cancelled
+  static Future<bool> animateOverlay(
+    OverlayAnimation animation, {
+    String? overlayId,
+  }) async {
+    final bool? _res = overlayId == null
+        ? await _overlayChannel.invokeMethod<bool?>(
+            'animateOverlay', animation.toMap())
+        : await _channel.invokeMethod<bool?>(
+            'animateOverlay',
+            {...animation.toMap(), 'overlayId': overlayId},
+          );
+    return _res ?? false;
+  }
+
+  /// Stop a running [animateOverlay] where the overlay currently is
+  ///
+  /// `return` true if an animation was running
+  static Future<bool> cancelOverlayAnimation({String? overlayId}) async {
+    final bool? _res = overlayId == null
+        ? await _overlayChannel.invokeMethod<bool?>('cancelOverlayAnimation')
+        : await _channel.invokeMethod<bool?>(
+            'cancelOverlayAnimation', {'overlayId': overlayId});
+    return _res ?? false;
+  }
+
   /// Update the overlay position in the screen
   ///
   /// `position` the new position of the overlay
   ///
   /// `return` true if the position updated successfully
-  static Future<bool?> moveOverlay(OverlayPosition position) async {
+  static Future<bool?> moveOverlay(
+    OverlayPosition position, {
+    String overlayId = defaultOverlayId,
+  }) async {
     final bool? _res = await _channel.invokeMethod<bool?>(
       'moveOverlay',
-      position.toMap(),
+      {...position.toMap(), 'overlayId': overlayId},
     );
     return _res;
   }
 
   /// Get the current overlay position
   ///
+  /// To follow the overlay while it moves listen to [positionChanges] instead
+  /// of polling this.
+  ///
   /// `return` the current overlay position
-  static Future<OverlayPosition> getOverlayPosition() async {
+  static Future<OverlayPosition> getOverlayPosition({
+    String overlayId = defaultOverlayId,
+  }) async {
     final Map<Object?, Object?>? _res = await _channel.invokeMethod(
       'getOverlayPosition',
+      {'overlayId': overlayId},
     );
     return OverlayPosition.fromMap(_res);
   }
 
+  /// Stream of the overlay position and size
+  ///
+  /// Drags, edge snapping, animations, programmatic moves and display changes
+  /// are coalesced to at most one event per frame. Listened to from the overlay
+  /// it follows that overlay, from the main app pass the `overlayId` to follow.
+  /// The plugin only sends events while the stream has listeners, a new
+  /// listener receives the current geometry first.
+  static Stream<OverlayPositionEvent> positionChanges({String? overlayId}) {
+    final String key = overlayId ?? '';
+    return _positionControllers.putIfAbsent(key, () {
+      final BasicMessageChannel<Object?> channel = BasicMessageChannel(
+        overlayId == null || overlayId == defaultOverlayId
+            ? _positionTag
+            : '$_positionTag/$overlayId',
+        const StandardMessageCodec(),
+      );
+      late final StreamController<OverlayPositionEvent> controller;
+      Future<void> subscribe(bool enabled) async {
+        if (overlayId == null) {
+          await _overlayChannel
+              .invokeMethod('setPositionUpdates', {'enabled': enabled});
+        } else {
+          await _channel.invokeMethod('setPositionUpdates',
+              {'overlayId': overlayId, 'enabled': enabled});
+        }
+      }
+
+      controller = StreamController.broadcast(
+        onListen: () {
+          channel.setMessageHandler((message) async {
+            if (message is Float64List) {
+              controller.add(OverlayPositionEvent.fromList(message));
+            }
+            return null;
+          });
+          subscribe(true);
+        },
+        onCancel: () {
+          channel.setMessageHandler(null);
+          subscribe(false);
+        },
+      );
+      return controller;
+    }).stream;
+  }
+
   /// Check if the current overlay is active
-  static Future<bool> isActive() async {
-    final bool? _res = await _channel.invokeMethod<bool?>('isOverlayActive');
+  ///
+  /// `overlayId` checks only that overlay window, any overlay counts when it is null
+  static Future<bool> isActive({String? overlayId}) async {
+    final bool? _res = await _channel.invokeMethod<bool?>(
+      'isOverlayActive',
+      {'overlayId': overlayId},
+    );
     return _res ?? false;
   }
 
+  /// Get the lifecycle state of an overlay, [OverlayLifecycleState.stopped] when it was never shown
+  static Future<OverlayLifecycleState> getOverlayState({String? overlayId}) async {
+    final String? _res = await _channel.invokeMethod<String?>(
+      'getOverlayState',
+      {'overlayId': overlayId},
+    );
+    return overlayLifecycleStateFromName(_res);
+  }
+
+  /// Streams every lifecycle transition of every overlay, instead of polling [isActive]
+  ///
+  /// Available in the main app and in the overlay. An overlay does not receive its own
+  /// `stopped` transition, its window is already gone.
+  static Stream<OverlayStateChange> get overlayStateChanges {
+    _stateChannel.setMessageHandler((message) async {
+      if (message is Map) {
+        _stateController.add(OverlayStateChange.fromMap(message));
+      }
+      return null;
+    });
+    return _stateController.stream;
+  }
+
+  /// Get the ids of the overlay windows currently shown
+  static Future<List<String>> getActiveOverlays() async {
+    final List<Object?>? _res =
+        await _channel.invokeMethod<List<Object?>>('getActiveOverlays');
+    return _res?.whereType<String>().toList() ?? const [];
+  }
+
   /// Dispose overlay stream
   static void disposeOverlayListener() {
     _controller.close();
+    _bytesController.close();
+    for (final controller in _windowControllers.values) {
+      controller.close();
+    }
+    _windowControllers.clear();
   }
 }